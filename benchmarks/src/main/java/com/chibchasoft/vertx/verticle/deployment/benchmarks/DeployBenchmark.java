@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.chibchasoft.vertx.verticle.deployment.DependentVerticleDeployer;
+
+/**
+ * Measures how long a {@link DependentVerticleDeployer} takes to deploy its tree
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+public class DeployBenchmark extends DeploymentTreeBenchmark {
+    private DependentVerticleDeployer deployer;
+    private String                    deploymentID;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        deployer = createDeployer();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() throws Exception {
+        undeploy(deployer, deploymentID);
+    }
+
+    @Benchmark
+    public String deploy() throws Exception {
+        deploymentID = deploy(deployer);
+        return deploymentID;
+    }
+}
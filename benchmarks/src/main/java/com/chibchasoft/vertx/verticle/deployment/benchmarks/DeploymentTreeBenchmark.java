@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chibchasoft.vertx.verticle.deployment.DependentVerticleDeployer;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+/**
+ * Base of the benchmarks that deploy or undeploy a {@link DependentVerticleDeployer} with a
+ * synthetic tree of {@link NoOpVerticle}s (see {@link DeploymentTrees#create(String, int)}).
+ * Run with {@code -prof gc} to get the allocations per operation.
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class DeploymentTreeBenchmark {
+    @Param({"wide", "deep", "balanced", "random"})
+    private String              shape;
+
+    @Param({"1000"})
+    private int                 size;
+
+    protected Vertx             vertx;
+
+    @Setup(Level.Trial)
+    public void setUpVertx() {
+        vertx = Vertx.vertx();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownVertx() throws Exception {
+        DeploymentTreeBenchmark.<Void>await(vertx::close);
+    }
+
+    /**
+     * Creates a {@link DependentVerticleDeployer} with the tree of the benchmark's shape and size
+     * @return The {@link DependentVerticleDeployer}
+     */
+    protected DependentVerticleDeployer createDeployer() {
+        DependentVerticleDeployer deployer = new DependentVerticleDeployer();
+        deployer.setDependentsDeployment(DeploymentTrees.create(shape, size));
+        return deployer;
+    }
+
+    /**
+     * Deploys the deployer and waits for its deployment
+     * @param deployer The {@link DependentVerticleDeployer}
+     * @return The deployment ID of the deployer
+     */
+    protected String deploy(DependentVerticleDeployer deployer) throws Exception {
+        return await(h -> vertx.deployVerticle(deployer, h));
+    }
+
+    /**
+     * Undeploys the dependents of the deployer in reverse dependency order and then the deployer
+     * itself, waiting for both
+     * @param deployer The {@link DependentVerticleDeployer}
+     * @param deploymentID The deployment ID of the deployer
+     */
+    protected void undeploy(DependentVerticleDeployer deployer, String deploymentID) throws Exception {
+        DeploymentTreeBenchmark.<Void>await(deployer::undeployDependents);
+        DeploymentTreeBenchmark.<Void>await(h -> vertx.undeploy(deploymentID, h));
+    }
+
+    /**
+     * Runs an asynchronous operation and waits for its result
+     * @param operation The operation, to be called with the handler of its result
+     * @return The result of the operation
+     */
+    private static <T> T await(Consumer<Handler<AsyncResult<T>>> operation) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        operation.accept(ar -> {
+            if (ar.succeeded())
+                result.complete(ar.result());
+            else
+                result.completeExceptionally(ar.cause());
+        });
+        return result.get(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.chibchasoft.vertx.verticle.deployment.DependentsDeployment;
+import com.chibchasoft.vertx.verticle.deployment.DeploymentConfiguration;
+
+/**
+ * Builds synthetic {@link DependentsDeployment} trees of {@link NoOpVerticle}s
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class DeploymentTrees {
+    private DeploymentTrees() {
+    }
+
+    /**
+     * Creates a tree with the supplied shape and number of verticles
+     * @param shape One of {@code wide} (one verticle with all the others as its dependents),
+     * {@code deep} (a chain of verticles), {@code balanced} (a complete binary tree) or
+     * {@code random} (each verticle is a dependent of a random earlier verticle, always the same
+     * tree for the same size)
+     * @param size The number of verticles in the tree
+     * @return The tree
+     */
+    static DependentsDeployment create(String shape, int size) {
+        int[] parents = new int[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            switch (shape) {
+                case "wide":
+                    parents[i] = i == 0 ? -1 : 0;
+                    break;
+                case "deep":
+                    parents[i] = i - 1;
+                    break;
+                case "balanced":
+                    parents[i] = i == 0 ? -1 : (i - 1) / 2;
+                    break;
+                case "random":
+                    parents[i] = i == 0 ? -1 : random.nextInt(i);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown shape " + shape);
+            }
+        }
+        return create(parents);
+    }
+
+    /**
+     * Creates a tree where the parent of the verticle at index {@code i} is the verticle at index
+     * {@code parents[i]} (-1 for root verticles). A parent must come before its dependents.
+     * @param parents The index of the parent of each verticle
+     * @return The tree
+     */
+    private static DependentsDeployment create(int[] parents) {
+        DependentsDeployment roots = new DependentsDeployment();
+        DeploymentConfiguration[] configs = new DeploymentConfiguration[parents.length];
+        Map<Integer, DependentsDeployment> dependents = new HashMap<>();
+        for (int i = 0; i < parents.length; i++) {
+            configs[i] = new DeploymentConfiguration().setName(NoOpVerticle.class.getName());
+            if (parents[i] == -1) {
+                roots.getConfigurations().add(configs[i]);
+            } else {
+                DeploymentConfiguration parent = configs[parents[i]];
+                dependents.computeIfAbsent(parents[i], index -> {
+                    DependentsDeployment deps = new DependentsDeployment();
+                    parent.getDependents().add(deps);
+                    return deps;
+                }).getConfigurations().add(configs[i]);
+            }
+        }
+        return roots;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.chibchasoft.vertx.verticle.deployment.DependentsDeployment;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Measures the cost of converting synthetic {@link DependentsDeployment} trees (see
+ * {@link DeploymentTrees#create(String, int)}) from and to JSON. Run with {@code -prof gc} to get
+ * the allocations per operation. Encoding the deep tree recurses once per level in Jackson, hence
+ * the larger thread stack.
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    @Param({"wide", "deep", "balanced", "random"})
+    private String               shape;
+
+    @Param({"1000"})
+    private int                  size;
+
+    private DependentsDeployment deployment;
+    private JsonObject           json;
+    private String               encoded;
+
+    @Setup
+    public void setUp() {
+        deployment = DeploymentTrees.create(shape, size);
+        deployment.getConfigurations().forEach(cfg -> cfg.setDeploymentOptions(
+            new DeploymentOptions().setConfig(new JsonObject().put("key", "value"))));
+        json = deployment.toJson();
+        encoded = json.encode();
+    }
+
+    @Benchmark
+    public DependentsDeployment fromJson() {
+        return new DependentsDeployment(json);
+    }
+
+    @Benchmark
+    public JsonObject toJson() {
+        return deployment.toJson();
+    }
+
+    @Benchmark
+    public String roundTrip() {
+        return new DependentsDeployment(new JsonObject(encoded)).toJson().encode();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * <p>The time each verticle took to deploy in previous boots, by verticle name. The time recorded
+ * for a verticle is averaged with the one already known, the last boot weighing half, so a single
+ * slow boot does not erase the history. Verticles with the same name share their time.</p>
+ * <p>Its JSON representation is {@code {"verticles": {"<name>": <milliseconds>, ...}}}.</p>
+ *
+ * @see DependentVerticleDeployer#setProfileFile(String)
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class BootProfile {
+    private final Map<String, Long> deployTimes = new HashMap<>();
+
+    /**
+     * Creates an empty profile
+     */
+    BootProfile() {
+    }
+
+    /**
+     * Creates a profile from its JSON representation, ignoring invalid entries
+     * @param json The JSON
+     */
+    BootProfile(JsonObject json) {
+        if (json.getValue("verticles") instanceof JsonObject) {
+            json.getJsonObject("verticles").forEach(entry -> {
+                if (entry.getValue() instanceof Number && ((Number) entry.getValue()).longValue() >= 0)
+                    deployTimes.put(entry.getKey(), ((Number) entry.getValue()).longValue());
+            });
+        }
+    }
+
+    /**
+     * Returns the time a verticle is expected to take to deploy
+     * @param name The name of the verticle
+     * @return The time in milliseconds, -1 if the verticle has no history
+     */
+    long expected(String name) {
+        Long deployTime = deployTimes.get(name);
+        return deployTime != null ? deployTime : -1;
+    }
+
+    /**
+     * Records the time a verticle took to deploy
+     * @param name The name of the verticle
+     * @param deployTime The time in milliseconds
+     */
+    void record(String name, long deployTime) {
+        deployTimes.merge(name, deployTime, (previous, last) -> (previous + last) / 2);
+    }
+
+    /**
+     * Returns the JSON representation of this profile
+     * @return The JSON
+     */
+    JsonObject toJson() {
+        JsonObject verticles = new JsonObject();
+        deployTimes.forEach(verticles::put);
+        return new JsonObject().put("verticles", verticles);
+    }
+}
@@ -0,0 +1,541 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.AsyncMap;
+
+/**
+ * <p>Coordinates the {@link DependentVerticleDeployer}s of a cluster deploying the same
+ * {@link DependentsDeployment}, each one being a member with its own roles. Nodes of the plan are
+ * identified by their index, which is the same for every member since they all deploy the same
+ * tree.</p>
+ * <p>Members register themselves in the {@code <name>.members} {@link AsyncMap}, with a time to
+ * live they keep renewing, so the members that died without leaving expire. The first member to
+ * put itself as the coordinator in the {@code <name>.placement} map waits for the minimum number
+ * of members and places each node on the least loaded member having the node's
+ * {@link DeploymentConfiguration#getRole() role} (any member if it has none), the load of a member
+ * being the number of verticle instances placed on it. Instances computed from an
+ * {@link DeploymentConfiguration#getInstancesExpression() expression} are counted with the cores
+ * and event loops each member registers. The placement is stored in the same map
+ * and announced on the {@code <name>.placed} address.</p>
+ * <p>A member finding a coordinator that is no longer registered takes its place, discarding the
+ * placement and completions it left if none of the members the nodes were placed on is registered
+ * either. A member joining a placement on members of which only some are still registered gives
+ * the nodes of the members that left to the least loaded registered members having their roles,
+ * itself included, discards the completions of those nodes and announces the new placement: the
+ * members already placed deploy the nodes they are given. Joining fails if the nodes are not
+ * placed within the join timeout.</p>
+ * <p>Every member deploys the nodes placed on it. Once a node is ready (or failed), its member
+ * records the outcome in the {@code <name>.completions} map and publishes it on the
+ * {@code <name>.completed} address, so the members with dependents of the node can deploy
+ * them.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class ClusterCoordinator {
+    private static final Logger                            LOGGER       = LoggerFactory.getLogger(ClusterCoordinator.class);
+    private static final String                            COORDINATOR  = "coordinator";
+    private static final String                            PLACEMENT    = "placement";
+    private static final long                              MEMBERS_POLL = 100;
+
+    private final Vertx                                    vertx;
+    private final Context                                  context;
+    private final String                                   name;
+    private final Set<String>                              roles;
+    private final int                                      eventLoops;
+    private final int                                      minMembers;
+    private final long                                     joinTimeout;
+    private final long                                     memberTimeToLive;
+    private final long                                     heartbeatInterval;
+    private final String                                   memberID     = UUID.randomUUID().toString();
+    private final BiConsumer<Integer, AsyncResult<String>> remoteCompletionHandler;
+    private final Handler<Integer>                         adoptionHandler;
+    private final List<Integer>                            completed    = new ArrayList<>();
+    private final List<MessageConsumer<JsonObject>>        consumers    = new ArrayList<>();
+    private AsyncMap<String, JsonObject>                   members;
+    private AsyncMap<String, JsonObject>                   placement;
+    private AsyncMap<String, JsonObject>                   completions;
+    private JsonArray                                      assignedTo;
+    private Handler<AsyncResult<boolean[]>>                placementHandler;
+    private long                                           joinTimerID  = -1;
+    private long                                           heartbeatID  = -1;
+
+    /**
+     * Creates the coordinator of a member
+     * @param vertx The (clustered) Vert.x instance
+     * @param name The name of the distributed deployment, shared by all its members
+     * @param roles The roles of this member
+     * @param eventLoops The number of event loops of this member, used by the instances expressions
+     * @param minMembers The number of members to wait for before placing the nodes
+     * @param joinTimeout The time in milliseconds to wait for the nodes to be placed
+     * @param memberTimeToLive The time to live in milliseconds of the registration of this member
+     * @param heartbeatInterval The interval in milliseconds between the renewals of the
+     * registration, shorter than its time to live
+     * @param remoteCompletionHandler The handler called, on the context creating this coordinator,
+     * with the index and outcome of each node completed by another member
+     * @param adoptionHandler The handler called, on the context creating this coordinator, with
+     * the index of each node of a member that left given to this member once placed
+     */
+    ClusterCoordinator(Vertx vertx, String name, Set<String> roles, int eventLoops, int minMembers, long joinTimeout,
+                       long memberTimeToLive, long heartbeatInterval,
+                       BiConsumer<Integer, AsyncResult<String>> remoteCompletionHandler,
+                       Handler<Integer> adoptionHandler) {
+        this.vertx = vertx;
+        this.context = vertx.getOrCreateContext();
+        this.name = name;
+        this.roles = roles;
+        this.eventLoops = eventLoops;
+        this.minMembers = minMembers;
+        this.joinTimeout = joinTimeout;
+        this.memberTimeToLive = memberTimeToLive;
+        this.heartbeatInterval = heartbeatInterval;
+        this.remoteCompletionHandler = remoteCompletionHandler;
+        this.adoptionHandler = adoptionHandler;
+    }
+
+    /**
+     * Joins the distributed deployment and waits for the nodes to be placed
+     * @param plan The sealed plan of the tree
+     * @param placementHandler The handler called with, for each node index, whether the node is
+     * placed on this member. It fails if the nodes are not placed within the join timeout.
+     */
+    void join(DeploymentPlan plan, Handler<AsyncResult<boolean[]>> placementHandler) {
+        this.placementHandler = placementHandler;
+        joinTimerID = vertx.setTimer(joinTimeout, id -> {
+            joinTimerID = -1;
+            joined(Future.failedFuture(new IllegalStateException(
+                "The verticles of " + name + " were not placed within " + joinTimeout + " ms")));
+        });
+        MessageConsumer<JsonObject> completedConsumer =
+            vertx.eventBus().consumer(name + ".completed", message -> remoteCompleted(message.body()));
+        MessageConsumer<JsonObject> placedConsumer =
+            vertx.eventBus().consumer(name + ".placed", message -> placed(plan, message.body()));
+        consumers.add(completedConsumer);
+        consumers.add(placedConsumer);
+        // The placement is only read once the announcements can no longer be missed
+        Future<Void> completedRegistered = Future.future();
+        Future<Void> placedRegistered = Future.future();
+        completedConsumer.completionHandler(completedRegistered);
+        placedConsumer.completionHandler(placedRegistered);
+
+        Future<AsyncMap<String, JsonObject>> membersFuture = Future.future();
+        Future<AsyncMap<String, JsonObject>> placementFuture = Future.future();
+        Future<AsyncMap<String, JsonObject>> completionsFuture = Future.future();
+        vertx.sharedData().getAsyncMap(name + ".members", membersFuture);
+        vertx.sharedData().getAsyncMap(name + ".placement", placementFuture);
+        vertx.sharedData().getAsyncMap(name + ".completions", completionsFuture);
+        membersFuture.compose(map -> {
+            members = map;
+            return placementFuture;
+        }).compose(map -> {
+            placement = map;
+            return completionsFuture;
+        }).compose(map -> {
+            completions = map;
+            return CompositeFuture.all(completedRegistered, placedRegistered);
+        }).compose(registeredConsumers -> {
+            JsonObject member = new JsonObject().put("roles", new JsonArray(new ArrayList<>(roles)))
+                                                .put("cores", Runtime.getRuntime().availableProcessors())
+                                                .put("eventLoops", eventLoops);
+            Future<Void> registered = Future.future();
+            members.put(memberID, member, memberTimeToLive, registered);
+            return registered.map(v -> member);
+        }).setHandler(onContext(ar -> {
+            if (ar.failed()) {
+                joined(Future.failedFuture(ar.cause()));
+                return;
+            }
+            // Renewing the registration, for as long as this member has not left
+            heartbeatID = vertx.setPeriodic(heartbeatInterval, id -> members.put(memberID, ar.result(), memberTimeToLive, res -> {
+                if (res.failed())
+                    LOGGER.warn("Unable to renew the membership of " + name, res.cause());
+            }));
+            claim(plan);
+        }));
+    }
+
+    /**
+     * Records the outcome of a node placed on this member and announces it to the other members
+     * @param index The index of the node
+     * @param result The deployment ID of the node's verticle or the failure
+     */
+    void completed(int index, AsyncResult<String> result) {
+        JsonObject record = new JsonObject().put("index", index).put("memberID", memberID);
+        if (result.succeeded())
+            record.put("deploymentID", result.result());
+        else
+            record.put("failure", String.valueOf(result.cause().getMessage()));
+        completed.add(index);
+        completions.put(String.valueOf(index), record, ar -> vertx.eventBus().publish(name + ".completed", record));
+    }
+
+    /**
+     * Leaves the distributed deployment, removing this member's records. The last member to leave
+     * removes the placement as well.
+     * @param leaveHandler The handler called once this member has left
+     */
+    void leave(Handler<AsyncResult<Void>> leaveHandler) {
+        consumers.forEach(MessageConsumer::unregister);
+        consumers.clear();
+        placementHandler = null;
+        if (joinTimerID != -1) {
+            vertx.cancelTimer(joinTimerID);
+            joinTimerID = -1;
+        }
+        if (heartbeatID != -1) {
+            vertx.cancelTimer(heartbeatID);
+            heartbeatID = -1;
+        }
+        if (members == null) {
+            leaveHandler.handle(Future.succeededFuture());
+            return;
+        }
+        List<Future<?>> removals = new ArrayList<>();
+        for (Integer index : completed) {
+            Future<JsonObject> removal = Future.future();
+            completions.remove(String.valueOf(index), removal);
+            removals.add(removal);
+        }
+        completed.clear();
+        Future<JsonObject> removal = Future.future();
+        members.remove(memberID, removal);
+        removals.add(removal);
+        Futures.all(removals).compose(v -> {
+            Future<Integer> size = Future.future();
+            members.size(size);
+            return size;
+        }).compose(size -> {
+            Future<Void> cleared = Future.future();
+            if (size == 0)
+                placement.clear(cleared);
+            else
+                cleared.complete();
+            return cleared;
+        }).setHandler(onContext(leaveHandler));
+    }
+
+    /**
+     * Puts this member as the coordinator, unless there is one already
+     * @param plan The plan
+     */
+    private void claim(DeploymentPlan plan) {
+        placement.putIfAbsent(COORDINATOR, new JsonObject().put("memberID", memberID), onContext(ar -> {
+            if (ar.failed())
+                joined(Future.failedFuture(ar.cause()));
+            else if (ar.result() == null)
+                awaitMembers(plan);
+            else
+                follow(plan, ar.result());
+        }));
+    }
+
+    /**
+     * Uses the placement of the coordinator, taking its place if it is no longer registered
+     * @param plan The plan
+     * @param coordinator The coordinator
+     */
+    private void follow(DeploymentPlan plan, JsonObject coordinator) {
+        Future<JsonObject> assignmentsFuture = Future.future();
+        Future<Map<String, JsonObject>> registeredFuture = Future.future();
+        placement.get(PLACEMENT, assignmentsFuture);
+        members.entries(registeredFuture);
+        CompositeFuture.all(assignmentsFuture, registeredFuture).setHandler(onContext(ar -> {
+            if (ar.failed()) {
+                joined(Future.failedFuture(ar.cause()));
+                return;
+            }
+            JsonObject assignments = assignmentsFuture.result();
+            Map<String, JsonObject> registered = registeredFuture.result();
+            List<?> placedOn = assignments != null ? assignments.getJsonArray("members").getList() : Collections.emptyList();
+            boolean stale = !placedOn.isEmpty() && Collections.disjoint(placedOn, registered.keySet());
+            if (assignments != null && !stale) {
+                // The placement may have been announced before this member subscribed
+                if (registered.keySet().containsAll(placedOn))
+                    placed(plan, assignments);
+                else
+                    replace(plan, coordinator, assignments, registered);
+            } else if (!registered.containsKey(coordinator.getString("memberID"))) {
+                takeOver(plan, coordinator);
+            }
+            // Otherwise, the coordinator announces the placement once it places the nodes
+        }));
+    }
+
+    /**
+     * Gives the nodes placed on members that are no longer registered to the registered members,
+     * discarding the completions of those nodes, and announces the new placement
+     * @param plan The plan
+     * @param coordinator The coordinator
+     * @param assignments The placement
+     * @param registered The roles, cores and event loops by registered member
+     */
+    private void replace(DeploymentPlan plan, JsonObject coordinator, JsonObject assignments,
+                         Map<String, JsonObject> registered) {
+        JsonObject replaced;
+        try {
+            replaced = place(plan, registered, assignments.getJsonArray("members"));
+        } catch (IllegalStateException e) {
+            joined(Future.failedFuture(e));
+            return;
+        }
+        Future<Boolean> swapped = Future.future();
+        placement.replaceIfPresent(PLACEMENT, assignments, replaced, swapped);
+        swapped.compose(done -> {
+            Future<Boolean> discarded = Future.future();
+            if (!done) {
+                discarded.complete(false);
+                return discarded;
+            }
+            LOGGER.warn("Giving the verticles of the members of " + name + " which left to the remaining members");
+            JsonArray previous = assignments.getJsonArray("members");
+            JsonArray current = replaced.getJsonArray("members");
+            List<Future<?>> removals = new ArrayList<>();
+            for (int i = 0; i < previous.size(); i++) {
+                if (!previous.getString(i).equals(current.getString(i))) {
+                    Future<JsonObject> removal = Future.future();
+                    completions.remove(String.valueOf(i), removal);
+                    removals.add(removal);
+                }
+            }
+            return Futures.all(removals).map(true);
+        }).setHandler(onContext(ar -> {
+            if (ar.failed()) {
+                joined(Future.failedFuture(ar.cause()));
+            } else if (ar.result()) {
+                vertx.eventBus().publish(name + ".placed", replaced);
+                placed(plan, replaced);
+            } else {
+                // Another member replaced the placement first
+                follow(plan, coordinator);
+            }
+        }));
+    }
+
+    /**
+     * Replaces a coordinator that is no longer registered, discarding what is left of its placement
+     * @param plan The plan
+     * @param coordinator The coordinator
+     */
+    private void takeOver(DeploymentPlan plan, JsonObject coordinator) {
+        Future<Boolean> replaced = Future.future();
+        placement.replaceIfPresent(COORDINATOR, coordinator, new JsonObject().put("memberID", memberID), replaced);
+        replaced.compose(claimed -> {
+            Future<Boolean> discarded = Future.future();
+            if (!claimed) {
+                discarded.complete(false);
+                return discarded;
+            }
+            LOGGER.warn("Replacing coordinator " + coordinator.getString("memberID") + " of " + name + " which left");
+            Future<JsonObject> removed = Future.future();
+            Future<Void> cleared = Future.future();
+            placement.remove(PLACEMENT, removed);
+            completions.clear(cleared);
+            return CompositeFuture.all(removed, cleared).map(true);
+        }).setHandler(onContext(ar -> {
+            if (ar.failed())
+                joined(Future.failedFuture(ar.cause()));
+            else if (ar.result())
+                awaitMembers(plan);
+            else
+                // Another member either became the coordinator or the last member left
+                claim(plan);
+        }));
+    }
+
+    private void awaitMembers(DeploymentPlan plan) {
+        if (placementHandler == null)
+            return;
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug("coordinating " + name);
+        members.entries(onContext(ar -> {
+            if (ar.failed()) {
+                joined(Future.failedFuture(ar.cause()));
+            } else if (ar.result().size() < minMembers) {
+                vertx.setTimer(MEMBERS_POLL, id -> awaitMembers(plan));
+            } else {
+                JsonObject assignments;
+                try {
+                    assignments = place(plan, ar.result(), null);
+                } catch (IllegalStateException e) {
+                    joined(Future.failedFuture(e));
+                    return;
+                }
+                placement.put(PLACEMENT, assignments, onContext(res -> {
+                    if (res.failed())
+                        joined(Future.failedFuture(res.cause()));
+                    else
+                        vertx.eventBus().publish(name + ".placed", assignments);
+                }));
+            }
+        }));
+    }
+
+    /**
+     * Places each node on the least loaded member having its role
+     * @param plan The plan
+     * @param registered The roles, cores and event loops by member
+     * @param previous The member of each node, by node index, of a placement whose nodes placed on
+     * registered members are kept there, null to place every node
+     * @return The member of each node, by node index
+     * @throws IllegalStateException if no member has the role of a node
+     */
+    private static JsonObject place(DeploymentPlan plan, Map<String, JsonObject> registered, JsonArray previous) {
+        List<String> memberIDs = new ArrayList<>(registered.keySet());
+        Collections.sort(memberIDs);
+        int[] loads = new int[memberIDs.size()];
+        JsonArray assignments = new JsonArray();
+        List<DeploymentPlan.Node> nodes = plan.getNodes();
+        if (previous != null) {
+            for (DeploymentPlan.Node node : nodes) {
+                int kept = memberIDs.indexOf(previous.getString(node.index));
+                if (kept != -1)
+                    loads[kept] += instances(node.config, registered.get(memberIDs.get(kept)));
+            }
+        }
+        for (DeploymentPlan.Node node : nodes) {
+            if (previous != null && registered.containsKey(previous.getString(node.index))) {
+                assignments.add(previous.getString(node.index));
+                continue;
+            }
+            String role = node.config.getRole();
+            int chosen = -1;
+            for (int i = 0; i < memberIDs.size(); i++) {
+                JsonArray memberRoles = registered.get(memberIDs.get(i)).getJsonArray("roles");
+                if ((role == null || memberRoles.contains(role)) && (chosen == -1 || loads[i] < loads[chosen]))
+                    chosen = i;
+            }
+            if (chosen == -1)
+                throw new IllegalStateException("No member has the role " + role + " of verticle " + node.config.getName());
+            loads[chosen] += instances(node.config, registered.get(memberIDs.get(chosen)));
+            assignments.add(memberIDs.get(chosen));
+        }
+        return new JsonObject().put("members", assignments);
+    }
+
+    /**
+     * Gets the number of instances of a verticle on a member
+     * @param config The {@link DeploymentConfiguration} of the verticle
+     * @param member The registration of the member
+     * @return The number of instances
+     */
+    private static int instances(DeploymentConfiguration config, JsonObject member) {
+        if (config.getInstancesExpression() != null) {
+            try {
+                return InstancesExpression.evaluate(config.getInstancesExpression(),
+                                                    member.getInteger("cores", 1), member.getInteger("eventLoops", 1));
+            } catch (IllegalArgumentException e) {
+                // Fails when deployed by the member, counted as a single instance until then
+                return 1;
+            }
+        }
+        return config.options() != null ? config.options().getInstances() : 1;
+    }
+
+    /**
+     * Uses the placement of the nodes: the first one places this member, the next ones give it
+     * the nodes of the members that left
+     * @param plan The plan
+     * @param assignments The member of each node, by node index
+     */
+    private void placed(DeploymentPlan plan, JsonObject assignments) {
+        JsonArray placedOn = assignments.getJsonArray("members");
+        if (assignedTo != null) {
+            adopt(placedOn);
+            return;
+        }
+        if (placementHandler == null)
+            return;
+        assignedTo = placedOn;
+        if (placedOn.size() != plan.getNodes().size()) {
+            joined(Future.failedFuture(new IllegalStateException(
+                "The placement of " + name + " has " + placedOn.size() + " verticles, not " + plan.getNodes().size())));
+            return;
+        }
+        boolean[] local = new boolean[placedOn.size()];
+        for (int i = 0; i < local.length; i++)
+            local[i] = memberID.equals(placedOn.getString(i));
+        joined(Future.succeededFuture(local));
+
+        // Nodes completed before this member subscribed to the completions
+        completions.entries(onContext(ar -> {
+            if (ar.succeeded())
+                ar.result().values().forEach(this::remoteCompleted);
+        }));
+    }
+
+    /**
+     * Takes the nodes of a new placement given to this member
+     * @param placedOn The member of each node, by node index
+     */
+    private void adopt(JsonArray placedOn) {
+        if (placedOn.size() != assignedTo.size())
+            return;
+        JsonArray previous = assignedTo;
+        assignedTo = placedOn;
+        for (int i = 0; i < placedOn.size(); i++) {
+            if (memberID.equals(placedOn.getString(i)) && !memberID.equals(previous.getString(i))) {
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("adopting verticle " + i + " of " + name);
+                adoptionHandler.handle(i);
+            }
+        }
+    }
+
+    /**
+     * Calls the placement handler, once
+     * @param result For each node index, whether the node is placed on this member, or the failure
+     */
+    private void joined(AsyncResult<boolean[]> result) {
+        if (placementHandler == null)
+            return;
+        Handler<AsyncResult<boolean[]>> handler = placementHandler;
+        placementHandler = null;
+        if (joinTimerID != -1) {
+            vertx.cancelTimer(joinTimerID);
+            joinTimerID = -1;
+        }
+        handler.handle(result);
+    }
+
+    private void remoteCompleted(JsonObject record) {
+        if (memberID.equals(record.getString("memberID")))
+            return;
+        AsyncResult<String> result = record.containsKey("failure") ?
+            Future.failedFuture(record.getString("failure")) : Future.succeededFuture(record.getString("deploymentID"));
+        remoteCompletionHandler.accept(record.getInteger("index"), result);
+    }
+
+    private <T> Handler<AsyncResult<T>> onContext(Handler<AsyncResult<T>> handler) {
+        return ar -> context.runOnContext(v -> handler.handle(ar));
+    }
+}
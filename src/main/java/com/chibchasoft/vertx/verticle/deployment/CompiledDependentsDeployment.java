@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * <p>A {@link DependentsDeployment} compiled into a compact binary form that can be loaded without
+ * parsing (or validating) its JSON representation. The binary form holds:</p>
+ * <ul>
+ * <li>A table with every distinct string (names, addresses, roles, serialized
+ * {@link DeploymentOptions}...), each string being decoded once when loaded</li>
+ * <li>The {@link DependentsDeployment}s of the tree, with the indices of their configurations</li>
+ * <li>The configurations, flattened with each configuration before its dependents, with the
+ * indices of their {@link DependentsDeployment}s of dependents, of the
+ * {@link DependentsDeployment} they were first found in and of their prerequisites, resolved when
+ * compiled</li>
+ * <li>The order, each configuration after all its prerequisites, the configurations are
+ * deployed in</li>
+ * <li>The checksum of the raw bytes of the source the plan was compiled from, to detect plans that
+ * drifted from their source without parsing it (see {@link #matches(Buffer)})</li>
+ * </ul>
+ * <p>Compiled files are loaded through a memory mapping (see {@link #load(Path)}). The deployment
+ * plan is built from the stored indices and order, without resolving names again, and each
+ * distinct serialized {@link DeploymentOptions} is only parsed the first time a configuration
+ * using it needs it.</p>
+ *
+ * @see DependentVerticleDeployer#setCompiledDeploymentFile(String)
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+public final class CompiledDependentsDeployment {
+    private static final int MAGIC   = 0x56445044; // "VDPD"
+    private static final int VERSION = 2;
+
+    private final DependentsDeployment dependentsDeployment;
+    private final DeploymentPlan       plan;
+    private final List<String>         deploymentOrder;
+    private final long                 checksum;
+
+    private CompiledDependentsDeployment(DependentsDeployment dependentsDeployment, DeploymentPlan plan,
+                                         long checksum) {
+        this.dependentsDeployment = dependentsDeployment;
+        this.plan = plan;
+        List<String> order = new ArrayList<>(plan.getOrderedNodes().size());
+        plan.getOrderedNodes().forEach(node -> order.add(node.config.getName()));
+        this.deploymentOrder = Collections.unmodifiableList(order);
+        this.checksum = checksum;
+    }
+
+    /**
+     * Returns the {@link DependentsDeployment} loaded from the compiled plan
+     * @return The {@link DependentsDeployment}
+     */
+    public DependentsDeployment getDependentsDeployment() {
+        return dependentsDeployment;
+    }
+
+    /**
+     * Returns the sealed plan of the {@link #getDependentsDeployment()}, built from the compiled
+     * indices and order
+     * @return The plan
+     */
+    DeploymentPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the names of the configurations in the order they are deployed, each configuration
+     * after all its prerequisites
+     * @return The names
+     */
+    public List<String> getDeploymentOrder() {
+        return deploymentOrder;
+    }
+
+    /**
+     * Returns the checksum of the raw bytes of the source the plan was compiled from
+     * @return The checksum
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Was this plan compiled from the supplied source? The source is not parsed: any change to its
+     * bytes, even one not changing the {@link DependentsDeployment}, is a drift.
+     * @param source The raw bytes of the JSON representation of a {@link DependentsDeployment}
+     * @return true if the plan was compiled from the same bytes, false if it drifted
+     */
+    public boolean matches(Buffer source) {
+        Objects.requireNonNull(source, "source is required");
+        return checksum == checksum(source);
+    }
+
+    /**
+     * Computes the checksum of the raw bytes of a source
+     * @param source The raw bytes of the JSON representation of a {@link DependentsDeployment}
+     * @return The checksum
+     */
+    public static long checksum(Buffer source) {
+        Objects.requireNonNull(source, "source is required");
+        CRC32 crc = new CRC32();
+        crc.update(source.getBytes());
+        return crc.getValue();
+    }
+
+    /**
+     * Compiles the JSON representation of a {@link DependentsDeployment}, typically the content
+     * of a dependents deployment file, storing the checksum of its raw bytes
+     * @param source The raw bytes of the JSON representation
+     * @return The compiled plan
+     * @throws io.vertx.core.json.DecodeException if the source is not a JSON object
+     * @throws IllegalArgumentException if a configuration depends on a name not found in the tree,
+     * a lazy configuration has no address or the tree has {@link DeploymentTemplate}s
+     * @throws IllegalStateException if the dependencies are cyclic
+     */
+    public static Buffer compile(Buffer source) {
+        Objects.requireNonNull(source, "source is required");
+        return compile(new DependentsDeployment(new JsonObject(source)), checksum(source));
+    }
+
+    /**
+     * Compiles a {@link DependentsDeployment}, storing the checksum of its encoded
+     * {@link DependentsDeployment#toJson() JSON representation}
+     * @param deployment The {@link DependentsDeployment}
+     * @return The compiled plan
+     * @throws IllegalArgumentException if a configuration depends on a name not found in the tree,
+     * a lazy configuration has no address or the tree has {@link DeploymentTemplate}s
+     * @throws IllegalStateException if the dependencies are cyclic
+     */
+    public static Buffer compile(DependentsDeployment deployment) {
+        Objects.requireNonNull(deployment, "deployment is required");
+        return compile(deployment, checksum(deployment.toJson().toBuffer()));
+    }
+
+    private static Buffer compile(DependentsDeployment deployment, long checksum) {
+        DeploymentPlan plan = new DeploymentPlan(deployment);
+
+        Map<DependentsDeployment, Integer> groups = new IdentityHashMap<>();
+        List<DependentsDeployment> groupList = new ArrayList<>();
+        groups.put(deployment, 0);
+        groupList.add(deployment);
+        plan.getNodes().forEach(node -> node.config.getDependents().forEach(group -> {
+            if (!groups.containsKey(group)) {
+                groups.put(group, groupList.size());
+                groupList.add(group);
+            }
+        }));
+        // The copies of templates are expanded by the plan, their groups are not part of the tree
+        if (groupList.stream().anyMatch(group -> !group.getTemplates().isEmpty()))
+            throw new IllegalArgumentException("Dependents deployments with templates cannot be compiled");
+        Map<DeploymentConfiguration, Integer> nodes = new IdentityHashMap<>();
+        plan.getNodes().forEach(node -> nodes.put(node.config, node.index));
+
+        StringTable strings = new StringTable();
+        Buffer body = Buffer.buffer();
+        body.appendInt(groupList.size());
+        for (DependentsDeployment group : groupList) {
+            body.appendInt(group.getMaxInFlight()).appendInt(group.getConfigurations().size());
+            group.getConfigurations().forEach(cfg -> body.appendInt(nodes.get(cfg)));
+        }
+        // Interned options are shared by many nodes, each is serialized once
+        Map<DeploymentOptions, String> encoded = new IdentityHashMap<>();
+        body.appendInt(plan.getNodes().size());
+        for (DeploymentPlan.Node node : plan.getNodes()) {
+            DeploymentConfiguration cfg = node.config;
+            int flags = (cfg.isShared() ? 1 : 0) | (cfg.isLazy() ? 2 : 0) | (cfg.isColdParentTolerated() ? 4 : 0) |
+                        (cfg.isOptional() ? 8 : 0);
+            String options = cfg.options() != null ?
+                encoded.computeIfAbsent(cfg.options(), opts -> opts.toJson().encode()) : null;
+            body.appendInt(strings.index(cfg.getName()))
+                .appendInt(strings.index(options))
+                .appendInt(strings.index(cfg.getInstancesExpression()))
+                .appendInt(strings.index(cfg.getAddress()))
+                .appendInt(strings.index(cfg.getReadinessAddress()))
+                .appendInt(strings.index(cfg.getRole()))
+                .appendByte((byte) flags)
+                .appendLong(cfg.getTimeout())
+                .appendInt(cfg.getMaxRetries())
+                .appendLong(cfg.getBackoff())
+                .appendLong(cfg.getReadinessPollInterval())
+                .appendInt(cfg.getDependsOn().size());
+            cfg.getDependsOn().forEach(name -> body.appendInt(strings.index(name)));
+            body.appendInt(cfg.getDependents().size());
+            cfg.getDependents().forEach(group -> body.appendInt(groups.get(group)));
+            body.appendInt(groups.get(node.group)).appendInt(node.prerequisites.size());
+            node.prerequisites.forEach(prerequisite -> body.appendInt(prerequisite.index));
+        }
+        plan.getOrderedNodes().forEach(node -> body.appendInt(node.index));
+
+        Buffer buffer = Buffer.buffer(body.length() + 64);
+        buffer.appendInt(MAGIC).appendInt(VERSION).appendLong(checksum);
+        buffer.appendInt(strings.list.size());
+        strings.list.forEach(string -> {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            buffer.appendInt(bytes.length).appendBytes(bytes);
+        });
+        return buffer.appendBuffer(body);
+    }
+
+    /**
+     * Loads a compiled plan (see {@link #compile(DependentsDeployment)}) from a file, mapping it
+     * into memory
+     * @param path The path of the file
+     * @return The compiled plan
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a valid compiled plan
+     */
+    public static CompiledDependentsDeployment load(Path path) throws IOException {
+        Objects.requireNonNull(path, "path is required");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Loads a compiled plan (see {@link #compile(DependentsDeployment)})
+     * @param buffer The compiled plan
+     * @return The compiled plan
+     * @throws IllegalArgumentException if the buffer is not a valid compiled plan
+     */
+    public static CompiledDependentsDeployment load(Buffer buffer) {
+        Objects.requireNonNull(buffer, "buffer is required");
+        return load(ByteBuffer.wrap(buffer.getBytes()));
+    }
+
+    private static CompiledDependentsDeployment load(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new IllegalArgumentException("Not a compiled dependents deployment");
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IllegalArgumentException("Unsupported compiled dependents deployment version " + version);
+            long checksum = buffer.getLong();
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int[][] groupMembers = new int[buffer.getInt()][];
+            DependentsDeployment[] groups = new DependentsDeployment[groupMembers.length];
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = new DependentsDeployment().setMaxInFlight(buffer.getInt());
+                groupMembers[i] = new int[buffer.getInt()];
+                for (int j = 0; j < groupMembers[i].length; j++)
+                    groupMembers[i][j] = buffer.getInt();
+            }
+
+            // Each distinct serialized DeploymentOptions is parsed once, when first needed, and
+            // shared by its nodes
+            Map<String, Supplier<DeploymentOptions>> options = new HashMap<>();
+            DeploymentConfiguration[] configs = new DeploymentConfiguration[buffer.getInt()];
+            DependentsDeployment[] nodeGroups = new DependentsDeployment[configs.length];
+            int[][] prerequisites = new int[configs.length][];
+            for (int i = 0; i < configs.length; i++) {
+                DeploymentConfiguration cfg = new DeploymentConfiguration();
+                cfg.setName(string(strings, buffer.getInt()));
+                String optionsJson = string(strings, buffer.getInt());
+                if (optionsJson != null)
+                    cfg.setSharedDeploymentOptions(options.computeIfAbsent(optionsJson, EncodedOptions::new));
+                cfg.setInstancesExpression(string(strings, buffer.getInt()))
+                   .setAddress(string(strings, buffer.getInt()))
+                   .setReadinessAddress(string(strings, buffer.getInt()))
+                   .setRole(string(strings, buffer.getInt()));
+                int flags = buffer.get();
+                cfg.setShared((flags & 1) != 0)
+                   .setLazy((flags & 2) != 0)
+                   .setColdParentTolerated((flags & 4) != 0)
+                   .setOptional((flags & 8) != 0)
+                   .setTimeout(buffer.getLong())
+                   .setMaxRetries(buffer.getInt())
+                   .setBackoff(buffer.getLong())
+                   .setReadinessPollInterval(buffer.getLong());
+                for (int j = buffer.getInt(); j > 0; j--)
+                    cfg.getDependsOn().add(string(strings, buffer.getInt()));
+                for (int j = buffer.getInt(); j > 0; j--)
+                    cfg.getDependents().add(element(groups, buffer.getInt()));
+                nodeGroups[i] = element(groups, buffer.getInt());
+                prerequisites[i] = new int[buffer.getInt()];
+                for (int j = 0; j < prerequisites[i].length; j++)
+                    prerequisites[i][j] = index(configs, buffer.getInt());
+                configs[i] = cfg;
+            }
+            for (int i = 0; i < groups.length; i++) {
+                for (int member : groupMembers[i])
+                    groups[i].getConfigurations().add(element(configs, member));
+            }
+
+            int[] order = new int[configs.length];
+            for (int i = 0; i < order.length; i++)
+                order[i] = index(configs, buffer.getInt());
+            DeploymentPlan plan = new DeploymentPlan(configs, nodeGroups, prerequisites, order);
+            return new CompiledDependentsDeployment(element(groups, 0), plan, checksum);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated compiled dependents deployment", e);
+        }
+    }
+
+    private static String string(String[] strings, int index) {
+        return index < 0 ? null : element(strings, index);
+    }
+
+    private static <T> T element(T[] array, int index) {
+        return array[index(array, index)];
+    }
+
+    private static int index(Object[] array, int index) {
+        if (index < 0 || index >= array.length)
+            throw new IllegalArgumentException("Corrupt compiled dependents deployment");
+        return index;
+    }
+
+    /**
+     * A serialized {@link DeploymentOptions}, parsed the first time it is needed
+     */
+    private static final class EncodedOptions implements Supplier<DeploymentOptions> {
+        private final String      json;
+        private DeploymentOptions options;
+
+        EncodedOptions(String json) {
+            this.json = json;
+        }
+
+        @Override
+        public synchronized DeploymentOptions get() {
+            if (options == null)
+                options = new DeploymentOptions(new JsonObject(json));
+            return options;
+        }
+    }
+
+    /**
+     * The distinct strings of a plan being compiled
+     */
+    private static final class StringTable {
+        final List<String>         list    = new ArrayList<>();
+        final Map<String, Integer> indices = new HashMap<>();
+
+        int index(String string) {
+            if (string == null)
+                return -1;
+            return indices.computeIfAbsent(string, s -> {
+                list.add(s);
+                return list.size() - 1;
+            });
+        }
+    }
+}
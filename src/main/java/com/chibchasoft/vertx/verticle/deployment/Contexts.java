@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+/**
+ * Creates Vert.x contexts that belong to no deployment and deploys verticles from them
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class Contexts {
+    private Contexts() {
+    }
+
+    /**
+     * Creates an event loop context that belongs to no deployment: the verticles deployed from it
+     * are nobody's children, so Vert.x only undeploys them when asked to (or when closed). The
+     * context keeps the class loader of the calling thread, which verticle classes are loaded with.
+     * @param vertx The Vert.x instance
+     * @return The context
+     */
+    static Context detached(Vertx vertx) {
+        // Vert.x creates a new context for a thread that does not belong to it, and a new thread
+        // inherits the class loader of the calling one
+        AtomicReference<Context> context = new AtomicReference<>();
+        Thread thread = new Thread(() -> context.set(vertx.getOrCreateContext()), "vertx-detached-context");
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while creating a context", e);
+        }
+        return context.get();
+    }
+
+    /**
+     * Deploys a verticle from a context, the verticle being a child of the context's deployment
+     * if it has one
+     * @param context The context the verticle is deployed from
+     * @param name The name of the verticle
+     * @param options The deployment options, may be null
+     * @param completionHandler The handler called, on the calling context, with the deployment ID
+     */
+    static void deployVerticle(Context context, String name, DeploymentOptions options,
+                               Handler<AsyncResult<String>> completionHandler) {
+        Vertx vertx = context.owner();
+        Context caller = vertx.getOrCreateContext();
+        Handler<AsyncResult<String>> deploymentHandler = ar -> caller.runOnContext(v -> completionHandler.handle(ar));
+        context.runOnContext(v -> {
+            if (options != null)
+                vertx.deployVerticle(name, options, deploymentHandler);
+            else
+                vertx.deployVerticle(name, deploymentHandler);
+        });
+    }
+}
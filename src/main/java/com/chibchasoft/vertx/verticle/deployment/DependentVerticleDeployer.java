@@ -12,8 +12,21 @@
  */
 package com.chibchasoft.vertx.verticle.deployment;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
 import io.vertx.core.DeploymentOptions;
 import org.slf4j.Logger;
@@ -21,20 +34,46 @@ import org.slf4j.LoggerFactory;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
-import io.vertx.core.CompositeFuture;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 
 /**
  * <p>Verticle that deploys other verticles which upon successful of themselves may deploy zero or
  * more dependent verticles (and their dependents and so on).</p>
+ * <p>Besides its own dependents, a verticle may declare the names of other verticles found
+ * anywhere in the same tree that it depends on ({@link DeploymentConfiguration#getDependsOn()}),
+ * so a verticle needed by several others is deployed only once. A verticle is deployed as soon as
+ * all the verticles it depends on have been deployed and are ready (see
+ * {@link DeploymentConfiguration#setReadinessAddress(String)}).</p>
  * <p>If a verticle fails to deploy, none of its dependent verticles are deployed, otherwise all
  * its dependents are deployed at the same time (using either
  * {@link io.vertx.core.Vertx#deployVerticle(String, Handler)} or {@link
- * io.vertx.core.Vertx#deployVerticle(String, DeploymentOptions, Handler)}).</p>
+ * io.vertx.core.Vertx#deployVerticle(String, DeploymentOptions, Handler)}), unless the number of
+ * verticles deploying at the same time is limited (see {@link #setMaxDeploymentsInFlight(int)}
+ * and {@link DependentsDeployment#setMaxInFlight(int)}).</p>
  * <p>The DependentVerticleDeployer completes the future passed to {@link #start(Future)}
  * only and if only ALL deployments (and their dependents and so on) succeed. If any verticle
- * fails to deploy, the future is failed.</p>
+ * fails to deploy, the future is failed. {@link DeploymentConfiguration#isLazy() Lazy} verticles,
+ * and the verticles depending on them, are not waited for: they are deployed upon the first
+ * message sent to the lazy verticle's address.</p>
+ * <p>In a cluster, the verticles of a tree can be spread across several DependentVerticleDeployers,
+ * one per member (see {@link #setRoles(Set)}).</p>
+ * <p>Once deployed, the number of instances of a verticle can be changed without affecting its
+ * dependents (see {@link #scale(String, int, Handler)} and
+ * {@link #setScalingPolicy(ScalingPolicy)}).</p>
+ * <p>Verticles are undeployed in reverse dependency order, dependents before the verticles they
+ * depend on (see {@link #undeployDependents(Handler)}), including when this verticle is
+ * undeployed: they are not its children in Vert.x.</p>
+ * <p>A verticle listed by several DependentVerticleDeployers of the same Vert.x instance can be
+ * deployed only once by marking its configurations as shared (see
+ * {@link DeploymentConfiguration#setShared(boolean)}).</p>
  * 
  * @see DependentsDeployment
  * @see DeploymentConfiguration
@@ -42,8 +81,54 @@ import io.vertx.core.Handler;
  * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a> 
  */
 public class DependentVerticleDeployer extends AbstractVerticle {
-    private static final Logger  LOGGER               = LoggerFactory.getLogger(DependentVerticleDeployer.class);
-    private DependentsDeployment dependentsDeployment = null;
+    private static final Logger                       LOGGER                = LoggerFactory.getLogger(DependentVerticleDeployer.class);
+    private static final long                         PROFILE_DRIFT_FLOOR   = 100;
+    private DependentsDeployment                      dependentsDeployment  = null;
+    private String                                    dependentsDeploymentFile;
+    private String                                    compiledDeploymentFile;
+    private CompiledDependentsDeployment              compiledDeployment;
+    private DeploymentPlan                            compiledPlan;
+    private DependentsDeploymentValidator             validator;
+    private boolean                                   rollbackOnFailure;
+    private boolean                                   preloadClasses;
+    private String                                    profileFile;
+    private double                                    profileDriftRatio     = 2;
+    private BootProfile                               profile;
+    private boolean                                   profileRecorded;
+    private boolean                                   rollingBack;
+    private boolean                                   started;
+    private Context                                   deployContext;
+    private Map<DeploymentPlan.Node, DeploymentPlan.Node> skippedBy         = new IdentityHashMap<>();
+    private int                                       maxDeploymentsInFlight;
+    private int                                       eventLoops            = VertxOptions.DEFAULT_EVENT_LOOP_POOL_SIZE;
+    private long                                      undeployLevelTimeout;
+    private long                                      readinessTimeout      = 60000;
+    private long                                      maxBackoff            = 60000;
+    private volatile DeploymentState                  state;
+    private int                                       remainingDeployments;
+    private Future<Void>                              deploymentFuture;
+    private boolean                                   redeploying;
+    private boolean                                   expandingCopies;
+    private DeploymentScheduler                       scheduler;
+    private DeploymentAttempts                        attempts;
+    private long                                      startedAt;
+    private JsonObject                                startupReport;
+    private DeploymentMetrics                         metrics               = DeploymentMetrics.NONE;
+    private Map<DeploymentPlan.Node, LazyPlaceholder> placeholders          = new IdentityHashMap<>();
+    private Set<String>                               roles                 = new HashSet<>();
+    private String                                    clusterDeploymentName = "dependent-verticle-deployer";
+    private int                                       minMembers            = 1;
+    private long                                      joinTimeout           = 60000;
+    private long                                      memberTimeToLive      = 10000;
+    private long                                      heartbeatInterval     = 3000;
+    private ClusterCoordinator                        coordinator;
+    private boolean[]                                 remote;
+    private Map<DeploymentPlan.Node, Deque<String>>   extraDeployments     = new IdentityHashMap<>();
+    private Set<DeploymentPlan.Node>                  scaling              = Collections.newSetFromMap(new IdentityHashMap<>());
+    private ScalingPolicy                             scalingPolicy;
+    private long                                      scalingInterval      = 5000;
+    private long                                      scalingTimerID       = -1;
+    private Set<DeploymentPlan.Node>                  sharedNodes           = Collections.newSetFromMap(new IdentityHashMap<>());
 
     public DependentVerticleDeployer() {
     }
@@ -64,15 +149,1087 @@ public class DependentVerticleDeployer extends AbstractVerticle {
         this.dependentsDeployment = dependentsDeployment;
     }
 
+    /**
+     * Get the path of the JSON file with the {@link DependentsDeployment} to be deployed
+     * @return The path of the file, null if not set
+     */
+    public String getDependentsDeploymentFile() {
+        return dependentsDeploymentFile;
+    }
+
+    /**
+     * Sets the path of a JSON file with the {@link DependentsDeployment} to be deployed (see
+     * {@link DependentsDeployment#toJson()}), taking precedence over
+     * {@link #setDependentsDeployment(DependentsDeployment)}. The file is parsed as a stream (see
+     * {@link DependentsDeploymentParser}) and each root configuration (and its dependents) is
+     * deployed as soon as it has been parsed, except for configurations that depend on names
+     * ({@link DeploymentConfiguration#getDependsOn()}), which wait for the whole file to be parsed.
+     * Root configurations are only deployed as they are parsed if the root's
+     * {@code maxInFlight} (0 for no limit) precedes them in the file, as written by
+     * {@link DependentsDeployment#toJson()}; otherwise they wait for the whole file. Once a
+     * verticle fails to deploy, no more verticles are deployed. With a {@link #getValidator()},
+     * the whole file is parsed and validated before any verticle is deployed. Once started,
+     * {@link #getDependentsDeployment()} returns the parsed {@link DependentsDeployment}.
+     * @param dependentsDeploymentFile The path of the file
+     */
+    public void setDependentsDeploymentFile(String dependentsDeploymentFile) {
+        this.dependentsDeploymentFile = dependentsDeploymentFile;
+    }
+
+    /**
+     * Get the path of the compiled plan with the {@link DependentsDeployment} to be deployed
+     * @return The path of the file, null if not set
+     */
+    public String getCompiledDeploymentFile() {
+        return compiledDeploymentFile;
+    }
+
+    /**
+     * Sets the path of a compiled plan with the {@link DependentsDeployment} to be deployed (see
+     * {@link CompiledDependentsDeployment#compile(DependentsDeployment)}), taking precedence over
+     * {@link #setDependentsDeploymentFile(String)} and
+     * {@link #setDependentsDeployment(DependentsDeployment)}. The file is mapped into memory and
+     * loaded without parsing any JSON descriptor. If a {@link #setDependentsDeploymentFile(String)
+     * dependents deployment file} is set as well, it is taken as the source of the compiled plan
+     * and the start fails if the plan drifted from it (see
+     * {@link CompiledDependentsDeployment#matches(Buffer)}); otherwise checking the plan against
+     * its source is left to the caller. Once started, {@link #getDependentsDeployment()} returns
+     * the loaded {@link DependentsDeployment}.
+     * @param compiledDeploymentFile The path of the file
+     */
+    public void setCompiledDeploymentFile(String compiledDeploymentFile) {
+        this.compiledDeploymentFile = compiledDeploymentFile;
+    }
+
+    /**
+     * Get the compiled plan with the {@link DependentsDeployment} to be deployed
+     * @return The compiled plan, null if not set
+     */
+    public CompiledDependentsDeployment getCompiledDeployment() {
+        return compiledDeployment;
+    }
+
+    /**
+     * Sets a loaded compiled plan with the {@link DependentsDeployment} to be deployed (see
+     * {@link CompiledDependentsDeployment#load(Buffer)}), taking precedence over all the other ways
+     * of supplying the tree. Deploying a plan never modifies it, so the same compiled plan can be
+     * deployed by any number of DependentVerticleDeployers, even concurrently, without being
+     * loaded again. Once started, {@link #getDependentsDeployment()} returns its
+     * {@link DependentsDeployment}.
+     * @param compiledDeployment The compiled plan
+     */
+    public void setCompiledDeployment(CompiledDependentsDeployment compiledDeployment) {
+        this.compiledDeployment = compiledDeployment;
+    }
+
+    /**
+     * Get the validator applied to the {@link DependentsDeployment} before deploying it
+     * @return The validator, null if not set
+     */
+    public DependentsDeploymentValidator getValidator() {
+        return validator;
+    }
+
+    /**
+     * Sets the validator applied to the {@link DependentsDeployment} (or compiled plan) before any
+     * of its verticles is deployed, on start and on {@link #redeploy(DependentsDeployment, Handler)}.
+     * If errors are found, nothing is deployed and the start (or redeploy) fails with an
+     * {@link IllegalArgumentException} listing all of them. Dependents deployment files (see
+     * {@link #setDependentsDeploymentFile(String)}) are then parsed in full and validated instead
+     * of being deployed while being parsed.
+     * @param validator The validator, null to not validate upfront
+     */
+    public void setValidator(DependentsDeploymentValidator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * Are the verticles already deployed undeployed when a verticle of the tree fails to deploy?
+     * @return true if the deployment is rolled back on failure, false otherwise
+     */
+    public boolean isRollbackOnFailure() {
+        return rollbackOnFailure;
+    }
+
+    /**
+     * <p>Sets whether the verticles already deployed are undeployed when a verticle of the tree
+     * fails to deploy on {@link #redeploy(DependentsDeployment, Handler)}. A failed start is always
+     * rolled back, since the verticles are not children of this verticle and nothing would undeploy
+     * them once it failed. On the
+     * first failure no more verticles are deployed, nor retried, and once the deployments in flight
+     * have completed, every verticle deployed is undeployed in reverse dependency order, each level
+     * at the same time (see {@link #undeployDependents(Handler)}). Only then does the start fail.
+     * </p>
+     * <p>The names of the verticles rolled back are reported in the {@code rolledBack} array of the
+     * {@link #getStartupReport()}.</p>
+     * @param rollbackOnFailure true to roll a redeploy back on failure, false to leave the
+     * verticles already deployed running
+     */
+    public void setRollbackOnFailure(boolean rollbackOnFailure) {
+        this.rollbackOnFailure = rollbackOnFailure;
+    }
+
+    /**
+     * Are the classes of the dependent verticles loaded ahead of their deployment?
+     * @return true if the classes are preloaded, false otherwise
+     */
+    public boolean isPreloadClasses() {
+        return preloadClasses;
+    }
+
+    /**
+     * Sets whether the classes of the verticles that depend on others are loaded and initialized
+     * on worker threads as soon as they are added to the deployment, while the verticles they
+     * depend on are still deploying, so that their deployment only creates their instances. Only
+     * verticles created by the default Java verticle factory, without an isolation group or
+     * extra classpath, are preloaded. Classes that cannot be loaded are left for the deployment
+     * to report.
+     * @param preloadClasses true to preload the classes, false otherwise
+     */
+    public void setPreloadClasses(boolean preloadClasses) {
+        this.preloadClasses = preloadClasses;
+    }
+
+    /**
+     * Get the file where the time each verticle takes to deploy is kept across boots
+     * @return The path of the profile file, null if there is none
+     */
+    public String getProfileFile() {
+        return profileFile;
+    }
+
+    /**
+     * Sets the file where the time each verticle takes to deploy is kept across boots. On start,
+     * the verticles ready to be deployed are deployed in order of the longest expected time to
+     * deploy them along with their dependents, according to the profile (verticles not profiled
+     * yet count as taking no time). Once deployed, the time taken by each verticle is recorded and
+     * the profile is saved before the start completes. A missing or unreadable file is an empty
+     * profile.
+     * @param profileFile The path of the profile file, null for no profile
+     */
+    public void setProfileFile(String profileFile) {
+        this.profileFile = profileFile;
+    }
+
+    /**
+     * Get the ratio between the time a verticle takes to deploy and its profiled time beyond which
+     * the verticle is reported as drifting from its history
+     * @return The ratio
+     */
+    public double getProfileDriftRatio() {
+        return profileDriftRatio;
+    }
+
+    /**
+     * Sets the ratio between the time a verticle takes to deploy and its profiled time (see
+     * {@link #setProfileFile(String)}) beyond which the verticle is reported as drifting from its
+     * history, for being either slower or faster. Differences of less than 100 milliseconds are
+     * never reported.
+     * @param profileDriftRatio The ratio, 2 by default
+     */
+    public void setProfileDriftRatio(double profileDriftRatio) {
+        if (profileDriftRatio < 1)
+            throw new IllegalArgumentException("profileDriftRatio must not be less than 1");
+        this.profileDriftRatio = profileDriftRatio;
+    }
+
+    /**
+     * Get the maximum number of verticles (across the whole {@link DependentsDeployment} tree) that
+     * can be deploying at the same time
+     * @return The maximum number of verticles deploying at the same time, 0 if there is no limit
+     */
+    public int getMaxDeploymentsInFlight() {
+        return maxDeploymentsInFlight;
+    }
+
+    /**
+     * Sets the maximum number of verticles (across the whole {@link DependentsDeployment} tree)
+     * that can be deploying at the same time. Each {@link DependentsDeployment} may also limit its
+     * own verticles via {@link DependentsDeployment#setMaxInFlight(int)}. When the limit is reached,
+     * the verticles ready to be deployed wait and those with the longest chain of dependents are
+     * deployed first.
+     * @param maxDeploymentsInFlight The maximum number of verticles deploying at the same time, 0 if
+     * there is no limit
+     */
+    public void setMaxDeploymentsInFlight(int maxDeploymentsInFlight) {
+        if (maxDeploymentsInFlight < 0)
+            throw new IllegalArgumentException("maxDeploymentsInFlight must not be negative");
+        this.maxDeploymentsInFlight = maxDeploymentsInFlight;
+    }
+
+    /**
+     * Get the number of event loops used as {@code eventLoops} by the instances expressions (see
+     * {@link DeploymentConfiguration#setInstancesExpression(String)})
+     * @return The number of event loops
+     */
+    public int getEventLoops() {
+        return eventLoops;
+    }
+
+    /**
+     * Sets the number of event loops used as {@code eventLoops} by the instances expressions (see
+     * {@link DeploymentConfiguration#setInstancesExpression(String)}). It should match the
+     * {@link VertxOptions#setEventLoopPoolSize(int) event loop pool size} of the Vert.x instance.
+     * @param eventLoops The number of event loops, {@link VertxOptions#DEFAULT_EVENT_LOOP_POOL_SIZE}
+     * by default
+     */
+    public void setEventLoops(int eventLoops) {
+        if (eventLoops < 1)
+            throw new IllegalArgumentException("eventLoops must be positive");
+        this.eventLoops = eventLoops;
+    }
+
+    /**
+     * Get the maximum time to wait for the verticles of one level of the tree to be undeployed
+     * before undeploying the next level (See {@link #undeployDependents(Handler)})
+     * @return The timeout in milliseconds, 0 if there is no timeout
+     */
+    public long getUndeployLevelTimeout() {
+        return undeployLevelTimeout;
+    }
+
+    /**
+     * Sets the maximum time to wait for the verticles of one level of the tree to be undeployed
+     * before undeploying the next level (See {@link #undeployDependents(Handler)})
+     * @param undeployLevelTimeout The timeout in milliseconds, 0 if there is no timeout
+     */
+    public void setUndeployLevelTimeout(long undeployLevelTimeout) {
+        if (undeployLevelTimeout < 0)
+            throw new IllegalArgumentException("undeployLevelTimeout must not be negative");
+        this.undeployLevelTimeout = undeployLevelTimeout;
+    }
+
+    /**
+     * Get the maximum time to wait for a deployed verticle with a
+     * {@link DeploymentConfiguration#getReadinessAddress()} but no
+     * {@link DeploymentConfiguration#getTimeout()} to be ready
+     * @return The timeout in milliseconds
+     */
+    public long getReadinessTimeout() {
+        return readinessTimeout;
+    }
+
+    /**
+     * Sets the maximum time to wait for a deployed verticle with a
+     * {@link DeploymentConfiguration#getReadinessAddress()} but no
+     * {@link DeploymentConfiguration#getTimeout()} to be ready. A verticle not ready in time
+     * fails as if its deployment had failed.
+     * @param readinessTimeout The timeout in milliseconds
+     */
+    public void setReadinessTimeout(long readinessTimeout) {
+        if (readinessTimeout < 1)
+            throw new IllegalArgumentException("readinessTimeout must be positive");
+        this.readinessTimeout = readinessTimeout;
+    }
+
+    /**
+     * Get the maximum time to wait before retrying the deployment of a verticle (see
+     * {@link DeploymentConfiguration#getBackoff()})
+     * @return The time in milliseconds
+     */
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * Sets the maximum time to wait before retrying the deployment of a verticle: the backoff of
+     * a {@link DeploymentConfiguration} doubles with each retry up to this time
+     * @param maxBackoff The time in milliseconds
+     */
+    public void setMaxBackoff(long maxBackoff) {
+        if (maxBackoff < 1)
+            throw new IllegalArgumentException("maxBackoff must be positive");
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Get the {@link DeploymentMetrics} receiving the events of the deployments
+     * @return The {@link DeploymentMetrics}, {@link DeploymentMetrics#NONE} if not set
+     */
+    public DeploymentMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the {@link DeploymentMetrics} receiving the events of the deployments (see
+     * {@link MicrometerDeploymentMetrics})
+     * @param metrics The {@link DeploymentMetrics}
+     */
+    public void setMetrics(DeploymentMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics, "metrics is required");
+    }
+
+    /**
+     * Get the roles of this member of a distributed deployment
+     * @return The (non-null) roles, empty if the deployment is not distributed
+     */
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    /**
+     * <p>Sets the roles of this member of a distributed deployment. Every member of the cluster
+     * deploying the same {@link DependentsDeployment} (under the same
+     * {@link #setClusterDeploymentName(String) name}) runs a DependentVerticleDeployer with its own
+     * roles; each verticle is deployed on the least loaded member having its
+     * {@link DeploymentConfiguration#getRole() role} (any member if it has none), the load of a
+     * member being the number of verticle instances placed on it.</p>
+     * <p>The verticles are placed by the first member to start once {@link #getMinMembers()}
+     * members have joined, using the cluster-wide shared data. The startFuture fails if the
+     * verticles are not placed within {@link #getJoinTimeout()}, or if the verticles were placed
+     * on members of which only some are still alive: a member dying is not replaced while others
+     * keep running, whereas the placement left by members that all died is discarded. A verticle
+     * depending on a verticle placed on another member is deployed once that member records the
+     * verticle as ready. The startFuture of each member is completed once the verticles placed on
+     * it are deployed and fails if any verticle of the tree fails to deploy.</p>
+     * <p>Distributed deployments require a clustered Vert.x and the same {@link DependentsDeployment}
+     * on every member; they do not support {@link #setDependentsDeploymentFile(String)} nor
+     * {@link #redeploy(DependentsDeployment, Handler)}.</p>
+     * @param roles The roles, empty if the deployment is not distributed
+     */
+    public void setRoles(Set<String> roles) {
+        this.roles = Objects.requireNonNull(roles, "roles is required");
+    }
+
+    /**
+     * Get the name of the distributed deployment, shared by all its members
+     * @return The name
+     */
+    public String getClusterDeploymentName() {
+        return clusterDeploymentName;
+    }
+
+    /**
+     * Sets the name of the distributed deployment, shared by all its members and used to name its
+     * shared data and event bus addresses
+     * @param clusterDeploymentName The name
+     */
+    public void setClusterDeploymentName(String clusterDeploymentName) {
+        this.clusterDeploymentName = Objects.requireNonNull(clusterDeploymentName, "clusterDeploymentName is required");
+    }
+
+    /**
+     * Get the number of members of the distributed deployment to wait for before placing the
+     * verticles
+     * @return The number of members
+     */
+    public int getMinMembers() {
+        return minMembers;
+    }
+
+    /**
+     * Sets the number of members of the distributed deployment to wait for before placing the
+     * verticles
+     * @param minMembers The number of members
+     */
+    public void setMinMembers(int minMembers) {
+        if (minMembers < 1)
+            throw new IllegalArgumentException("minMembers must be positive");
+        this.minMembers = minMembers;
+    }
+
+    /**
+     * Get the time to wait for the verticles of the distributed deployment to be placed
+     * @return The time in milliseconds
+     */
+    public long getJoinTimeout() {
+        return joinTimeout;
+    }
+
+    /**
+     * Sets the time to wait for the verticles of the distributed deployment to be placed (and so
+     * for {@link #getMinMembers()} members to join) before failing the startFuture
+     * @param joinTimeout The time in milliseconds
+     */
+    public void setJoinTimeout(long joinTimeout) {
+        if (joinTimeout < 1)
+            throw new IllegalArgumentException("joinTimeout must be positive");
+        this.joinTimeout = joinTimeout;
+    }
+
+    /**
+     * Get the time to live of the registration of this member of the distributed deployment
+     * @return The time in milliseconds
+     */
+    public long getMemberTimeToLive() {
+        return memberTimeToLive;
+    }
+
+    /**
+     * Sets the time to live of the registration of this member of the distributed deployment: a
+     * member that dies without leaving is considered gone once its registration expires, and its
+     * verticles are given to the live members by the next member to join. It must be longer than
+     * the {@link #getHeartbeatInterval()}.
+     * @param memberTimeToLive The time in milliseconds
+     */
+    public void setMemberTimeToLive(long memberTimeToLive) {
+        if (memberTimeToLive < 1)
+            throw new IllegalArgumentException("memberTimeToLive must be positive");
+        this.memberTimeToLive = memberTimeToLive;
+    }
+
+    /**
+     * Get the interval between the renewals of the registration of this member of the
+     * distributed deployment
+     * @return The interval in milliseconds
+     */
+    public long getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    /**
+     * Sets the interval between the renewals of the registration of this member of the
+     * distributed deployment, which must be shorter than the {@link #getMemberTimeToLive()}
+     * @param heartbeatInterval The interval in milliseconds
+     */
+    public void setHeartbeatInterval(long heartbeatInterval) {
+        if (heartbeatInterval < 1)
+            throw new IllegalArgumentException("heartbeatInterval must be positive");
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    /**
+     * Get the policy scaling the deployed verticles
+     * @return The policy, null if not set
+     */
+    public ScalingPolicy getScalingPolicy() {
+        return scalingPolicy;
+    }
+
+    /**
+     * Sets the policy scaling the deployed verticles, evaluated every
+     * {@link #getScalingInterval()} milliseconds once this verticle has started (see
+     * {@link #scale(String, int, Handler)}). Shared verticles are not scaled.
+     * @param scalingPolicy The policy, null to not scale automatically
+     */
+    public void setScalingPolicy(ScalingPolicy scalingPolicy) {
+        this.scalingPolicy = scalingPolicy;
+    }
+
+    /**
+     * Get the interval between the evaluations of the {@link #getScalingPolicy()}
+     * @return The interval in milliseconds
+     */
+    public long getScalingInterval() {
+        return scalingInterval;
+    }
+
+    /**
+     * Sets the interval between the evaluations of the {@link #getScalingPolicy()}
+     * @param scalingInterval The interval in milliseconds
+     */
+    public void setScalingInterval(long scalingInterval) {
+        if (scalingInterval < 1)
+            throw new IllegalArgumentException("scalingInterval must be positive");
+        this.scalingInterval = scalingInterval;
+    }
+
+    /**
+     * <p>Gets the startup report, available once the future passed to {@link #start(Future)} has
+     * been completed or failed. The report contains the time (in milliseconds since the epoch) the
+     * deployment started ({@code startedAt}) and completed ({@code completedAt}), the
+     * {@code totalTime} in milliseconds and the {@code criticalPath}: the chain of verticles, from a
+     * root to the last verticle to complete, where each verticle is the prerequisite that
+     * completed last before the next one was deployed.</p>
+     * <p>Each entry of the critical path contains the {@code name}, {@code deploymentID},
+     * {@code waitTime} and {@code deployTime} (see {@link DeploymentConfiguration#getWaitTime()} and
+     * {@link DeploymentConfiguration#getDeployTime()}).</p>
+     * <p>If {@link DeploymentConfiguration#isOptional() optional} verticles failed to deploy, the
+     * report contains their {@code failures}, each with the {@code name} and {@code cause} of the
+     * failure and the names of the verticles {@code skipped} because of it. Verticles rolled back
+     * (see {@link #setRollbackOnFailure(boolean)}) are listed in {@code rolledBack}.</p>
+     * <p>With a {@link #setProfileFile(String) profile}, the verticles whose time to deploy drifted
+     * from their history are listed in {@code drifted}, each with its {@code name},
+     * {@code deployTime} and {@code expectedTime}.</p>
+     * @return The startup report or null if the start has not completed or there was nothing to
+     * deploy
+     */
+    public JsonObject getStartupReport() {
+        return startupReport;
+    }
+
     @Override
     public void start(Future<Void> startFuture) {
-        if (dependentsDeployment == null || dependentsDeployment.getConfigurations().isEmpty()) {
+        // Vert.x sets its own handler on startFuture once this method returns, so the outcome is
+        // handled on deployedFuture. The configurations of a deployment that failed to start
+        // report the next deployment.
+        Future<Void> deployedFuture = Future.future();
+        deployedFuture.setHandler(ar -> {
+            started = ar.succeeded();
+            if (ar.failed() && state != null)
+                state.release();
+            else if (ar.succeeded() && scalingPolicy != null)
+                startScalingPolicy();
+            startFuture.handle(ar);
+        });
+        // The verticles are not children of this verticle, so they are undeployed in order by stop
+        deployContext = Contexts.detached(vertx);
+        if (compiledDeployment != null) {
+            dependentsDeployment = compiledDeployment.getDependentsDeployment();
+            compiledPlan = compiledDeployment.getPlan();
+            deploy(deployedFuture);
+        } else if (compiledDeploymentFile != null) {
+            vertx.<CompiledDependentsDeployment>executeBlocking(future -> {
+                try {
+                    CompiledDependentsDeployment compiled =
+                        CompiledDependentsDeployment.load(Paths.get(compiledDeploymentFile));
+                    if (dependentsDeploymentFile != null &&
+                        !compiled.matches(Buffer.buffer(Files.readAllBytes(Paths.get(dependentsDeploymentFile)))))
+                        future.fail(new IllegalStateException(compiledDeploymentFile + " drifted from " +
+                                                              dependentsDeploymentFile));
+                    else
+                        future.complete(compiled);
+                } catch (IOException | IllegalArgumentException e) {
+                    future.fail(e);
+                }
+            }, ar -> {
+                if (ar.failed()) {
+                    LOGGER.warn("Unable to load " + compiledDeploymentFile, ar.cause());
+                    deployedFuture.fail(ar.cause());
+                    return;
+                }
+                dependentsDeployment = ar.result().getDependentsDeployment();
+                compiledPlan = ar.result().getPlan();
+                deploy(deployedFuture);
+            });
+        } else {
+            deploy(deployedFuture);
+        }
+    }
+
+    /**
+     * Deploys the {@link DependentsDeployment} (or the dependents deployment file)
+     * @param startFuture The future for this verticle that needs to be completed once all
+     * verticles (and their dependents) are deployed
+     */
+    private void deploy(Future<Void> startFuture) {
+        if (profileFile != null && profile == null) {
+            loadProfile(v -> deploy(startFuture));
+            return;
+        }
+        boolean streamed = dependentsDeploymentFile != null && compiledPlan == null;
+        if (validator != null && !streamed && dependentsDeployment != null) {
+            validate(dependentsDeployment, ar -> {
+                if (ar.failed())
+                    startFuture.fail(ar.cause());
+                else
+                    deployValidated(startFuture);
+            });
+        } else {
+            deployValidated(startFuture);
+        }
+    }
+
+    /**
+     * Loads the profile file, an empty profile if the file does not exist or cannot be read
+     * @param completionHandler The handler called once loaded
+     */
+    private void loadProfile(Handler<Void> completionHandler) {
+        vertx.fileSystem().readFile(profileFile, ar -> {
+            profile = new BootProfile();
+            if (ar.failed()) {
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("No profile read from " + profileFile + ": " + ar.cause());
+            } else {
+                try {
+                    profile = new BootProfile(ar.result().toJsonObject());
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Ignoring invalid profile " + profileFile, e);
+                }
+            }
+            completionHandler.handle(null);
+        });
+    }
+
+    /**
+     * Records the time each verticle deployed took in the profile and saves it, once
+     * @param completionHandler The handler called with the verticles that drifted from their
+     * history, null if nothing was recorded
+     */
+    private void recordProfile(Handler<JsonArray> completionHandler) {
+        if (profile == null || profileRecorded) {
+            completionHandler.handle(null);
+            return;
+        }
+        profileRecorded = true;
+        JsonArray drifted = new JsonArray();
+        state.getNodes().forEach(node -> {
+            long deployTime = state.deployTime(node.index);
+            if (!state.succeeded(node.index) || deployTime < 0 || remote != null && remote[node.index])
+                return;
+            long expectedTime = profile.expected(node.config.getName());
+            if (expectedTime >= 0 && Math.abs(deployTime - expectedTime) >= PROFILE_DRIFT_FLOOR &&
+                (deployTime > expectedTime * profileDriftRatio || deployTime * profileDriftRatio < expectedTime)) {
+                LOGGER.warn(node.config.getName() + " took " + deployTime + " ms to deploy, " + expectedTime +
+                            " ms expected");
+                drifted.add(new JsonObject().put("name", node.config.getName())
+                                            .put("deployTime", deployTime)
+                                            .put("expectedTime", expectedTime));
+            }
+            profile.record(node.config.getName(), deployTime);
+        });
+        vertx.fileSystem().writeFile(profileFile, Buffer.buffer(profile.toJson().encodePrettily()), ar -> {
+            if (ar.failed())
+                LOGGER.warn("Unable to save the profile " + profileFile, ar.cause());
+            completionHandler.handle(drifted);
+        });
+    }
+
+    /**
+     * Validates a {@link DependentsDeployment} with the {@link #getValidator()}, off the event
+     * loop since verticle classes may be loaded
+     * @param deployment The {@link DependentsDeployment}
+     * @param resultHandler The handler called once validated, failed with an
+     * {@link IllegalArgumentException} listing the errors found
+     */
+    private void validate(DependentsDeployment deployment, Handler<AsyncResult<Void>> resultHandler) {
+        vertx.<List<String>>executeBlocking(future -> future.complete(validator.validate(vertx, deployment)), false,
+                                            ar -> {
+            if (ar.failed()) {
+                resultHandler.handle(Future.failedFuture(ar.cause()));
+            } else if (!ar.result().isEmpty()) {
+                IllegalArgumentException e = new IllegalArgumentException("Invalid dependents deployment: " +
+                                                                          String.join("; ", ar.result()));
+                LOGGER.warn(e.getMessage());
+                resultHandler.handle(Future.failedFuture(e));
+            } else {
+                resultHandler.handle(Future.succeededFuture());
+            }
+        });
+    }
+
+    /**
+     * Deploys the validated {@link DependentsDeployment} (or the dependents deployment file)
+     * @param startFuture The future for this verticle that needs to be completed once all
+     * verticles (and their dependents) are deployed
+     */
+    private void deployValidated(Future<Void> startFuture) {
+        if (!roles.isEmpty()) {
+            deployDistributed(startFuture);
+        } else if (dependentsDeploymentFile != null && compiledPlan == null) {
+            deployDependentsDeploymentFile(startFuture);
+        } else if (dependentsDeployment == null || dependentsDeployment.getConfigurations().isEmpty()) {
             startFuture.complete();
         } else {
             deployDependentsDeployment(startFuture);
         }
     }
 
+    /**
+     * Undeploys the verticles still deployed by this verticle (see
+     * {@link #undeployDependents(Handler)})
+     * @param stopFuture The future completed once all verticles are undeployed
+     */
+    @Override
+    public void stop(Future<Void> stopFuture) {
+        undeployDependents(stopFuture);
+    }
+
+    /**
+     * <p>Undeploys the verticles deployed by this verticle in reverse dependency order: first the
+     * verticles nothing depends on, then the verticles whose dependents have all been undeployed and
+     * so on. All the verticles of the same level are undeployed at the same time. If a level takes
+     * longer than {@link #getUndeployLevelTimeout()}, the next level is undeployed anyway. Shared
+     * verticles (see {@link DeploymentConfiguration#setShared(boolean)}) are released instead, and
+     * only undeployed if no other DependentVerticleDeployer still uses them.</p>
+     * <p>The verticles are deployed from a context that belongs to no deployment, so they are not
+     * children of this verticle and Vert.x does not undeploy them, in no particular order, before
+     * calling its {@link #stop(Future)}: undeploying this verticle undeploys them level by level
+     * as well.</p>
+     * @param completionHandler The handler called once all levels are undeployed. It fails with
+     * the first failure (or timeout) if any verticle fails to be undeployed.
+     */
+    public void undeployDependents(Handler<AsyncResult<Void>> completionHandler) {
+        Objects.requireNonNull(completionHandler, "completionHandler is required");
+        if (scalingTimerID != -1) {
+            vertx.cancelTimer(scalingTimerID);
+            scalingTimerID = -1;
+        }
+        closePlaceholders();
+        if (attempts != null)
+            attempts.close();
+        DeploymentState undeployed = state;
+        if (undeployed != null)
+            undeployed.release();
+        undeployLevel(levels(undeployed != null ? undeployed.getNodes() : Collections.emptyList()), 0, null, ar -> {
+            if (coordinator == null) {
+                completionHandler.handle(ar);
+                return;
+            }
+            coordinator.leave(left -> {
+                if (left.failed())
+                    LOGGER.warn("Unable to leave " + clusterDeploymentName, left.cause());
+                completionHandler.handle(ar.failed() ? ar : left);
+            });
+            coordinator = null;
+        });
+    }
+
+    /**
+     * <p>Reconfigures the running deployment with a new {@link DependentsDeployment} (typically
+     * built from JSON), undeploying and deploying only what changed. The new tree is diffed against
+     * the running one: a verticle with the same name, {@link DeploymentOptions} and shared flag,
+     * whose prerequisites (parent and {@link DeploymentConfiguration#getDependsOn()}) are unchanged
+     * as well, is kept deployed and its new configuration gets the same deployment ID. Changing a
+     * verticle therefore changes its whole subtree.</p>
+     * <p>The verticles of the running tree not kept are undeployed first, in reverse dependency
+     * order (see {@link #undeployDependents(Handler)}), and then the verticles of the new tree not
+     * deployed yet are deployed. Once completed, {@link #getDependentsDeployment()} returns the new
+     * {@link DependentsDeployment}. The completion handler is called on this verticle's
+     * context.</p>
+     * <p>The configurations of the running tree must not be modified before calling this method,
+     * since they are what the new tree is compared against.</p>
+     * @param newDeployment The new {@link DependentsDeployment}
+     * @param completionHandler The handler called once the new tree is deployed. It fails if the
+     * new tree is invalid (nothing is undeployed then), if a deployment is in progress (including
+     * the deployment of a lazy verticle, its retries and the scaling of a verticle), or if any
+     * verticle fails to be undeployed or deployed.
+     */
+    public void redeploy(DependentsDeployment newDeployment, Handler<AsyncResult<Void>> completionHandler) {
+        Objects.requireNonNull(newDeployment, "newDeployment is required");
+        Objects.requireNonNull(completionHandler, "completionHandler is required");
+        // The state of the deployment is only ever touched from this verticle's context
+        context.runOnContext(v -> {
+            if (coordinator != null) {
+                completionHandler.handle(Future.failedFuture(
+                    new IllegalStateException("Distributed deployments cannot be redeployed")));
+                return;
+            }
+            if (validator != null) {
+                validate(newDeployment, ar -> {
+                    if (ar.failed())
+                        completionHandler.handle(ar);
+                    else
+                        redeployValidated(newDeployment, completionHandler);
+                });
+            } else {
+                redeployValidated(newDeployment, completionHandler);
+            }
+        });
+    }
+
+    /**
+     * Redeploys a validated {@link DependentsDeployment} (see
+     * {@link #redeploy(DependentsDeployment, Handler)})
+     * @param newDeployment The new {@link DependentsDeployment}
+     * @param completionHandler The handler called once redeployed
+     */
+    private void redeployValidated(DependentsDeployment newDeployment, Handler<AsyncResult<Void>> completionHandler) {
+        // Nothing may still be deploying, retrying, getting ready or scaling against the running
+        // plan, since the callbacks would otherwise update the state of the new one
+        if (deploymentFuture != null && !deploymentFuture.isComplete() ||
+            scheduler != null && scheduler.getDeploymentsInFlight() > 0 ||
+            attempts != null && attempts.isAwaitingReadiness() || !scaling.isEmpty()) {
+            completionHandler.handle(Future.failedFuture(new IllegalStateException("A deployment is in progress")));
+            return;
+        }
+
+        DeploymentPlan nextPlan;
+        try {
+            // The whole tree is compared, the fan-out of templates still limits the copies deployed
+            nextPlan = new DeploymentPlan(newDeployment, true);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            LOGGER.warn("Invalid dependents deployment", e);
+            completionHandler.handle(Future.failedFuture(e));
+            return;
+        }
+
+        DeploymentDiff diff = new DeploymentDiff(state, nextPlan);
+        DeploymentState nextState = new DeploymentState(nextPlan);
+        for (DeploymentPlan.Node node : nextPlan.getNodes()) {
+            DeploymentPlan.Node match = diff.getMatch(node);
+            if (match == null)
+                continue;
+            nextState.copy(node.index, state, match.index);
+            Deque<String> extras = extraDeployments.remove(match);
+            if (extras != null)
+                extraDeployments.put(node, extras);
+            if (sharedNodes.remove(match))
+                sharedNodes.add(node);
+        }
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug("redeploying, " + diff.getRemoved().size() + " verticles to undeploy");
+
+        // Until the new plan starts deploying, the reconfiguration counts as a deployment in progress
+        deploymentFuture = Future.future();
+        redeploying = true;
+        closePlaceholders();
+        if (attempts != null)
+            attempts.close();
+        undeployLevel(levels(diff.getRemoved()), 0, null, undeployed -> {
+            redeploying = false;
+            dependentsDeployment = newDeployment;
+            Future<Void> redeployFuture = Future.future();
+            redeployFuture.setHandler(ar -> completionHandler.handle(ar.succeeded() ? undeployed : ar));
+            startDeployment(nextState, redeployFuture);
+            reportTree();
+            addNodes(state.getOrderedNodes());
+            if (remainingDeployments == 0)
+                deploymentFuture.tryComplete();
+            dispatchReadyNodes();
+        });
+    }
+
+    /**
+     * Reconfigures the running deployment with a new {@link DependentsDeployment} (see
+     * {@link #redeploy(DependentsDeployment, Handler)})
+     * @param newDeployment The JSON representation of the new {@link DependentsDeployment}
+     * @param completionHandler The handler called once the new tree is deployed
+     */
+    public void redeploy(JsonObject newDeployment, Handler<AsyncResult<Void>> completionHandler) {
+        Objects.requireNonNull(newDeployment, "newDeployment is required");
+        redeploy(new DependentsDeployment(newDeployment), completionHandler);
+    }
+
+    /**
+     * <p>Scales a deployed verticle to the supplied number of instances, deploying (or undeploying)
+     * extra single instance deployments of the verticle next to the deployment made by this
+     * verticle. Its dependents are not affected. A verticle cannot be scaled below the instances
+     * it was deployed with.</p>
+     * <p>Extra deployments are undeployed along with the verticle (see
+     * {@link #undeployDependents(Handler)}).</p>
+     * @param name The name of the verticle, which must belong to exactly one configuration of the
+     * tree
+     * @param instances The number of instances
+     * @param completionHandler The handler called, on this verticle's context, once the verticle
+     * is scaled. It fails if the verticle is unknown, not deployed, shared or being scaled, if the
+     * tree is being redeployed, if the number of instances is too low, or if any extra deployment
+     * fails.
+     */
+    public void scale(String name, int instances, Handler<AsyncResult<Void>> completionHandler) {
+        Objects.requireNonNull(name, "name is required");
+        Objects.requireNonNull(completionHandler, "completionHandler is required");
+        context.runOnContext(v -> {
+            DeploymentPlan.Node node = null;
+            if (state != null) {
+                for (DeploymentPlan.Node candidate : state.getNodes()) {
+                    if (name.equals(candidate.config.getName())) {
+                        if (node != null) {
+                            completionHandler.handle(Future.failedFuture(
+                                new IllegalArgumentException("More than one verticle is named " + name)));
+                            return;
+                        }
+                        node = candidate;
+                    }
+                }
+            }
+            if (node == null)
+                completionHandler.handle(Future.failedFuture(new IllegalArgumentException("Unknown verticle " + name)));
+            else
+                scaleNode(node, instances, completionHandler);
+        });
+    }
+
+    /**
+     * Gets the deployment ID of a verticle deployed by this verticle. Unlike
+     * {@link DeploymentConfiguration#getDeploymentID()}, it is the outcome of this verticle's
+     * deployment even if the same {@link DependentsDeployment} is deployed by other
+     * DependentVerticleDeployers.
+     * @param config The {@link DeploymentConfiguration} of the verticle
+     * @return The deployment ID, null if the verticle is not part of the tree, has not been
+     * deployed yet or failed to deploy
+     */
+    public String getDeploymentID(DeploymentConfiguration config) {
+        Objects.requireNonNull(config, "config is required");
+        DeploymentState current = state;
+        DeploymentPlan.Node node = current != null ? current.getNode(config) : null;
+        return node != null ? current.deploymentID(node.index) : null;
+    }
+
+    /**
+     * Gets the number of instances of a deployed verticle, including its extra deployments (see
+     * {@link #scale(String, int, Handler)})
+     * @param name The name of the verticle
+     * @return The number of instances of the verticles with that name, 0 if none is deployed
+     */
+    public int getInstances(String name) {
+        Objects.requireNonNull(name, "name is required");
+        int instances = 0;
+        if (state != null) {
+            for (DeploymentPlan.Node node : state.getNodes()) {
+                if (name.equals(node.config.getName()))
+                    instances += instances(node);
+            }
+        }
+        return instances;
+    }
+
+    /**
+     * Gets the number of instances of the node's verticle
+     * @param node The node
+     * @return The number of instances, 0 if not deployed
+     */
+    private int instances(DeploymentPlan.Node node) {
+        if (!state.succeeded(node.index))
+            return 0;
+        Deque<String> extras = extraDeployments.get(node);
+        return state.instances(node.index) + (extras != null ? extras.size() : 0);
+    }
+
+    /**
+     * Deploys or undeploys the extra deployments of the node's verticle
+     * @param node The node
+     * @param instances The number of instances
+     * @param completionHandler The handler called once the verticle is scaled
+     */
+    private void scaleNode(DeploymentPlan.Node node, int instances, Handler<AsyncResult<Void>> completionHandler) {
+        DeploymentConfiguration config = node.config;
+        String failure = null;
+        if (redeploying)
+            failure = "A redeploy is in progress";
+        else if (!state.succeeded(node.index) || remote != null && remote[node.index])
+            failure = "Verticle " + config.getName() + " is not deployed";
+        else if (config.isShared())
+            failure = "Verticle " + config.getName() + " is shared";
+        else if (scaling.contains(node))
+            failure = "Verticle " + config.getName() + " is being scaled";
+        else if (instances < state.instances(node.index))
+            failure = "Verticle " + config.getName() + " cannot be scaled below its " + state.instances(node.index) + " instances";
+        if (failure != null) {
+            completionHandler.handle(Future.failedFuture(new IllegalStateException(failure)));
+            return;
+        }
+
+        Deque<String> extras = extraDeployments.computeIfAbsent(node, n -> new ArrayDeque<>());
+        int current = instances(node);
+        if (current == instances) {
+            completionHandler.handle(Future.succeededFuture());
+            return;
+        }
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug("scaling " + config.getName() + " from " + current + " to " + instances + " instances");
+
+        scaling.add(node);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = current; i < instances; i++) {
+            Future<String> future = Future.future();
+            DeploymentOptions options = config.mergedOptions() != null ?
+                new DeploymentOptions(config.mergedOptions()) : new DeploymentOptions();
+            Contexts.deployVerticle(deployContext, config.getName(), options.setInstances(1), ar -> {
+                if (ar.succeeded())
+                    extras.push(ar.result());
+                future.handle(ar);
+            });
+            futures.add(future);
+        }
+        for (int i = current; i > instances; i--) {
+            Future<Void> future = Future.future();
+            vertx.undeploy(extras.pop(), future);
+            futures.add(future);
+        }
+        Futures.join(futures).setHandler(ar -> {
+            scaling.remove(node);
+            if (ar.failed())
+                LOGGER.warn("scaling verticle " + config.getName() + " failed", ar.cause());
+            completionHandler.handle(ar.failed() ? Future.failedFuture(ar.cause()) : Future.succeededFuture());
+        });
+    }
+
+    /**
+     * Evaluates the {@link #getScalingPolicy()} periodically
+     */
+    private void startScalingPolicy() {
+        long[] expectedAt = { System.currentTimeMillis() + scalingInterval };
+        scalingTimerID = vertx.setPeriodic(scalingInterval, id -> {
+            long now = System.currentTimeMillis();
+            long eventLoopLag = Math.max(0, now - expectedAt[0]);
+            expectedAt[0] = now + scalingInterval;
+            for (DeploymentPlan.Node node : state.getNodes()) {
+                if (!state.succeeded(node.index) || node.config.isShared() || scaling.contains(node) ||
+                    remote != null && remote[node.index])
+                    continue;
+                int current = instances(node);
+                int target = Math.max(state.instances(node.index),
+                                      scalingPolicy.instances(node.config, current, eventLoopLag));
+                if (target != current)
+                    scaleNode(node, target, ar -> {});
+            }
+        });
+    }
+
+    /**
+     * Groups nodes by level, nodes with no dependents are at level 0
+     * @param nodes The nodes
+     * @return The nodes by level
+     */
+    private static List<List<DeploymentPlan.Node>> levels(List<DeploymentPlan.Node> nodes) {
+        List<List<DeploymentPlan.Node>> levels = new ArrayList<>();
+        for (DeploymentPlan.Node node : nodes) {
+            while (levels.size() < node.remaining)
+                levels.add(new ArrayList<>());
+            levels.get(node.remaining - 1).add(node);
+        }
+        return levels;
+    }
+
+    /**
+     * Undeploys the still deployed verticles of a level and, once they are undeployed (or the
+     * level timed out), the next level
+     * @param levels The nodes by level, nodes with no dependents are at level 0
+     * @param firstLevel The first level that may still have verticles to undeploy
+     * @param failure The first failure of the previous levels, if any
+     * @param completionHandler The handler called once all levels are undeployed
+     */
+    private void undeployLevel(List<List<DeploymentPlan.Node>> levels, int firstLevel, Throwable failure,
+                               Handler<AsyncResult<Void>> completionHandler) {
+        // Levels with nothing left to undeploy are skipped without recursing, trees can be very deep
+        int level = firstLevel;
+        List<Future<?>> futures = new ArrayList<>();
+        while (futures.isEmpty() && level < levels.size()) {
+            for (DeploymentPlan.Node node : levels.get(level++)) {
+                String deploymentID = state.deploymentID(node.index);
+                if (sharedNodes.remove(node)) {
+                    if (LOGGER.isDebugEnabled())
+                        LOGGER.debug("releasing " + node.config.getName());
+                    Future<Void> future = Future.future();
+                    SharedDeployments.get(vertx).release(deploymentID, future);
+                    futures.add(future);
+                } else if (deploymentID != null && !node.config.isShared() &&
+                           vertx.deploymentIDs().contains(deploymentID)) {
+                    if (LOGGER.isDebugEnabled())
+                        LOGGER.debug("undeploying " + node.config.getName());
+                    Future<Void> future = Future.future();
+                    vertx.undeploy(deploymentID, future);
+                    futures.add(future);
+                }
+                Deque<String> extras = extraDeployments.remove(node);
+                if (extras != null) {
+                    for (String extraID : extras) {
+                        Future<Void> future = Future.future();
+                        vertx.undeploy(extraID, future);
+                        futures.add(future);
+                    }
+                }
+            }
+        }
+        if (futures.isEmpty()) {
+            completionHandler.handle(failure == null ? Future.succeededFuture() : Future.failedFuture(failure));
+            return;
+        }
+
+        int undeployedLevel = level - 1;
+        int nextLevel = level;
+
+        Future<Void> levelFuture = Future.future();
+        Futures.join(futures).setHandler(ar -> {
+            if (ar.succeeded())
+                levelFuture.tryComplete();
+            else
+                levelFuture.tryFail(ar.cause());
+        });
+        long timerID = undeployLevelTimeout > 0 ?
+            vertx.setTimer(undeployLevelTimeout, id -> levelFuture.tryFail(
+                new TimeoutException("Undeploying level " + undeployedLevel + " timed out after " +
+                                     undeployLevelTimeout + " ms"))) : -1;
+        levelFuture.setHandler(ar -> {
+            if (timerID != -1)
+                vertx.cancelTimer(timerID);
+            if (ar.failed())
+                LOGGER.warn("One or more verticles failed to undeploy", ar.cause());
+            undeployLevel(levels, nextLevel, failure != null ? failure : ar.cause(), completionHandler);
+        });
+    }
+
     /**
      * Deploys all the verticles configured to be deployed
      * @param startFuture The future for this verticle that needs to be completed once all
@@ -80,78 +1237,681 @@ public class DependentVerticleDeployer extends AbstractVerticle {
      * to be deployed.
      */
     private void deployDependentsDeployment(Future<Void> startFuture) {
-        getCompositeFuture().setHandler(ar -> {
+        DeploymentPlan sealedPlan = compiledPlan;
+        compiledPlan = null;
+        // The plan of a compiled file was built when loaded, from its stored indices and order
+        if (sealedPlan == null) {
+            try {
+                sealedPlan = new DeploymentPlan(dependentsDeployment);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                LOGGER.warn("Invalid dependents deployment", e);
+                startFuture.fail(e);
+                return;
+            }
+        }
+
+        startDeployment(new DeploymentState(sealedPlan), startFuture);
+        reportTree();
+        addNodes(state.getOrderedNodes());
+        if (remainingDeployments == 0)
+            deploymentFuture.tryComplete();
+        dispatchReadyNodes();
+    }
+
+    /**
+     * Joins the distributed deployment and deploys the verticles placed on this member
+     * @param startFuture The future for this verticle that needs to be completed once all
+     * verticles placed on this member are deployed. The future is failed if the placement fails
+     * or any verticle of the tree fails to be deployed.
+     */
+    private void deployDistributed(Future<Void> startFuture) {
+        if (dependentsDeploymentFile != null && compiledPlan == null || dependentsDeployment == null) {
+            startFuture.fail(new IllegalStateException("Distributed deployments require a dependents deployment"));
+            return;
+        }
+        if (heartbeatInterval >= memberTimeToLive) {
+            startFuture.fail(new IllegalStateException("heartbeatInterval must be shorter than memberTimeToLive"));
+            return;
+        }
+        DeploymentPlan sealedPlan;
+        try {
+            // Every member places the whole tree
+            sealedPlan = new DeploymentPlan(dependentsDeployment, true);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            LOGGER.warn("Invalid dependents deployment", e);
+            startFuture.fail(e);
+            return;
+        }
+
+        coordinator = new ClusterCoordinator(vertx, clusterDeploymentName, roles, eventLoops, minMembers, joinTimeout,
+                                             memberTimeToLive, heartbeatInterval, this::remoteCompleted, this::adopt);
+        coordinator.join(sealedPlan, ar -> {
+            if (ar.failed()) {
+                LOGGER.warn("Unable to place the verticles of " + clusterDeploymentName, ar.cause());
+                // Leaving, so this member is neither waited for nor placed verticles on
+                coordinator.leave(left -> startFuture.fail(ar.cause()));
+                coordinator = null;
+                return;
+            }
+            remote = new boolean[ar.result().length];
+            for (int i = 0; i < remote.length; i++)
+                remote[i] = !ar.result()[i];
+            startDeployment(new DeploymentState(sealedPlan), startFuture);
+            reportTree();
+            addNodes(state.getOrderedNodes());
+            if (remainingDeployments == 0)
+                deploymentFuture.tryComplete();
+            dispatchReadyNodes();
+        });
+    }
+
+    /**
+     * A verticle placed on another member of the distributed deployment has completed: its
+     * dependents placed on this member may be deployed
+     * @param index The index of the verticle's node
+     * @param res The deployment ID of the verticle or the failure
+     */
+    private void remoteCompleted(int index, AsyncResult<String> res) {
+        if (remote == null || !remote[index])
+            return;
+        DeploymentPlan.Node node = state.getNodes().get(index);
+        if (state.isComplete(node.index))
+            return;
+        if (res.succeeded()) {
+            state.complete(node.index, res.result());
+            state.readyAt(node.index, System.currentTimeMillis());
+            releaseDependents(node, true);
+            releaseDependents(node, false);
+            dispatchReadyNodes();
+        } else {
+            state.fail(node.index, res.cause());
+            if (node.config.isOptional()) {
+                skip(node, state.dependents(node));
+                expandCopies();
+                if (remainingDeployments == 0 && state.getPlan().isSealed())
+                    deploymentFuture.tryComplete();
+            } else {
+                deploymentFuture.tryFail(res.cause());
+            }
+        }
+    }
+
+    /**
+     * A verticle placed on a member that left the distributed deployment was given to this member:
+     * it is deployed once its prerequisites are deployed (and ready)
+     * @param index The index of the verticle's node
+     */
+    private void adopt(int index) {
+        if (remote == null || !remote[index])
+            return;
+        remote[index] = false;
+        DeploymentPlan.Node node = state.getNodes().get(index);
+        // If the verticle was deployed, it left with its member
+        state.reset(node);
+        if (!node.deferred)
+            remainingDeployments++;
+        countPendingPrerequisites(node);
+        dispatchReadyNodes();
+    }
+
+    /**
+     * Deploys the verticles of the dependents deployment file while the file is being parsed:
+     * each root configuration (and its dependents) is deployed as soon as it has been parsed,
+     * except for the configurations that depend on names, which wait for the whole file to be
+     * parsed, and for the configurations parsed before the root's {@code maxInFlight}, which wait
+     * for it. Once a verticle fails to deploy, no more verticles are deployed. With a
+     * {@link #getValidator()}, the whole file is parsed and validated before anything is deployed.
+     * @param startFuture The future for this verticle that needs to be completed once all
+     * verticles (and their dependents) are deployed. The future is failed if the file cannot be
+     * parsed or validated or any verticle fails to be deployed.
+     */
+    private void deployDependentsDeploymentFile(Future<Void> startFuture) {
+        vertx.fileSystem().open(dependentsDeploymentFile, new OpenOptions().setRead(true).setWrite(false), ar -> {
             if (ar.failed()) {
-                LOGGER.warn("One or more verticles failed to deploy", ar.cause());
+                LOGGER.warn("Unable to open " + dependentsDeploymentFile, ar.cause());
                 startFuture.fail(ar.cause());
+                return;
+            }
+
+            AsyncFile file = ar.result();
+            DependentsDeploymentParser parser = DependentsDeploymentParser.newParser(file);
+            if (validator != null) {
+                // Nothing is deployed before the whole file has been parsed and validated
+                parser.endHandler(res -> {
+                    file.close();
+                    if (res.failed()) {
+                        LOGGER.warn("Unable to parse " + dependentsDeploymentFile, res.cause());
+                        startFuture.fail(res.cause());
+                        return;
+                    }
+                    dependentsDeployment = res.result();
+                    validate(dependentsDeployment, validated -> {
+                        if (validated.failed())
+                            startFuture.fail(validated.cause());
+                        else if (dependentsDeployment.getConfigurations().isEmpty())
+                            startFuture.complete();
+                        else
+                            deployDependentsDeployment(startFuture);
+                    });
+                });
+                return;
+            }
+            dependentsDeployment = parser.getDependentsDeployment();
+            startDeployment(new DeploymentState(new DeploymentPlan()), startFuture);
+            parser.configurationHandler(cfg -> {
+                // Nothing more is deployed once a verticle failed
+                if (deploymentFuture.failed())
+                    return;
+                addNodes(state.getPlan().add(dependentsDeployment, Collections.singletonList(cfg)));
+                // Dispatching waits for the root's limit of verticles deploying at the same time
+                if (parser.isMaxInFlightParsed())
+                    dispatchReadyNodes();
+            }).endHandler(res -> {
+                file.close();
+                if (res.failed()) {
+                    deploymentFuture.tryFail(res.cause());
+                    return;
+                }
+                if (deploymentFuture.failed())
+                    return;
+                try {
+                    addNodes(state.getPlan().addTemplates(dependentsDeployment));
+                    state.getPlan().seal();
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    deploymentFuture.tryFail(e);
+                    return;
+                }
+                reportTree();
+                // Sealing may have deferred nodes that depend on lazy ones by name
+                remainingDeployments = 0;
+                state.getNodes().forEach(node -> {
+                    if (!node.deferred && !state.isReady(node.index) && !state.failed(node.index))
+                        remainingDeployments++;
+                    if (scheduler.isWaiting(node))
+                        countPendingPrerequisites(node);
+                });
+                expandCopies();
+                if (remainingDeployments == 0)
+                    deploymentFuture.tryComplete();
+                dispatchReadyNodes();
+            });
+        });
+    }
+
+    /**
+     * Resets the state of the deployment, releasing the state it replaces
+     * @param deploymentState The state of the execution of the plan being deployed, nodes are
+     * added with {@link #addNodes(List)}
+     * @param startFuture The future for this verticle that needs to be completed once all
+     * verticles (and their dependents) are deployed
+     */
+    private void startDeployment(DeploymentState deploymentState, Future<Void> startFuture) {
+        if (state != null)
+            state.release();
+        state = deploymentState;
+        startedAt = System.currentTimeMillis();
+        remainingDeployments = 0;
+        rollingBack = false;
+        skippedBy = new IdentityHashMap<>();
+        deploymentFuture = Future.future();
+        deploymentFuture.setHandler(ar -> {
+            // Once this verticle fails to start, nothing would undeploy the verticles it deployed
+            if (ar.failed() && (rollbackOnFailure || !started))
+                rollback(rolledBack -> completeDeployment(ar, rolledBack, startFuture));
+            else
+                completeDeployment(ar, null, startFuture);
+        });
+        scheduler = new DeploymentScheduler(state, maxDeploymentsInFlight, this::deployNode);
+        attempts = new DeploymentAttempts(vertx, deployContext, state, metrics, eventLoops, readinessTimeout, maxBackoff,
+                                          this::deployed, node -> {
+            ready(node);
+            dispatchReadyNodes();
+        }, (node, cause) -> {
+            notReady(node, cause);
+            dispatchReadyNodes();
+            scheduler.drained();
+        });
+    }
+
+    /**
+     * Builds the startup report and completes the start
+     * @param result The result of the deployment
+     * @param rolledBack The names of the verticles rolled back, null if not rolled back
+     * @param startFuture The future for this verticle
+     */
+    private void completeDeployment(AsyncResult<Void> result, List<String> rolledBack, Future<Void> startFuture) {
+        startupReport = buildStartupReport();
+        if (rolledBack != null)
+            startupReport.put("rolledBack", new JsonArray(rolledBack));
+        recordProfile(drifted -> {
+            if (drifted != null && !drifted.isEmpty())
+                startupReport.put("drifted", drifted);
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("startup report " + startupReport.encode());
+            if (result.failed()) {
+                LOGGER.warn("One or more verticles failed to deploy", result.cause());
+                startFuture.fail(result.cause());
             } else {
                 startFuture.complete();
             }
         });
+    }
 
-        deployVerticles(dependentsDeployment);
+    /**
+     * Stops deploying verticles and, once the deployments in flight have completed, undeploys the
+     * verticles deployed
+     * @param completionHandler The handler called with the names of the verticles undeployed
+     */
+    private void rollback(Handler<List<String>> completionHandler) {
+        rollingBack = true;
+        scheduler.clear();
+        attempts.stopRetrying();
+        scheduler.drain(v -> {
+            closePlaceholders();
+            attempts.close();
+            List<String> rolledBack = new ArrayList<>();
+            state.getNodes().forEach(node -> {
+                if (state.succeeded(node.index) && (remote == null || !remote[node.index]))
+                    rolledBack.add(node.config.getName());
+            });
+            LOGGER.warn("rolling back " + rolledBack.size() + " deployed verticles");
+            undeployLevel(levels(state.getNodes()), 0, null, ar -> {
+                if (ar.failed())
+                    LOGGER.warn("rolling back the deployment failed", ar.cause());
+                completionHandler.handle(rolledBack);
+            });
+        });
     }
 
     /**
-     * Gets a composite future using a future for each verticle to be deployed. This composite
-     * future is successful if all verticles deployed and fails if any verticle fails to deploy.
-     * @return The composite future
+     * Reports the size, depth and width of the sealed plan to the {@link DeploymentMetrics}
      */
-    private CompositeFuture getCompositeFuture() {
-        List<Future<String>> futures = new ArrayList<>();
-        dependentsDeployment.getConfigurations().forEach(cfg -> futures.addAll(getFutures(cfg)));
+    private void reportTree() {
+        List<List<DeploymentPlan.Node>> levels = levels(state.getNodes());
+        int width = 0;
+        for (List<DeploymentPlan.Node> level : levels)
+            width = Math.max(width, level.size());
+        metrics.treeDeploying(state.getNodes().size(), levels.size(), width);
+    }
+
+    /**
+     * Adds nodes of the plan to be deployed. The nodes whose prerequisites have all been
+     * deployed become ready to be deployed, nodes already deployed are skipped.
+     * @param nodes The nodes
+     */
+    private void addNodes(List<DeploymentPlan.Node> nodes) {
+        int size = state.getNodes().size();
+        scheduler.ensureCapacity(size);
+        state.ensureCapacity(size);
+        if (profile != null)
+            scheduler.prioritize(nodes, profile);
+        for (DeploymentPlan.Node node : nodes) {
+            node.config.bind(state, node.index);
+            if (remote != null && remote[node.index] || state.succeeded(node.index)) {
+                // Deployed by another member or kept deployed by a redeploy
+                scheduler.clearPending(node);
+                if (!node.deferred)
+                    state.nodeCompleted(node);
+            } else {
+                if (!node.deferred)
+                    remainingDeployments++;
+                countPendingPrerequisites(node);
+            }
+        }
+        if (preloadClasses)
+            preload(nodes);
+        expandCopies();
+    }
 
-        return CompositeFuture.all(new ArrayList<>(futures));
+    /**
+     * Adds the nodes of the copies of templates expanded as other copies complete (see
+     * {@link DeploymentTemplate#getFanOut()}), unless the deployment is failing
+     */
+    private void expandCopies() {
+        if (expandingCopies)
+            return;
+        expandingCopies = true;
+        List<DeploymentPlan.Node> nodes;
+        while (!rollingBack && !deploymentFuture.failed() && !(nodes = state.expandCopies()).isEmpty())
+            addNodes(nodes);
+        expandingCopies = false;
+    }
+
+    /**
+     * Loads and initializes, on worker threads, the classes of the nodes waiting for their
+     * prerequisites
+     * @param nodes The nodes
+     */
+    private void preload(List<DeploymentPlan.Node> nodes) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        for (DeploymentPlan.Node node : nodes) {
+            DeploymentOptions options = node.config.options();
+            if (!scheduler.isWaiting(node) || node.config.getName() == null ||
+                options != null && (options.getIsolationGroup() != null || options.getExtraClasspath() != null))
+                continue;
+            String className = DependentsDeploymentValidator.javaClassName(vertx, node.config.getName());
+            if (className == null)
+                continue;
+            vertx.executeBlocking(future -> {
+                try {
+                    Class.forName(className, true, classLoader);
+                    future.complete();
+                } catch (ClassNotFoundException | LinkageError e) {
+                    future.fail(e);
+                }
+            }, false, ar -> {
+                if (ar.failed() && LOGGER.isDebugEnabled())
+                    LOGGER.debug("preloading " + className + " failed", ar.cause());
+            });
+        }
     }
 
     /**
-     * Adds all futures from {@link DeploymentConfiguration} and its dependents (if any).
-     * @param cfg The {@link DeploymentConfiguration}
+     * Counts the prerequisites of the node not deployed (or, unless the node tolerates cold
+     * parents, not ready) yet. Until the plan is sealed, a node that
+     * depends on names also waits for the plan to be sealed. The node becomes ready to be deployed
+     * if nothing is pending.
+     * @param node The node
      */
-    private List<Future<String>> getFutures(DeploymentConfiguration cfg) {
-        List<Future<String>> futures = new ArrayList<>();
-        futures.add(cfg.future);
-        for (DependentsDeployment dep : cfg.getDependents()) {
-            dep.getConfigurations().forEach(config -> futures.addAll(getFutures(config)));
+    private void countPendingPrerequisites(DeploymentPlan.Node node) {
+        int pending = state.getPlan().isSealed() || node.config.getDependsOn().isEmpty() ? 0 : 1;
+        for (DeploymentPlan.Node prerequisite : node.prerequisites) {
+            if (prerequisite.config.isOptional() && state.failed(prerequisite.index)) {
+                skip(prerequisite, Collections.singletonList(node));
+                return;
+            } else if (skippedBy.containsKey(prerequisite)) {
+                skip(skippedBy.get(prerequisite), Collections.singletonList(node));
+                return;
+            }
+            if (node.config.isColdParentTolerated() ? !state.succeeded(prerequisite.index) : !state.isReady(prerequisite.index))
+                pending++;
         }
-        return futures;
+        scheduler.setPending(node, pending);
+        if (pending == 0)
+            markReady(node);
     }
 
     /**
-     * Deploys each of the verticles found in the DependentsDeployment object
-     * @param depDeployment The DependentsDeployment object
+     * Queues the node to be deployed or, if lazy, registers its placeholder
+     * @param node The node
      */
-    private void deployVerticles(DependentsDeployment depDeployment) {
-        if (depDeployment != null && !depDeployment.getConfigurations().isEmpty()) {
-            depDeployment.getConfigurations().forEach(this::deployConfiguration);
+    private void markReady(DeploymentPlan.Node node) {
+        scheduler.clearPending(node);
+        if (node.config.isLazy()) {
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("deferring " + node.config.getName() + " until a message is sent to " + node.config.getAddress());
+            placeholders.put(node, new LazyPlaceholder(vertx, node, this::trigger));
+        } else {
+            scheduler.queue(node);
         }
     }
- 
+
+    /**
+     * Queues a lazy node to be deployed, once a message has been sent to its address
+     * @param node The node
+     */
+    private void trigger(DeploymentPlan.Node node) {
+        scheduler.queue(node);
+        dispatchReadyNodes();
+    }
+
     /**
-     * Using this verticle's vertx, deploy a verticle using the
-     * {@link DeploymentConfiguration}. If the verticle to deploy has dependents, those
-     * dependents will be deployed when the verticle's deployment succeeds (recursively)
-     * @param config The {@link DeploymentConfiguration}
+     * Unregisters the placeholders of the lazy nodes not deployed, failing their buffered
+     * messages
      */
-    private void deployConfiguration(DeploymentConfiguration config) {
-        String verticleName = config.getName();
+    private void closePlaceholders() {
+        placeholders.values().forEach(placeholder -> placeholder.close(
+            new IllegalStateException("Verticle " + placeholder.getNode().config.getName() + " will not be deployed")));
+        placeholders.clear();
+    }
+
+    /**
+     * Dispatches the nodes ready to be deployed (see {@link DeploymentScheduler#dispatch()}),
+     * unless the deployment is failing
+     */
+    private void dispatchReadyNodes() {
+        if (rollingBack || deploymentFuture.failed())
+            scheduler.clear();
+        else
+            scheduler.dispatch();
+    }
+
+    /**
+     * Builds the startup report (See {@link #getStartupReport()})
+     * @return The startup report
+     */
+    private JsonObject buildStartupReport() {
+        DeploymentPlan.Node last = null;
+        for (DeploymentPlan.Node node : state.getNodes()) {
+            if (completedAfter(node, last))
+                last = node;
+        }
+
+        LinkedList<DeploymentPlan.Node> criticalPath = new LinkedList<>();
+        while (last != null) {
+            criticalPath.addFirst(last);
+            DeploymentPlan.Node previous = null;
+            for (DeploymentPlan.Node prerequisite : last.prerequisites) {
+                if (completedAfter(prerequisite, previous))
+                    previous = prerequisite;
+            }
+            last = previous;
+        }
+
+        JsonArray path = new JsonArray();
+        criticalPath.forEach(node -> path.add(new JsonObject()
+            .put("name", node.config.getName())
+            .put("deploymentID", state.deploymentID(node.index))
+            .put("waitTime", state.waitTime(node.index))
+            .put("deployTime", state.deployTime(node.index))));
+
+        long completedAt = System.currentTimeMillis();
+        JsonObject report = new JsonObject().put("startedAt", startedAt)
+                                            .put("completedAt", completedAt)
+                                            .put("totalTime", completedAt - startedAt)
+                                            .put("criticalPath", path);
+
+        JsonArray failures = new JsonArray();
+        state.getNodes().forEach(node -> {
+            if (node.config.isOptional() && state.failed(node.index) && !skippedBy.containsKey(node)) {
+                JsonArray skipped = new JsonArray();
+                skippedBy.forEach((skippedNode, failed) -> {
+                    if (failed == node)
+                        skipped.add(skippedNode.config.getName());
+                });
+                failures.add(new JsonObject().put("name", node.config.getName())
+                                             .put("cause", String.valueOf(state.cause(node.index).getMessage()))
+                                             .put("skipped", skipped));
+            }
+        });
+        if (!failures.isEmpty())
+            report.put("failures", failures);
+        return report;
+    }
+
+    /**
+     * Has the deployment of the node completed after the one of the other node?
+     * @param node The node
+     * @param other The other node, may be null
+     * @return true if the node's deployment has completed and either other is null or its
+     * deployment completed earlier
+     */
+    private boolean completedAfter(DeploymentPlan.Node node, DeploymentPlan.Node other) {
+        long completedAt = state.completedAt(node.index);
+        return completedAt > 0 && (other == null || completedAt >= state.completedAt(other.index));
+    }
+
+    /**
+     * Computes how long a node waited for its prerequisites: the time between the last of them
+     * releasing it (being ready or, if the node tolerates cold parents, deployed) and the request
+     * @param node The node
+     * @param requestedAt The time its deployment is requested
+     * @return The time in milliseconds, 0 if the node has no prerequisites
+     */
+    private long waitTime(DeploymentPlan.Node node, long requestedAt) {
+        long releasedAt = 0;
+        for (DeploymentPlan.Node prerequisite : node.prerequisites) {
+            releasedAt = Math.max(releasedAt, node.config.isColdParentTolerated() || !state.isReady(prerequisite.index) ?
+                state.completedAt(prerequisite.index) : state.readyAt(prerequisite.index));
+        }
+        return releasedAt > 0 ? Math.max(0, requestedAt - releasedAt) : 0;
+    }
+
+    /**
+     * Using this verticle's vertx, deploy a verticle using the {@link DeploymentConfiguration} of
+     * the node (see {@link DeploymentAttempts}). Once the verticle's deployment succeeds, each
+     * dependent node whose prerequisites have all been deployed becomes ready to be deployed as
+     * well
+     * @param node The {@link DeploymentPlan.Node}
+     */
+    private void deployNode(DeploymentPlan.Node node) {
+        DeploymentConfiguration config = node.config;
         if (LOGGER.isDebugEnabled())
-            LOGGER.debug("deploying " + verticleName);
-        Handler<AsyncResult<String>> deploymentHandler = res -> {
-            if (res.succeeded()) {
-                config.future.complete(res.result());
-                for (DependentsDeployment dep : config.getDependents()) {
-                    deployVerticles(dep);
-                }
+            LOGGER.debug("deploying " + config.getName());
+        long requestedAt = System.currentTimeMillis();
+        state.requestedAt(node.index, requestedAt);
+        state.waitTime(node.index, waitTime(node, requestedAt));
+        metrics.deploymentStarted(config);
+        attempts.deploy(node);
+    }
+
+    /**
+     * Records the outcome of the deployment of the node's verticle, once no more attempts are
+     * made. On success, the dependents tolerating cold parents are released right away and the
+     * others once the verticle is ready; on failure, the deployment of the tree fails.
+     * @param node The {@link DeploymentPlan.Node}
+     * @param res The result of the last attempt
+     */
+    private void deployed(DeploymentPlan.Node node, AsyncResult<String> res) {
+        DeploymentConfiguration config = node.config;
+        state.completedAt(node.index, System.currentTimeMillis());
+        scheduler.completed(node);
+        if (res.succeeded()) {
+            state.complete(node.index, res.result());
+            metrics.deploymentCompleted(config, true, null, state.deployTime(node.index));
+            if (config.isShared())
+                sharedNodes.add(node);
+            LazyPlaceholder placeholder = placeholders.remove(node);
+            if (placeholder != null)
+                placeholder.deployed();
+            releaseDependents(node, true);
+            attempts.awaitReadiness(node);
+        } else {
+            state.fail(node.index, res.cause());
+            metrics.deploymentCompleted(config, false, res.cause(), state.deployTime(node.index));
+            if (!node.deferred)
+                state.nodeCompleted(node);
+            LazyPlaceholder placeholder = placeholders.remove(node);
+            if (placeholder != null)
+                placeholder.close(res.cause());
+            attempts.close(node);
+            if (coordinator != null)
+                coordinator.completed(node.index, res);
+            if (config.isOptional()) {
+                LOGGER.warn("deploying optional verticle " + config.getName() + " failed, skipping its dependents",
+                            res.cause());
+                if (!node.deferred)
+                    remainingDeployments--;
+                skip(node, state.dependents(node));
+                expandCopies();
+                if (remainingDeployments == 0 && state.getPlan().isSealed())
+                    deploymentFuture.tryComplete();
             } else {
-                config.future.fail(res.cause());
-                LOGGER.warn("deploying verticle " + verticleName + " failed", res.cause());
+                deploymentFuture.tryFail(res.cause());
+                LOGGER.warn("deploying verticle " + config.getName() + " failed", res.cause());
             }
-        };
+        }
+        dispatchReadyNodes();
+        scheduler.drained();
+    }
 
-        if (config.getDeploymentOptions() != null)
-            vertx.deployVerticle(verticleName, config.getDeploymentOptions(), deploymentHandler);
-        else
-            vertx.deployVerticle(verticleName, deploymentHandler);
+    /**
+     * Skips the nodes, and, directly or not, their dependents, since an optional verticle they
+     * depend on failed to deploy
+     * @param failed The node of the optional verticle that failed
+     * @param nodes The nodes to skip
+     */
+    private void skip(DeploymentPlan.Node failed, List<DeploymentPlan.Node> nodes) {
+        // Depth first, using a stack instead of recursion since trees can be very deep
+        Deque<DeploymentPlan.Node> stack = new ArrayDeque<>(nodes);
+        while (!stack.isEmpty()) {
+            DeploymentPlan.Node node = stack.pop();
+            if (state.isComplete(node.index) || state.requestedAt(node.index) > 0)
+                continue;
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("skipping " + node.config.getName());
+            state.fail(node.index, new IllegalStateException("Verticle " + node.config.getName() +
+                                                              " skipped, optional verticle " +
+                                                              failed.config.getName() + " failed to deploy"));
+            skippedBy.put(node, failed);
+            scheduler.clearPending(node);
+            LazyPlaceholder placeholder = placeholders.remove(node);
+            if (placeholder != null)
+                placeholder.close(state.cause(node.index));
+            if (!node.deferred && (remote == null || !remote[node.index])) {
+                remainingDeployments--;
+                state.nodeCompleted(node);
+            }
+            stack.addAll(state.dependents(node));
+        }
+    }
+
+    /**
+     * The node's verticle is deployed and ready: the dependents not tolerating cold parents whose
+     * prerequisites have all been deployed and are ready become ready to be deployed as well
+     * @param node The {@link DeploymentPlan.Node}
+     */
+    private void ready(DeploymentPlan.Node node) {
+        state.readyAt(node.index, System.currentTimeMillis());
+        if (coordinator != null)
+            coordinator.completed(node.index, Future.succeededFuture(state.deploymentID(node.index)));
+        if (!node.deferred) {
+            remainingDeployments--;
+            state.nodeCompleted(node);
+            expandCopies();
+            if (remainingDeployments == 0 && state.getPlan().isSealed())
+                deploymentFuture.tryComplete();
+        }
+        releaseDependents(node, false);
+    }
+
+    /**
+     * The node's verticle is deployed but was not ready within its timeout: the node fails, its
+     * verticle being undeployed with the rest of the tree, and if optional the dependents not
+     * tolerating cold parents are skipped
+     * @param node The {@link DeploymentPlan.Node}
+     * @param cause The cause of the failure
+     */
+    private void notReady(DeploymentPlan.Node node, Throwable cause) {
+        DeploymentConfiguration config = node.config;
+        if (coordinator != null)
+            coordinator.completed(node.index, Future.failedFuture(cause));
+        if (config.isOptional()) {
+            LOGGER.warn("optional verticle " + config.getName() + " is not ready, skipping its dependents", cause);
+            if (!node.deferred) {
+                remainingDeployments--;
+                state.nodeCompleted(node);
+            }
+            skip(node, state.dependents(node));
+            expandCopies();
+            if (remainingDeployments == 0 && state.getPlan().isSealed())
+                deploymentFuture.tryComplete();
+        } else {
+            deploymentFuture.tryFail(cause);
+            LOGGER.warn("verticle " + config.getName() + " is not ready", cause);
+        }
+    }
+
+    /**
+     * Releases one prerequisite of the node's dependents that either tolerate cold parents or not
+     * @param node The {@link DeploymentPlan.Node}
+     * @param coldParentTolerated Whether the dependents released tolerate cold parents
+     */
+    private void releaseDependents(DeploymentPlan.Node node, boolean coldParentTolerated) {
+        for (DeploymentPlan.Node dependent : state.dependents(node)) {
+            if (dependent.config.isColdParentTolerated() == coldParentTolerated &&
+                scheduler.releasePrerequisite(dependent))
+                markReady(dependent);
+        }
     }
 }
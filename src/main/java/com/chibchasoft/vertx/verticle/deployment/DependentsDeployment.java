@@ -34,6 +34,8 @@ import io.vertx.core.json.JsonObject;
  */
 public class DependentsDeployment {
     private List<DeploymentConfiguration> configurations = new ArrayList<>();
+    private List<DeploymentTemplate>      templates      = new ArrayList<>();
+    private int                           maxInFlight;
 
     /**
      * Default constructor
@@ -59,21 +61,74 @@ public class DependentsDeployment {
         return configurations;
     }
 
+    /**
+     * Returns the (non-null) list of {@link DeploymentTemplate}s, whose copies are deployed along
+     * with the {@link DeploymentConfiguration}s of this {@link DependentsDeployment}
+     * @return The (non-null) list of {@link DeploymentTemplate}s
+     */
+    public List<DeploymentTemplate> getTemplates() {
+        return templates;
+    }
+
+    /**
+     * Get the maximum number of verticles of this {@link DependentsDeployment} (not including their
+     * dependents) that can be deploying at the same time
+     * @return The maximum number of verticles deploying at the same time, 0 if there is no limit
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets the maximum number of verticles of this {@link DependentsDeployment} (not including their
+     * dependents) that can be deploying at the same time
+     * @param maxInFlight The maximum number of verticles deploying at the same time, 0 if there is
+     * no limit
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DependentsDeployment setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 0)
+            throw new IllegalArgumentException("maxInFlight must not be negative");
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
     /**
      * Populates this object with the information from the supplied JsonObject
      * @param json The JSON Object
      */
     public void fromJson(JsonObject json) {
+        fromJson(json, new DeploymentOptionsInterner());
+    }
+
+    /**
+     * Populates this object with the information from the supplied JsonObject, sharing identical
+     * deployment options among the configurations parsed with the same interner
+     * @param json The JSON Object
+     * @param interner The interner of the descriptor being parsed
+     */
+    void fromJson(JsonObject json, DeploymentOptionsInterner interner) {
         Objects.requireNonNull(json, "json is required");
         if (json.getValue("configurations") instanceof JsonArray) {
             json.getJsonArray("configurations").forEach(item -> {
                 if (item instanceof JsonObject) {
                     DeploymentConfiguration cfg = new DeploymentConfiguration();
-                    cfg.fromJson((JsonObject) item);
+                    cfg.fromJson((JsonObject) item, interner);
                     getConfigurations().add(cfg);
                 }
             });
         }
+        if (json.getValue("templates") instanceof JsonArray) {
+            json.getJsonArray("templates").forEach(item -> {
+                if (item instanceof JsonObject) {
+                    DeploymentTemplate template = new DeploymentTemplate();
+                    template.fromJson((JsonObject) item, interner);
+                    getTemplates().add(template);
+                }
+            });
+        }
+        if (json.getValue("maxInFlight") instanceof Number)
+            setMaxInFlight(((Number) json.getValue("maxInFlight")).intValue());
     }
 
     /**
@@ -82,18 +137,28 @@ public class DependentsDeployment {
      */
     public JsonObject toJson() {
         JsonObject json = new JsonObject();
+        // First, so a streaming parser knows the limit before the configurations
+        if (maxInFlight > 0)
+            json.put("maxInFlight", maxInFlight);
         if (this.getConfigurations() != null) {
             JsonArray array = new JsonArray();
             this.getConfigurations().forEach(item -> array.add(item.toJson()));
             json.put("configurations", array);
         }
+        if (!templates.isEmpty()) {
+            JsonArray array = new JsonArray();
+            templates.forEach(item -> array.add(item.toJson()));
+            json.put("templates", array);
+        }
         return json;
     }
 
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
-        builder.append("DependentsDeployment [configurations=").append(configurations).append("]");
+        builder.append("DependentsDeployment [configurations=").append(configurations)
+               .append(", templates=").append(templates)
+               .append(", maxInFlight=").append(maxInFlight).append("]");
         return builder.toString();
     }
 }
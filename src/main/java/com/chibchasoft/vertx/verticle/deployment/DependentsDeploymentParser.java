@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEvent;
+import io.vertx.core.parsetools.JsonParser;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * <p>Streaming parser of the JSON representation of a {@link DependentsDeployment} (see
+ * {@link DependentsDeployment#toJson()}). The {@link DependentsDeployment} and its
+ * {@link DeploymentConfiguration}s are built directly from the parsing events, without first
+ * materializing the whole descriptor as a {@link JsonObject}.</p>
+ * <p>Each root configuration (and its dependents) is handed to the
+ * {@link #configurationHandler(Handler)} as soon as it has been parsed, before the rest of the
+ * descriptor is, so it can be deployed right away. The scalar fields of a
+ * {@link DependentsDeployment} (such as {@link DependentsDeployment#getMaxInFlight()}) are applied
+ * as soon as they are parsed, so they are known to the configurations that follow them (see
+ * {@link #isMaxInFlightParsed()}).</p>
+ *
+ * @see DependentVerticleDeployer#setDependentsDeploymentFile(String)
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+public class DependentsDeploymentParser implements Handler<Buffer> {
+    private final JsonParser                                 parser;
+    private final DependentsDeployment                       dependentsDeployment = new DependentsDeployment();
+    private final Deque<Frame>                               stack                = new ArrayDeque<>();
+    private final DeploymentOptionsInterner                  interner             = new DeploymentOptionsInterner();
+    private Handler<DeploymentConfiguration>                 configurationHandler;
+    private Handler<AsyncResult<DependentsDeployment>>       endHandler;
+    private boolean                                          parsed;
+    private boolean                                          maxInFlightParsed;
+    private boolean                                          ended;
+
+    private DependentsDeploymentParser(JsonParser parser) {
+        this.parser = parser;
+        parser.handler(this::handleEvent);
+        parser.exceptionHandler(this::fail);
+        parser.endHandler(v -> {
+            if (parsed)
+                end(Future.succeededFuture(dependentsDeployment));
+            else
+                fail(new DecodeException("Unexpected end of the dependents deployment"));
+        });
+    }
+
+    /**
+     * Creates a parser to be fed with {@link #handle(Buffer)} and {@link #end()}
+     * @return The parser
+     */
+    public static DependentsDeploymentParser newParser() {
+        return new DependentsDeploymentParser(JsonParser.newParser());
+    }
+
+    /**
+     * Creates a parser fed by the supplied stream
+     * @param stream The stream
+     * @return The parser
+     */
+    public static DependentsDeploymentParser newParser(ReadStream<Buffer> stream) {
+        Objects.requireNonNull(stream, "stream is required");
+        return new DependentsDeploymentParser(JsonParser.newParser(stream));
+    }
+
+    /**
+     * Sets the handler called with each root {@link DeploymentConfiguration} (and its dependents)
+     * once it has been parsed
+     * @param configurationHandler The handler
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DependentsDeploymentParser configurationHandler(Handler<DeploymentConfiguration> configurationHandler) {
+        this.configurationHandler = configurationHandler;
+        return this;
+    }
+
+    /**
+     * Sets the handler called once the whole {@link DependentsDeployment} has been parsed or the
+     * parsing failed
+     * @param endHandler The handler
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DependentsDeploymentParser endHandler(Handler<AsyncResult<DependentsDeployment>> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    /**
+     * Returns the {@link DependentsDeployment} being parsed. Its root configurations are added as
+     * they are parsed.
+     * @return The {@link DependentsDeployment}
+     */
+    public DependentsDeployment getDependentsDeployment() {
+        return dependentsDeployment;
+    }
+
+    /**
+     * Has the {@code maxInFlight} of the root {@link DependentsDeployment} been parsed? Until then,
+     * or until the whole descriptor has been parsed, the limit of the root configurations
+     * deploying at the same time is not known yet.
+     * @return true if the root's {@code maxInFlight} or the whole descriptor has been parsed
+     */
+    public boolean isMaxInFlightParsed() {
+        return maxInFlightParsed || parsed;
+    }
+
+    /**
+     * Parses the supplied buffer
+     * @param buffer The buffer
+     */
+    @Override
+    public void handle(Buffer buffer) {
+        parser.handle(buffer);
+    }
+
+    /**
+     * Signals the end of the input
+     */
+    public void end() {
+        parser.end();
+    }
+
+    private void handleEvent(JsonEvent event) {
+        if (ended)
+            return;
+        try {
+            handleEvent(stack.peek(), event);
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    private void handleEvent(Frame top, JsonEvent event) {
+        if (top == null && parsed) {
+            fail(new DecodeException("Unexpected content after the dependents deployment"));
+            return;
+        }
+        switch (event.type()) {
+            case START_OBJECT:
+                if (top == null)
+                    stack.push(new DeploymentFrame(dependentsDeployment, true));
+                else
+                    stack.push(top.startObject(event.fieldName()));
+                break;
+            case START_ARRAY:
+                if (top == null)
+                    fail(new DecodeException("A dependents deployment must be a JSON object"));
+                else
+                    stack.push(top.startArray(event.fieldName()));
+                break;
+            case VALUE:
+                if (top == null)
+                    fail(new DecodeException("A dependents deployment must be a JSON object"));
+                else
+                    top.value(event.fieldName(), event.value());
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                stack.pop().end();
+                break;
+        }
+    }
+
+    private void fail(Throwable cause) {
+        end(Future.failedFuture(cause));
+    }
+
+    private void end(AsyncResult<DependentsDeployment> result) {
+        if (!ended) {
+            ended = true;
+            if (endHandler != null)
+                endHandler.handle(result);
+        }
+    }
+
+    /**
+     * A JSON object or array being parsed
+     */
+    private abstract static class Frame {
+        /**
+         * A JSON object starts within this frame
+         * @param field The field name of the object, null within an array
+         * @return The frame of the object
+         */
+        Frame startObject(String field) {
+            return new ObjectFrame(null);
+        }
+
+        /**
+         * A JSON array starts within this frame
+         * @param field The field name of the array, null within an array
+         * @return The frame of the array
+         */
+        Frame startArray(String field) {
+            return new ArrayFrame(null);
+        }
+
+        /**
+         * A JSON value is found within this frame
+         * @param field The field name of the value, null within an array
+         * @param value The value
+         */
+        void value(String field, Object value) {
+        }
+
+        /**
+         * This frame's object or array ends
+         */
+        void end() {
+        }
+    }
+
+    /**
+     * A generic JSON object, handed to a consumer once parsed (ignored if there is no consumer)
+     */
+    private static class ObjectFrame extends Frame {
+        final JsonObject           json = new JsonObject();
+        final Consumer<JsonObject> consumer;
+
+        ObjectFrame(Consumer<JsonObject> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        Frame startObject(String field) {
+            return new ObjectFrame(object -> json.put(field, object));
+        }
+
+        @Override
+        Frame startArray(String field) {
+            return new ArrayFrame(array -> json.put(field, array));
+        }
+
+        @Override
+        void value(String field, Object value) {
+            json.put(field, value);
+        }
+
+        @Override
+        void end() {
+            if (consumer != null)
+                consumer.accept(json);
+        }
+    }
+
+    /**
+     * A generic JSON array, handed to a consumer once parsed (ignored if there is no consumer)
+     */
+    private static class ArrayFrame extends Frame {
+        final JsonArray           json = new JsonArray();
+        final Consumer<JsonArray> consumer;
+
+        ArrayFrame(Consumer<JsonArray> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        Frame startObject(String field) {
+            return new ObjectFrame(json::add);
+        }
+
+        @Override
+        Frame startArray(String field) {
+            return new ArrayFrame(json::add);
+        }
+
+        @Override
+        void value(String field, Object value) {
+            json.add(value);
+        }
+
+        @Override
+        void end() {
+            if (consumer != null)
+                consumer.accept(json);
+        }
+    }
+
+    /**
+     * A {@link DependentsDeployment}. Its {@code configurations} are parsed structurally, its
+     * scalar fields are applied as soon as they are parsed and any other field is collected and
+     * applied with {@link DependentsDeployment#fromJson(JsonObject)}.
+     */
+    private class DeploymentFrame extends ObjectFrame {
+        final DependentsDeployment deployment;
+        final boolean              root;
+
+        DeploymentFrame(DependentsDeployment deployment, boolean root) {
+            super(null);
+            this.deployment = deployment;
+            this.root = root;
+        }
+
+        @Override
+        Frame startArray(String field) {
+            if ("configurations".equals(field))
+                return new ConfigurationsFrame(deployment, root);
+            return super.startArray(field);
+        }
+
+        @Override
+        void value(String field, Object value) {
+            deployment.fromJson(new JsonObject().put(field, value), interner);
+            if (root && "maxInFlight".equals(field))
+                maxInFlightParsed = true;
+        }
+
+        @Override
+        void end() {
+            deployment.fromJson(json, interner);
+            if (root)
+                parsed = true;
+        }
+    }
+
+    /**
+     * The {@code configurations} of a {@link DependentsDeployment}
+     */
+    private class ConfigurationsFrame extends Frame {
+        final DependentsDeployment deployment;
+        final boolean              root;
+
+        ConfigurationsFrame(DependentsDeployment deployment, boolean root) {
+            this.deployment = deployment;
+            this.root = root;
+        }
+
+        @Override
+        Frame startObject(String field) {
+            return new ConfigurationFrame(deployment, root);
+        }
+    }
+
+    /**
+     * A {@link DeploymentConfiguration}. Its {@code dependents} are parsed structurally, any other
+     * field is collected and applied with {@link DeploymentConfiguration#fromJson(JsonObject)}.
+     */
+    private class ConfigurationFrame extends ObjectFrame {
+        final DependentsDeployment    deployment;
+        final boolean                 root;
+        final DeploymentConfiguration config = new DeploymentConfiguration();
+
+        ConfigurationFrame(DependentsDeployment deployment, boolean root) {
+            super(null);
+            this.deployment = deployment;
+            this.root = root;
+        }
+
+        @Override
+        Frame startArray(String field) {
+            if ("dependents".equals(field))
+                return new DependentsFrame(config);
+            return super.startArray(field);
+        }
+
+        @Override
+        void end() {
+            config.fromJson(json, interner);
+            deployment.getConfigurations().add(config);
+            if (root && configurationHandler != null)
+                configurationHandler.handle(config);
+        }
+    }
+
+    /**
+     * The {@code dependents} of a {@link DeploymentConfiguration}
+     */
+    private class DependentsFrame extends Frame {
+        final DeploymentConfiguration config;
+
+        DependentsFrame(DeploymentConfiguration config) {
+            this.config = config;
+        }
+
+        @Override
+        Frame startObject(String field) {
+            DependentsDeployment dependents = new DependentsDeployment();
+            config.getDependents().add(dependents);
+            return new DeploymentFrame(dependents, false);
+        }
+    }
+}
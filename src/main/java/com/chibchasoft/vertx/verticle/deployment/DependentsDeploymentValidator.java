@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Verticle;
+import io.vertx.core.Vertx;
+import io.vertx.core.spi.VerticleFactory;
+
+/**
+ * <p>Validates a {@link DependentsDeployment} before any of its verticles is deployed, reporting
+ * all the errors found at once instead of failing halfway through the deployment:</p>
+ * <ul>
+ * <li>Configurations without a name, depending on unknown names or on their own name, lazy
+ * configurations without an address and cyclic dependencies</li>
+ * <li>Verticles whose {@link VerticleFactory} is not registered or whose Java class cannot be
+ * loaded or is not a {@link Verticle}</li>
+ * <li>Duplicate nodes: the same configuration listed twice in a {@link DependentsDeployment}, two
+ * configurations of a {@link DependentsDeployment} with the same name and
+ * {@link DeploymentOptions} or names listed twice in {@link DeploymentConfiguration#getDependsOn()}
+ * </li>
+ * <li>{@link DeploymentOptions} Vert.x rejects (less than one instance, multi-threaded but not
+ * worker) and health checks without a {@link DeploymentConfiguration#getReadinessAddress()}</li>
+ * <li>Chains of dependents longer than {@link #getMaxDepth()}</li>
+ * </ul>
+ *
+ * @see DependentVerticleDeployer#setValidator(DependentsDeploymentValidator)
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+public class DependentsDeploymentValidator {
+    private static final String JAVA_PREFIX = "java";
+
+    private int maxDepth = 64;
+
+    /**
+     * Get the maximum number of configurations in a chain of dependents
+     * @return The maximum depth, 0 if there is no limit
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Sets the maximum number of configurations in a chain of dependents (each configuration
+     * depending on the previous one, as a dependent or by name)
+     * @param maxDepth The maximum depth, 0 if there is no limit
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DependentsDeploymentValidator setMaxDepth(int maxDepth) {
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("maxDepth must not be negative");
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Validates a {@link DependentsDeployment}
+     * @param vertx The Vert.x instance whose {@link VerticleFactory}s deploy the verticles, null to
+     * not verify the verticles can be created
+     * @param deployment The {@link DependentsDeployment}
+     * @return The errors found, empty if the {@link DependentsDeployment} is valid
+     */
+    public List<String> validate(Vertx vertx, DependentsDeployment deployment) {
+        Objects.requireNonNull(deployment, "deployment is required");
+        List<String> errors = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        List<DeploymentConfiguration> configurations = new ArrayList<>();
+        Set<DeploymentConfiguration> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // Depth first, using a stack instead of recursion since trees can be very deep
+        Map<DeploymentOptions, String> encoded = new IdentityHashMap<>();
+        Deque<DependentsDeployment> stack = new ArrayDeque<>();
+        stack.push(deployment);
+        while (!stack.isEmpty()) {
+            DependentsDeployment group = stack.pop();
+            validateGroup(group, encoded, errors);
+            for (DeploymentTemplate template : group.getTemplates()) {
+                // The configurations of a template are validated once, not once per copy
+                DependentsDeployment copy = new DependentsDeployment();
+                copy.getConfigurations().addAll(template.getConfigurations());
+                stack.push(copy);
+            }
+            for (DeploymentConfiguration cfg : group.getConfigurations()) {
+                if (!visited.add(cfg))
+                    continue;
+                configurations.add(cfg);
+                if (cfg.getName() != null)
+                    names.add(cfg.getName());
+                for (int i = cfg.getDependents().size() - 1; i >= 0; i--)
+                    stack.push(cfg.getDependents().get(i));
+            }
+        }
+
+        int structuralErrors = 0;
+        for (DeploymentConfiguration cfg : configurations) {
+            String name = cfg.getName();
+            if (name == null || name.isEmpty()) {
+                errors.add("A verticle has no name");
+                structuralErrors++;
+                continue;
+            }
+            Set<String> dependsOn = new HashSet<>();
+            for (String prerequisite : cfg.getDependsOn()) {
+                if (!dependsOn.add(prerequisite))
+                    errors.add("Verticle " + name + " depends on " + prerequisite + " more than once");
+                if (prerequisite.equals(name)) {
+                    errors.add("Verticle " + name + " depends on itself");
+                    structuralErrors++;
+                } else if (!names.contains(prerequisite)) {
+                    errors.add("Verticle " + name + " depends on unknown verticle " + prerequisite);
+                    structuralErrors++;
+                }
+            }
+            if (cfg.isLazy() && cfg.getAddress() == null) {
+                errors.add("Lazy verticle " + name + " has no address");
+                structuralErrors++;
+            }
+            if (cfg.getReadinessPollInterval() > 0 && cfg.getReadinessAddress() == null)
+                errors.add("Verticle " + name + " polls its readiness but has no readiness address");
+            validateOptions(name, cfg.options(), errors);
+            if (vertx != null)
+                validateFactory(vertx, name, errors);
+        }
+
+        if (structuralErrors == 0) {
+            try {
+                DeploymentPlan plan = new DeploymentPlan(deployment);
+                int depth = plan.getNodes().stream().mapToInt(node -> node.remaining).max().orElse(0);
+                if (maxDepth > 0 && depth > maxDepth)
+                    errors.add("The longest chain of dependents has " + depth + " verticles, more than " + maxDepth);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                errors.add(e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    private static void validateGroup(DependentsDeployment group, Map<DeploymentOptions, String> encoded,
+                                      List<String> errors) {
+        // One pass, keyed on the name and serialized options, since groups can be very large
+        Set<DeploymentConfiguration> listed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<String> keys = new HashSet<>();
+        for (DeploymentConfiguration cfg : group.getConfigurations()) {
+            if (!listed.add(cfg)) {
+                errors.add("Verticle " + cfg.getName() + " is listed more than once");
+                continue;
+            }
+            if (cfg.getName() == null)
+                continue;
+            String options = cfg.options() != null ?
+                encoded.computeIfAbsent(cfg.options(), opts -> opts.toJson().encode()) : "";
+            if (!keys.add(cfg.getName() + "|" + options))
+                errors.add("Verticle " + cfg.getName() + " is duplicated with the same deployment options");
+        }
+    }
+
+    private static void validateOptions(String name, DeploymentOptions options, List<String> errors) {
+        if (options == null)
+            return;
+        if (options.getInstances() < 1)
+            errors.add("Verticle " + name + " has less than one instance");
+        if (options.isMultiThreaded() && !options.isWorker())
+            errors.add("Verticle " + name + " is multi-threaded but not a worker");
+    }
+
+    private static void validateFactory(Vertx vertx, String name, List<String> errors) {
+        if (!hasFactory(vertx, name)) {
+            errors.add("No verticle factory found for verticle " + name);
+            return;
+        }
+        String className = javaClassName(vertx, name);
+        if (className == null)
+            return;
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null)
+            classLoader = DependentsDeploymentValidator.class.getClassLoader();
+        try {
+            if (!Verticle.class.isAssignableFrom(Class.forName(className, false, classLoader)))
+                errors.add("Class " + className + " is not a verticle");
+        } catch (ClassNotFoundException | LinkageError e) {
+            errors.add("Class " + className + " of verticle " + name + " cannot be loaded");
+        }
+    }
+
+    /**
+     * Gets the class of a verticle created by the default Java {@link VerticleFactory}
+     * @param vertx The Vert.x instance whose {@link VerticleFactory}s deploy the verticle
+     * @param name The name of the verticle
+     * @return The name of the class, null if the verticle is created by another factory or from a
+     * Java source file
+     */
+    static String javaClassName(Vertx vertx, String name) {
+        int colon = name.indexOf(':');
+        if (colon > 0) {
+            if (!JAVA_PREFIX.equals(name.substring(0, colon)))
+                return null;
+        } else {
+            int dot = name.lastIndexOf('.');
+            if (dot >= 0 && hasPrefix(vertx, name.substring(dot + 1)))
+                return null;
+        }
+        String className = VerticleFactory.removePrefix(name);
+        return className.endsWith(".java") ? null : className;
+    }
+
+    private static boolean hasFactory(Vertx vertx, String name) {
+        int colon = name.indexOf(':');
+        return colon <= 0 || JAVA_PREFIX.equals(name.substring(0, colon)) || hasPrefix(vertx, name.substring(0, colon));
+    }
+
+    private static boolean hasPrefix(Vertx vertx, String prefix) {
+        return vertx.verticleFactories().stream().anyMatch(factory -> prefix.equals(factory.prefix()));
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+/**
+ * <p>Deploys the verticles of the nodes dispatched by a {@link DeploymentScheduler}: each
+ * attempt fails if it takes longer than {@link DeploymentConfiguration#getTimeout()}, failed
+ * attempts are retried up to {@link DeploymentConfiguration#getMaxRetries()} times with a growing
+ * backoff, and a verticle with a {@link DeploymentConfiguration#getReadinessAddress()} is waited
+ * for through its {@link ReadinessGate} once deployed.</p>
+ * <p>The attempts belong to a single execution of a plan and are only used from the context of
+ * their {@link DependentVerticleDeployer}.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class DeploymentAttempts {
+    private static final Logger                                        LOGGER = LoggerFactory.getLogger(DeploymentAttempts.class);
+    private final Vertx                                                vertx;
+    private final Context                                              deployContext;
+    private final DeploymentState                                      state;
+    private final DeploymentMetrics                                    metrics;
+    private final int                                                  eventLoops;
+    private final long                                                 readinessTimeout;
+    private final long                                                 maxBackoff;
+    private final BiConsumer<DeploymentPlan.Node, AsyncResult<String>> deployedHandler;
+    private final Handler<DeploymentPlan.Node>                         readyHandler;
+    private final BiConsumer<DeploymentPlan.Node, Throwable>           notReadyHandler;
+    private final Map<DeploymentPlan.Node, ReadinessGate>              gates  = new IdentityHashMap<>();
+    private boolean                                                    stopped;
+
+    /**
+     * Creates the attempts of an execution
+     * @param vertx The Vert.x instance
+     * @param deployContext The context the verticles are deployed from (see
+     * {@link Contexts#detached(Vertx)})
+     * @param state The state of the execution
+     * @param metrics The metrics the attempts are reported to
+     * @param eventLoops The number of event loops, used by the instances expressions
+     * @param readinessTimeout The time in milliseconds to wait for a deployed verticle to be ready
+     * if it has no {@link DeploymentConfiguration#getTimeout()}
+     * @param maxBackoff The maximum time in milliseconds to wait before retrying
+     * @param deployedHandler The handler called with the node and the result of its last attempt
+     * @param readyHandler The handler called with the node once its deployed verticle is ready
+     * @param notReadyHandler The handler called with the node and the cause if its deployed
+     * verticle is not ready in time
+     */
+    DeploymentAttempts(Vertx vertx, Context deployContext, DeploymentState state, DeploymentMetrics metrics, int eventLoops,
+                       long readinessTimeout, long maxBackoff,
+                       BiConsumer<DeploymentPlan.Node, AsyncResult<String>> deployedHandler,
+                       Handler<DeploymentPlan.Node> readyHandler,
+                       BiConsumer<DeploymentPlan.Node, Throwable> notReadyHandler) {
+        this.vertx = vertx;
+        this.deployContext = deployContext;
+        this.state = state;
+        this.metrics = metrics;
+        this.eventLoops = eventLoops;
+        this.readinessTimeout = readinessTimeout;
+        this.maxBackoff = maxBackoff;
+        this.deployedHandler = deployedHandler;
+        this.readyHandler = readyHandler;
+        this.notReadyHandler = notReadyHandler;
+    }
+
+    /**
+     * Deploys the verticle of the node, opening its {@link ReadinessGate} first if it has a
+     * readiness address
+     * @param node The {@link DeploymentPlan.Node}
+     */
+    void deploy(DeploymentPlan.Node node) {
+        if (node.config.getReadinessAddress() != null) {
+            ReadinessGate gate = new ReadinessGate(vertx, node.config, readinessTimeout, v -> {
+                gates.remove(node);
+                readyHandler.handle(node);
+            }, cause -> {
+                gates.remove(node);
+                notReadyHandler.accept(node, cause);
+            });
+            gates.put(node, gate);
+            gate.open(v -> attempt(node, 0));
+        } else {
+            attempt(node, 0);
+        }
+    }
+
+    /**
+     * The verticle of the node is deployed: waits for it to be ready through its gate, if any
+     * @param node The {@link DeploymentPlan.Node}
+     */
+    void awaitReadiness(DeploymentPlan.Node node) {
+        ReadinessGate gate = gates.get(node);
+        if (gate != null)
+            gate.deployed();
+        else
+            readyHandler.handle(node);
+    }
+
+    /**
+     * Stops waiting for the verticle of the node to be ready
+     * @param node The {@link DeploymentPlan.Node}
+     */
+    void close(DeploymentPlan.Node node) {
+        ReadinessGate gate = gates.remove(node);
+        if (gate != null)
+            gate.close();
+    }
+
+    /**
+     * Stops waiting for the verticles deployed but not ready yet
+     */
+    void close() {
+        gates.values().forEach(ReadinessGate::close);
+        gates.clear();
+    }
+
+    /**
+     * Is any deployed verticle not ready yet?
+     * @return true if a verticle is still waited for
+     */
+    boolean isAwaitingReadiness() {
+        return !gates.isEmpty();
+    }
+
+    /**
+     * Stops retrying: the attempts failing from now on, or waiting to be retried, are the last
+     */
+    void stopRetrying() {
+        stopped = true;
+    }
+
+    /**
+     * Attempts to deploy the verticle of the node, failing the attempt if it takes longer than
+     * {@link DeploymentConfiguration#getTimeout()} and retrying failed attempts up to
+     * {@link DeploymentConfiguration#getMaxRetries()} times
+     * @param node The {@link DeploymentPlan.Node}
+     * @param attempt The number of attempts that already failed
+     */
+    private void attempt(DeploymentPlan.Node node, int attempt) {
+        DeploymentConfiguration config = node.config;
+        String verticleName = config.getName();
+        ReadinessGate gate = gates.get(node);
+        if (gate != null)
+            gate.attempt();
+        Future<String> attemptFuture = Future.future();
+        long timerID = config.getTimeout() > 0 ?
+            vertx.setTimer(config.getTimeout(), id -> attemptFuture.tryFail(
+                new TimeoutException("Deploying verticle " + verticleName + " timed out after " +
+                                     config.getTimeout() + " ms"))) : -1;
+        Handler<AsyncResult<String>> deploymentHandler = res -> {
+            if (timerID != -1)
+                vertx.cancelTimer(timerID);
+            if (res.failed()) {
+                attemptFuture.tryFail(res.cause());
+            } else if (!attemptFuture.tryComplete(res.result())) {
+                // Deployed after the attempt timed out
+                undeployLate(config, res.result());
+            }
+        };
+
+        attemptFuture.setHandler(res -> {
+            if (res.failed() && attempt < config.getMaxRetries() && !stopped) {
+                long delay = retryDelay(config.getBackoff(), attempt, maxBackoff);
+                LOGGER.warn("deploying verticle " + verticleName + " failed, retrying in " + delay + " ms", res.cause());
+                metrics.deploymentRetried(config, res.cause());
+                if (delay > 0)
+                    vertx.setTimer(delay, id -> {
+                        if (stopped)
+                            deployedHandler.accept(node, Future.failedFuture(res.cause()));
+                        else
+                            attempt(node, attempt + 1);
+                    });
+                else
+                    attempt(node, attempt + 1);
+                return;
+            }
+            deployedHandler.accept(node, res);
+        });
+
+        DeploymentOptions options;
+        try {
+            options = deploymentOptions(config);
+        } catch (IllegalArgumentException e) {
+            deploymentHandler.handle(Future.failedFuture(e));
+            return;
+        }
+        state.instances(node.index, options != null ? options.getInstances() : 1);
+        if (config.isShared())
+            SharedDeployments.get(vertx).acquire(verticleName, options, deploymentHandler);
+        else
+            Contexts.deployVerticle(deployContext, verticleName, options, deploymentHandler);
+    }
+
+    /**
+     * Computes the time to wait before retrying a deployment: the backoff doubled for each
+     * attempt that already failed, capped to the maximum backoff. Only half of that time is
+     * fixed, the other half is random, so the verticles failing together do not retry together.
+     * @param backoff The backoff in milliseconds
+     * @param attempt The number of retries already made
+     * @param maxBackoff The maximum backoff in milliseconds
+     * @return The time in milliseconds, 0 to retry right away
+     */
+    static long retryDelay(long backoff, int attempt, long maxBackoff) {
+        if (backoff == 0)
+            return 0;
+        long delay = attempt < Long.numberOfLeadingZeros(backoff) - 1 ? backoff << attempt : Long.MAX_VALUE;
+        delay = Math.min(delay, maxBackoff);
+        return delay - delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Gets the options to deploy a verticle with, the instances being computed from its
+     * {@link DeploymentConfiguration#getInstancesExpression()} if any
+     * @param config The {@link DeploymentConfiguration} of the verticle
+     * @return The options, null if the verticle has no options
+     * @throws IllegalArgumentException if the expression divides by zero
+     */
+    private DeploymentOptions deploymentOptions(DeploymentConfiguration config) {
+        if (config.getInstancesExpression() == null)
+            return config.mergedOptions();
+        int instances = InstancesExpression.evaluate(config.getInstancesExpression(),
+                                                     Runtime.getRuntime().availableProcessors(), eventLoops);
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug(config.getName() + " instances " + config.getInstancesExpression() + " = " + instances);
+        DeploymentOptions options = config.mergedOptions() != null ?
+            new DeploymentOptions(config.mergedOptions()) : new DeploymentOptions();
+        return options.setInstances(instances);
+    }
+
+    /**
+     * Undeploys a verticle whose deployment completed after its attempt timed out
+     * @param config The {@link DeploymentConfiguration} of the verticle
+     * @param deploymentID The deployment ID of the verticle
+     */
+    private void undeployLate(DeploymentConfiguration config, String deploymentID) {
+        Handler<AsyncResult<Void>> undeployHandler = ar -> {
+            if (ar.failed())
+                LOGGER.warn("undeploying timed out verticle " + config.getName() + " failed", ar.cause());
+        };
+        if (config.isShared())
+            SharedDeployments.get(vertx).release(deploymentID, undeployHandler);
+        else
+            vertx.undeploy(deploymentID, undeployHandler);
+    }
+}
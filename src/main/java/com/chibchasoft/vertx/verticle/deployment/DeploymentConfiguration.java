@@ -15,23 +15,44 @@ package com.chibchasoft.vertx.verticle.deployment;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import io.vertx.core.DeploymentOptions;
-import io.vertx.core.Future;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 /**
- * The configuration to deploy a verticle and its dependents
+ * <p>The configuration to deploy a verticle and its dependents</p>
+ * <p>Deploying a configuration does not modify it: the outcome of a deployment is held by the
+ * {@link DependentVerticleDeployer} deploying it, so the same configuration can be deployed by
+ * several deployers, even concurrently. The state reported by a configuration (see
+ * {@link #getDeploymentID()}, {@link #isComplete()}...) is the one of the first deployer still
+ * deploying it: a deployer stops reporting once it has been undeployed, redeployed or failed to
+ * start. Use {@link DependentVerticleDeployer#getDeploymentID(DeploymentConfiguration)} when it is
+ * deployed by several.</p>
  * 
  * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a> 
  */
 public class DeploymentConfiguration {
-    private String                     name;
-    private DeploymentOptions          deploymentOptions;
-    private List<DependentsDeployment> dependents = new ArrayList<>();
+    private String                      name;
+    private List<DependentsDeployment>  dependents = new ArrayList<>();
+    private List<String>                dependsOn  = new ArrayList<>();
+    private boolean                     shared;
+    private long                        timeout;
+    private int                         maxRetries;
+    private long                        backoff;
+    private boolean                     lazy;
+    private String                      address;
+    private String                      readinessAddress;
+    private long                        readinessPollInterval;
+    private boolean                     coldParentTolerated;
+    private String                      role;
+    private String                      instancesExpression;
+    private boolean                     optional;
 
-    Future<String>                     future     = Future.future();
+    private volatile Options                 options = Options.NONE;
+    private final AtomicReference<Binding>   binding = new AtomicReference<>();
 
     public DeploymentConfiguration() {
         
@@ -57,11 +78,19 @@ public class DeploymentConfiguration {
     }
 
     /**
-     * Get the deployment options for this verticle
+     * Get the deployment options for this verticle. Options parsed from JSON are shared by the
+     * configurations with identical options (and by the copies of a {@link DeploymentTemplate})
+     * until they are got, when they are copied so changes only affect this verticle.
      * @return The deployment options for this verticle
      */
     public DeploymentOptions getDeploymentOptions() {
-        return deploymentOptions;
+        Options current = loadedOptions();
+        if (current.shared) {
+            DeploymentOptions merged = current.merged();
+            current = new Options(current.overlay != null ? merged : new DeploymentOptions(merged), null, false, null);
+            options = current;
+        }
+        return current.options;
     }
 
     /**
@@ -71,7 +100,102 @@ public class DeploymentConfiguration {
      */
     public DeploymentConfiguration setDeploymentOptions(DeploymentOptions deploymentOptions) {
         Objects.requireNonNull(deploymentOptions, "deploymentOptions is required");
-        this.deploymentOptions = deploymentOptions;
+        this.options = new Options(deploymentOptions, null, false, null);
+        return this;
+    }
+
+    /**
+     * Get the deployment options for this verticle without copying them if they are shared, to be
+     * read only
+     * @return The deployment options for this verticle
+     */
+    DeploymentOptions options() {
+        return loadedOptions().options;
+    }
+
+    /**
+     * Get the deployment options to deploy this verticle with, without copying them if they are
+     * shared: the parameters of a copy of a {@link DeploymentTemplate} are merged into the
+     * {@code config} of a new instance
+     * @return The deployment options for this verticle, to be read only
+     */
+    DeploymentOptions mergedOptions() {
+        return loadedOptions().merged();
+    }
+
+    /**
+     * Get the parameters merged into the {@code config} of the shared deployment options of a copy
+     * of a {@link DeploymentTemplate} when deployed
+     * @return The parameters, null if there are none
+     */
+    JsonObject configOverlay() {
+        return options.overlay;
+    }
+
+    /**
+     * Sets deployment options shared with other configurations, to be copied before being handed
+     * out by {@link #getDeploymentOptions()}
+     * @param deploymentOptions The shared deployment options
+     * @return a reference to this, so the API can be used fluently
+     */
+    DeploymentConfiguration setSharedDeploymentOptions(DeploymentOptions deploymentOptions) {
+        Objects.requireNonNull(deploymentOptions, "deploymentOptions is required");
+        this.options = new Options(deploymentOptions, null, true, null);
+        return this;
+    }
+
+    /**
+     * Sets deployment options shared with other configurations, loaded the first time they are
+     * needed (see {@link #setSharedDeploymentOptions(DeploymentOptions)})
+     * @param optionsLoader The supplier of the shared deployment options
+     * @return a reference to this, so the API can be used fluently
+     */
+    DeploymentConfiguration setSharedDeploymentOptions(Supplier<DeploymentOptions> optionsLoader) {
+        Objects.requireNonNull(optionsLoader, "optionsLoader is required");
+        this.options = new Options(null, optionsLoader, true, null);
+        return this;
+    }
+
+    /**
+     * Gets the options of this configuration, loading them if they are still to be loaded. The
+     * loader returns the same instance to concurrent callers, so publishing the loaded options
+     * twice is harmless.
+     * @return The loaded options
+     */
+    private Options loadedOptions() {
+        Options current = options;
+        if (current.loader != null) {
+            current = new Options(current.loader.get(), null, current.shared, current.overlay);
+            options = current;
+        }
+        return current;
+    }
+
+    /**
+     * Get the expression computing the number of instances of this verticle when it is deployed
+     * @return The expression, null if the instances of the {@link #getDeploymentOptions()} are used
+     */
+    public String getInstancesExpression() {
+        return instancesExpression;
+    }
+
+    /**
+     * Sets the expression computing the number of instances of this verticle when it is deployed,
+     * overriding the instances of the {@link #getDeploymentOptions()}. Expressions use integer
+     * literals, {@code cores} (the processors available to the JVM, honouring the CPU quota of a
+     * container), {@code eventLoops} (see {@link DependentVerticleDeployer#setEventLoops(int)}), {@code + - * /},
+     * parentheses and the {@code min(a, b, ...)} and {@code max(a, b, ...)} functions, for instance
+     * {@code max(1, min(cores / 4, 8))}. The result is never less than 1. In JSON, the expression
+     * is the {@code instances} of the {@code deploymentOptions}, as a string.
+     * @param instancesExpression The expression, null to use the instances of the
+     * {@link #getDeploymentOptions()}
+     * @return a reference to this, so the API can be used fluently
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public DeploymentConfiguration setInstancesExpression(String instancesExpression) {
+        if (instancesExpression != null)
+            InstancesExpression.validate(instancesExpression);
+        this.instancesExpression = instancesExpression;
         return this;
     }
 
@@ -80,7 +204,8 @@ public class DeploymentConfiguration {
      * @return The Deployment ID for this verticle, null if it has not been deployed yet or failed to deploy
      */
     public String getDeploymentID() {
-        return future.result();
+        Binding current = binding.get();
+        return current != null ? current.state.deploymentID(current.index) : null;
     }
 
     /**
@@ -92,12 +217,278 @@ public class DeploymentConfiguration {
         return dependents;
     }
 
+    /**
+     * Get the list of names of verticles (anywhere in the same {@link DependentsDeployment} tree)
+     * that need to be successfully deployed before this verticle is deployed. If a name belongs to
+     * more than one verticle, all of them are waited for.
+     * @return The (non-null) list of names
+     */
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    /**
+     * Is this verticle shared with other {@link DependentVerticleDeployer}s of the same Vert.x
+     * instance? A shared verticle is deployed once per name and {@link DeploymentOptions}, no
+     * matter how many deployers list it, and undeployed once the last of them undeploys it.
+     * @return true if shared, false otherwise
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Sets whether this verticle is shared with other {@link DependentVerticleDeployer}s of the
+     * same Vert.x instance
+     * @param shared true if shared, false otherwise
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setShared(boolean shared) {
+        this.shared = shared;
+        return this;
+    }
+
+    /**
+     * Get the maximum time to wait for a deployment attempt of this verticle to complete
+     * @return The timeout in milliseconds, 0 if there is no timeout
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the maximum time to wait for a deployment attempt of this verticle to complete. An
+     * attempt that times out fails (and may be retried, see {@link #setMaxRetries(int)}); if the
+     * verticle is deployed after all, it is undeployed.
+     * @param timeout The timeout in milliseconds, 0 if there is no timeout
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setTimeout(long timeout) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("timeout must not be negative");
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of times the deployment of this verticle is retried after failing
+     * @return The maximum number of retries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets the maximum number of times the deployment of this verticle is retried after failing
+     * (or timing out). The deployment of the tree fails only once the last retry fails.
+     * @param maxRetries The maximum number of retries, 0 to not retry
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setMaxRetries(int maxRetries) {
+        if (maxRetries < 0)
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Get the time to wait before the first retry of the deployment of this verticle
+     * @return The time in milliseconds
+     */
+    public long getBackoff() {
+        return backoff;
+    }
+
+    /**
+     * Sets the time to wait before the first retry of the deployment of this verticle. The time is
+     * doubled for each further retry.
+     * @param backoff The time in milliseconds, 0 to retry right away
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setBackoff(long backoff) {
+        if (backoff < 0)
+            throw new IllegalArgumentException("backoff must not be negative");
+        this.backoff = backoff;
+        return this;
+    }
+
+    /**
+     * Is this verticle deployed on demand? A lazy verticle (and everything that depends on it) is
+     * not deployed at start: a placeholder consumer is registered at its {@link #getAddress()}
+     * instead, and the verticle is deployed when the first message arrives there.
+     * @return true if lazy, false otherwise
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Sets whether this verticle is deployed on demand, upon the first message sent to its
+     * {@link #setAddress(String) address}
+     * @param lazy true if lazy, false otherwise
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setLazy(boolean lazy) {
+        this.lazy = lazy;
+        return this;
+    }
+
+    /**
+     * Get the event bus address served by this verticle, where the placeholder of a lazy verticle
+     * is registered
+     * @return The address, null if not set
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Sets the event bus address served by this verticle, where the placeholder of a lazy
+     * verticle is registered. Messages received by the placeholder are sent again to the address
+     * once the verticle is deployed, with their replies forwarded to the original senders.
+     * @param address The address
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setAddress(String address) {
+        this.address = address;
+        return this;
+    }
+
+    /**
+     * Get the event bus address where this verticle signals it is ready, once deployed, for its
+     * dependents to be deployed
+     * @return The address, null if the verticle is ready as soon as it is deployed
+     */
+    public String getReadinessAddress() {
+        return readinessAddress;
+    }
+
+    /**
+     * <p>Sets the event bus address where this verticle signals it is ready (for instance, once
+     * its caches are loaded). Its dependents are not deployed until it is ready, except for those
+     * tolerating a cold parent (see {@link #setColdParentTolerated(boolean)}).</p>
+     * <p>By default, the verticle is ready upon the first message it sends (or publishes) to the
+     * address. If {@link #setReadinessPollInterval(long)} is set, the address is a health check
+     * instead: a message is sent to it periodically and the verticle is ready upon the first reply
+     * other than {@code false}.</p>
+     * @param readinessAddress The address, null if the verticle is ready as soon as it is deployed
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setReadinessAddress(String readinessAddress) {
+        this.readinessAddress = readinessAddress;
+        return this;
+    }
+
+    /**
+     * Get the interval between the health checks sent to the {@link #getReadinessAddress()}
+     * @return The interval in milliseconds, 0 if readiness is signaled by the verticle instead
+     */
+    public long getReadinessPollInterval() {
+        return readinessPollInterval;
+    }
+
+    /**
+     * Sets the interval between the health checks sent to the {@link #getReadinessAddress()}
+     * @param readinessPollInterval The interval in milliseconds, 0 if readiness is signaled by the
+     * verticle instead
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setReadinessPollInterval(long readinessPollInterval) {
+        if (readinessPollInterval < 0)
+            throw new IllegalArgumentException("readinessPollInterval must not be negative");
+        this.readinessPollInterval = readinessPollInterval;
+        return this;
+    }
+
+    /**
+     * Can this verticle be deployed as soon as the verticles it depends on are deployed, before
+     * they are ready (see {@link #setReadinessAddress(String)})?
+     * @return true if it tolerates cold parents, false otherwise
+     */
+    public boolean isColdParentTolerated() {
+        return coldParentTolerated;
+    }
+
+    /**
+     * Sets whether this verticle can be deployed as soon as the verticles it depends on are
+     * deployed, overlapping its own warm-up with theirs
+     * @param coldParentTolerated true if it tolerates cold parents, false otherwise
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setColdParentTolerated(boolean coldParentTolerated) {
+        this.coldParentTolerated = coldParentTolerated;
+        return this;
+    }
+
+    /**
+     * Get the role of the cluster member this verticle must be deployed on, in a distributed
+     * deployment (see {@link DependentVerticleDeployer#setRoles(java.util.Set)})
+     * @return The role, null if it can be deployed on any member
+     */
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * Sets the role of the cluster member this verticle must be deployed on, in a distributed
+     * deployment (see {@link DependentVerticleDeployer#setRoles(java.util.Set)}). Among the members having
+     * the role, the least loaded one is chosen.
+     * @param role The role, null if it can be deployed on any member
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setRole(String role) {
+        this.role = role;
+        return this;
+    }
+
+    /**
+     * Is this verticle optional? The failure of an optional verticle does not fail the deployment
+     * of the tree, only its dependents are not deployed.
+     * @return true if optional, false otherwise
+     */
+    public boolean isOptional() {
+        return optional;
+    }
+
+    /**
+     * Sets whether this verticle is optional. If it fails to deploy, its dependents (and, directly
+     * or not, their own dependents) are skipped, failing with an {@link IllegalStateException}, and
+     * the rest of the tree is deployed as usual (see
+     * {@link DependentVerticleDeployer#getStartupReport()}).
+     * @param optional true if optional, false otherwise
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentConfiguration setOptional(boolean optional) {
+        this.optional = optional;
+        return this;
+    }
+
+    /**
+     * Is this verticle ready? A verticle without a {@link #getReadinessAddress()} is ready as soon
+     * as it is deployed.
+     * @return true if ready, false otherwise
+     */
+    public boolean isReady() {
+        Binding current = binding.get();
+        return current != null && current.state.isReady(current.index);
+    }
+
+    /**
+     * When did this verticle become ready?
+     * @return The time (in milliseconds since the epoch) it became ready or 0 if it is not ready
+     */
+    public long getReadyAt() {
+        Binding current = binding.get();
+        return current != null ? current.state.readyAt(current.index) : 0;
+    }
+
     /**
      * Has the deployments completed? It's completed if it's either succeeded or failed.
      * @return true if completed, false if not
      */
     public boolean isComplete() {
-        return future.isComplete();
+        Binding current = binding.get();
+        return current != null && current.state.isComplete(current.index);
     }
 
     /**
@@ -105,7 +496,8 @@ public class DeploymentConfiguration {
      * @return true if it succeeded or false otherwise 
      */
     public boolean succeeded() {
-        return future.succeeded();
+        Binding current = binding.get();
+        return current != null && current.state.succeeded(current.index);
     }
 
     /**
@@ -113,7 +505,8 @@ public class DeploymentConfiguration {
      * @return true if it failed or false otherwise
      */
     public boolean failed() {
-        return future.failed();
+        Binding current = binding.get();
+        return current != null && current.state.failed(current.index);
     }
 
     /**
@@ -121,7 +514,50 @@ public class DeploymentConfiguration {
      * @return the failure cause or null if the deployment has not started or if it succeeded
      */
     public Throwable failCause() {
-        return future.cause();
+        Binding current = binding.get();
+        return current != null ? current.state.cause(current.index) : null;
+    }
+
+    /**
+     * When was the deployment of this verticle requested?
+     * @return The time (in milliseconds since the epoch) {@code vertx.deployVerticle} was called or
+     * 0 if it has not been called yet
+     */
+    public long getDeployRequestedAt() {
+        Binding current = binding.get();
+        return current != null ? current.state.requestedAt(current.index) : 0;
+    }
+
+    /**
+     * When did the deployment of this verticle complete?
+     * @return The time (in milliseconds since the epoch) {@code vertx.deployVerticle} called back or
+     * 0 if it has not called back yet
+     */
+    public long getDeployCompletedAt() {
+        Binding current = binding.get();
+        return current != null ? current.state.completedAt(current.index) : 0;
+    }
+
+    /**
+     * How long did this verticle wait for the verticles it depends on before its deployment was
+     * requested?
+     * @return The time in milliseconds between the last verticle it depends on being deployed (and
+     * ready) and the deployment request, 0 if it depends on none, or -1 if it has not been
+     * requested yet
+     */
+    public long getWaitTime() {
+        Binding current = binding.get();
+        return current != null ? current.state.waitTime(current.index) : -1;
+    }
+
+    /**
+     * How long did the deployment of this verticle take?
+     * @return The time in milliseconds between the deployment request and its completion or -1
+     * if it has not completed yet
+     */
+    public long getDeployTime() {
+        Binding current = binding.get();
+        return current != null ? current.state.deployTime(current.index) : -1;
     }
 
     /**
@@ -133,26 +569,113 @@ public class DeploymentConfiguration {
         fromJson(json);
     }
 
+    /**
+     * Reports the state of the node with the supplied index of a deployment from now on, unless
+     * this configuration already reports the state of another deployment that has not been
+     * released (see {@link DeploymentState#release()})
+     * @param state The state of the deployment
+     * @param index The index of the node of this configuration
+     */
+    void bind(DeploymentState state, int index) {
+        Binding next = new Binding(state, index);
+        Binding current;
+        do {
+            current = binding.get();
+            if (current != null && current.state != state && !current.state.isReleased())
+                return;
+        } while (!binding.compareAndSet(current, next));
+    }
+
+    /**
+     * Creates a copy of this configuration, without dependents, sharing its deployment options
+     * and the list of names it depends on
+     * @param configOverlay The parameters merged into the {@code config} of the deployment options
+     * of the copy when deployed, null if there are none
+     * @return The copy
+     */
+    DeploymentConfiguration copy(JsonObject configOverlay) {
+        DeploymentConfiguration copy = new DeploymentConfiguration();
+        copy.name = name;
+        DeploymentOptions deploymentOptions = options();
+        copy.options = new Options(deploymentOptions, null, deploymentOptions != null || configOverlay != null,
+                                   configOverlay);
+        copy.dependsOn = dependsOn;
+        copy.shared = shared;
+        copy.timeout = timeout;
+        copy.maxRetries = maxRetries;
+        copy.backoff = backoff;
+        copy.lazy = lazy;
+        copy.address = address;
+        copy.readinessAddress = readinessAddress;
+        copy.readinessPollInterval = readinessPollInterval;
+        copy.coldParentTolerated = coldParentTolerated;
+        copy.role = role;
+        copy.instancesExpression = instancesExpression;
+        copy.optional = optional;
+        return copy;
+    }
+
     /**
      * Populates this object with the information from the supplied JsonObject
      * @param json The JSON Object
      */
     public void fromJson(JsonObject json) {
+        fromJson(json, new DeploymentOptionsInterner());
+    }
+
+    /**
+     * Populates this object with the information from the supplied JsonObject, sharing identical
+     * deployment options with the other configurations parsed with the same interner
+     * @param json The JSON Object
+     * @param interner The interner of the descriptor being parsed
+     */
+    void fromJson(JsonObject json, DeploymentOptionsInterner interner) {
         Objects.requireNonNull(json, "json is required");
         if (json.getValue("name") instanceof String)
             setName((String) json.getValue("name"));
         if (json.getValue("deploymentOptions") instanceof JsonObject) {
-            setDeploymentOptions(new DeploymentOptions((JsonObject) json.getValue("deploymentOptions")));
+            JsonObject depOptJson = (JsonObject) json.getValue("deploymentOptions");
+            setSharedDeploymentOptions(interner.intern(depOptJson));
+            if (depOptJson.getValue("instances") instanceof String)
+                setInstancesExpression((String) depOptJson.getValue("instances"));
         }
         if (json.getValue("dependents") instanceof JsonArray) {
             json.getJsonArray("dependents").forEach(item -> {
                 if (item instanceof JsonObject) {
                     DependentsDeployment deps = new DependentsDeployment();
-                    deps.fromJson((JsonObject) item);
+                    deps.fromJson((JsonObject) item, interner);
                     getDependents().add(deps);
                 }
             });
         }
+        if (json.getValue("dependsOn") instanceof JsonArray) {
+            json.getJsonArray("dependsOn").forEach(item -> {
+                if (item instanceof String)
+                    getDependsOn().add((String) item);
+            });
+        }
+        if (json.getValue("shared") instanceof Boolean)
+            setShared((Boolean) json.getValue("shared"));
+        if (json.getValue("timeout") instanceof Number)
+            setTimeout(((Number) json.getValue("timeout")).longValue());
+        if (json.getValue("maxRetries") instanceof Number)
+            setMaxRetries(((Number) json.getValue("maxRetries")).intValue());
+        if (json.getValue("backoff") instanceof Number)
+            setBackoff(((Number) json.getValue("backoff")).longValue());
+        if (json.getValue("lazy") instanceof Boolean)
+            setLazy((Boolean) json.getValue("lazy"));
+        if (json.getValue("address") instanceof String)
+            setAddress((String) json.getValue("address"));
+        if (json.getValue("readinessAddress") instanceof String)
+            setReadinessAddress((String) json.getValue("readinessAddress"));
+        if (json.getValue("readinessPollInterval") instanceof Number)
+            setReadinessPollInterval(((Number) json.getValue("readinessPollInterval")).longValue());
+        if (json.getValue("coldParentTolerated") instanceof Boolean)
+            setColdParentTolerated((Boolean) json.getValue("coldParentTolerated"));
+        if (json.getValue("role") instanceof String)
+            setRole((String) json.getValue("role"));
+        if (json.getValue("optional") instanceof Boolean)
+            setOptional((Boolean) json.getValue("optional"));
     }
 
     /**
@@ -162,8 +685,11 @@ public class DeploymentConfiguration {
     public JsonObject toJson() {
         JsonObject json = new JsonObject();
         json.put("name", name);
-        if (deploymentOptions != null) {
-            JsonObject depOptJson = deploymentOptions.toJson();
+        DeploymentOptions options = mergedOptions();
+        if (options != null || instancesExpression != null) {
+            JsonObject depOptJson = options != null ? options.toJson() : new JsonObject();
+            if (instancesExpression != null)
+                depOptJson.put("instances", instancesExpression);
             json.put("deploymentOptions", depOptJson);
         }
         if (this.getDependents() != null) {
@@ -171,15 +697,96 @@ public class DeploymentConfiguration {
             this.getDependents().forEach(item -> array.add(item.toJson()));
             json.put("dependents", array);
         }
+        if (!this.getDependsOn().isEmpty()) {
+            json.put("dependsOn", new JsonArray(new ArrayList<>(dependsOn)));
+        }
+        if (shared) {
+            json.put("shared", true);
+        }
+        if (timeout > 0) {
+            json.put("timeout", timeout);
+        }
+        if (maxRetries > 0) {
+            json.put("maxRetries", maxRetries);
+        }
+        if (backoff > 0) {
+            json.put("backoff", backoff);
+        }
+        if (lazy) {
+            json.put("lazy", true);
+        }
+        if (address != null) {
+            json.put("address", address);
+        }
+        if (readinessAddress != null) {
+            json.put("readinessAddress", readinessAddress);
+        }
+        if (readinessPollInterval > 0) {
+            json.put("readinessPollInterval", readinessPollInterval);
+        }
+        if (coldParentTolerated) {
+            json.put("coldParentTolerated", true);
+        }
+        if (role != null) {
+            json.put("role", role);
+        }
+        if (optional) {
+            json.put("optional", true);
+        }
         return json;
     }
 
+    /**
+     * The deployment options of a configuration, replaced as a whole so a configuration deployed
+     * by several deployers at once never exposes half-updated options
+     */
+    private static final class Options {
+        private static final Options NONE = new Options(null, null, false, null);
+
+        private final DeploymentOptions           options;
+        private final Supplier<DeploymentOptions> loader;
+        private final boolean                     shared;
+        private final JsonObject                  overlay;
+
+        private Options(DeploymentOptions options, Supplier<DeploymentOptions> loader, boolean shared,
+                        JsonObject overlay) {
+            this.options = options;
+            this.loader = loader;
+            this.shared = shared;
+            this.overlay = overlay;
+        }
+
+        private DeploymentOptions merged() {
+            if (overlay == null)
+                return options;
+            DeploymentOptions merged = options != null ? new DeploymentOptions(options) : new DeploymentOptions();
+            return merged.setConfig(merged.getConfig() != null ? merged.getConfig().mergeIn(overlay) : overlay.copy());
+        }
+    }
+
+    /**
+     * The state of a deployment and the index of the node of a configuration in it, published
+     * together so they are never seen from different deployments
+     */
+    private static final class Binding {
+        private final DeploymentState state;
+        private final int             index;
+
+        private Binding(DeploymentState state, int index) {
+            this.state = state;
+            this.index = index;
+        }
+    }
+
     @Override
     public String toString() {
         return "DeploymentConfiguration [name=" + name + ", deploymentOptions="
-               + deploymentOptions + ", deploymentID=" + future.result() + ", dependents="
-               + dependents + ", isComplete=" + future.isComplete() + ", succeeded="
-               + future.succeeded() + ", failed=" + future.failed() + ", failCause="
-               + future.cause() + "]";
+               + mergedOptions() + ", instancesExpression=" + instancesExpression + ", deploymentID=" + getDeploymentID() + ", dependents="
+               + dependents + ", dependsOn=" + dependsOn + ", shared=" + shared + ", timeout=" + timeout + ", maxRetries="
+               + maxRetries + ", backoff=" + backoff + ", lazy=" + lazy + ", address=" + address
+               + ", readinessAddress=" + readinessAddress + ", readinessPollInterval=" + readinessPollInterval
+               + ", coldParentTolerated=" + coldParentTolerated + ", role=" + role + ", optional=" + optional + ", isComplete=" + isComplete() + ", succeeded="
+               + succeeded() + ", failed=" + failed() + ", failCause="
+               + failCause() + "]";
     }
 }
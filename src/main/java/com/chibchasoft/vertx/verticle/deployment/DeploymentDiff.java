@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.vertx.core.DeploymentOptions;
+
+/**
+ * <p>The differences between the plan of a running deployment and the plan of a new one. A node
+ * of the new plan matches a deployed node of the running plan if both have the same name,
+ * {@link DeploymentOptions} (and instances expression), settings (shared, lazy and address,
+ * optional, timeout, retries and backoff, readiness address, poll interval and cold parent
+ * tolerance, and role) and matching prerequisites. Any change to these redeploys the node, and
+ * therefore all the nodes that depend on it, directly or not.</p>
+ * <p>Matched nodes are kept deployed, the remaining nodes of the running plan are to be undeployed
+ * and the remaining nodes of the new plan are to be deployed.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class DeploymentDiff {
+    private final Map<DeploymentPlan.Node, DeploymentPlan.Node> matches = new IdentityHashMap<>();
+    private final List<DeploymentPlan.Node>                     removed = new ArrayList<>();
+
+    /**
+     * Diffs the running deployment, along with the copies of templates it expanded, against a
+     * new plan
+     * @param running The state of the running deployment, null if there is none
+     * @param next The sealed plan of the new deployment, with all its copies
+     */
+    DeploymentDiff(DeploymentState running, DeploymentPlan next) {
+        Map<String, Integer> signatures = new HashMap<>();
+        Map<Integer, Deque<DeploymentPlan.Node>> deployed = new HashMap<>();
+        if (running != null) {
+            Map<DeploymentPlan.Node, Integer> ids = signatures(running.getOrderedNodes(), signatures);
+            for (DeploymentPlan.Node node : running.getNodes()) {
+                if (running.succeeded(node.index))
+                    deployed.computeIfAbsent(ids.get(node), id -> new ArrayDeque<>()).add(node);
+                else
+                    removed.add(node);
+            }
+        }
+
+        Map<DeploymentPlan.Node, Integer> ids = signatures(next.getOrderedNodes(), signatures);
+        for (DeploymentPlan.Node node : next.getNodes()) {
+            Deque<DeploymentPlan.Node> candidates = deployed.get(ids.get(node));
+            if (candidates != null && !candidates.isEmpty())
+                matches.put(node, candidates.poll());
+        }
+        deployed.values().forEach(removed::addAll);
+    }
+
+    /**
+     * Returns the deployed node of the running plan matched by a node of the new plan
+     * @param node The node of the new plan
+     * @return The matched node or null if the node is to be deployed
+     */
+    DeploymentPlan.Node getMatch(DeploymentPlan.Node node) {
+        return matches.get(node);
+    }
+
+    /**
+     * Returns the nodes of the running plan not matched by the new plan
+     * @return The nodes to be undeployed
+     */
+    List<DeploymentPlan.Node> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * Assigns an id to each node so that nodes with the same name, options, settings and
+     * prerequisites get the same id
+     * @param ordered The nodes in dependency order
+     * @param signatures The ids by signature, shared by the plans being compared
+     * @return The ids by node
+     */
+    private static Map<DeploymentPlan.Node, Integer> signatures(List<DeploymentPlan.Node> ordered,
+                                                                Map<String, Integer> signatures) {
+        // In dependency order, so the ids of the prerequisites of a node are known before its own
+        Map<DeploymentPlan.Node, Integer> ids = new IdentityHashMap<>();
+        // Interned options are shared by many nodes, each is serialized once
+        Map<DeploymentOptions, String> encoded = new IdentityHashMap<>();
+        for (DeploymentPlan.Node node : ordered) {
+            DeploymentConfiguration config = node.config;
+            List<Integer> prerequisites = new ArrayList<>(node.prerequisites.size());
+            node.prerequisites.forEach(prerequisite -> prerequisites.add(ids.get(prerequisite)));
+            Collections.sort(prerequisites);
+            String options = config.options() != null ?
+                encoded.computeIfAbsent(config.options(), opts -> opts.toJson().encode()) : "";
+            // The parameters of a copy of a template are merged into its options when deployed
+            if (config.configOverlay() != null)
+                options += "|" + config.configOverlay().encode();
+            String signature = config.getName() + "|" + options +
+                               "|" + config.getInstancesExpression() + "|" + settings(config) + "|" + prerequisites;
+            Integer id = signatures.get(signature);
+            if (id == null) {
+                id = signatures.size();
+                signatures.put(signature, id);
+            }
+            ids.put(node, id);
+        }
+        return ids;
+    }
+
+    private static String settings(DeploymentConfiguration config) {
+        return config.isShared() + "|" + config.isLazy() + "|" + config.getAddress() + "|" + config.isOptional() +
+               "|" + config.getTimeout() + "|" + config.getMaxRetries() + "|" + config.getBackoff() +
+               "|" + config.getReadinessAddress() + "|" + config.getReadinessPollInterval() +
+               "|" + config.isColdParentTolerated() + "|" + config.getRole();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+/**
+ * <p>Receives the events of the deployments made by a {@link DependentVerticleDeployer} (see
+ * {@link DependentVerticleDeployer#setMetrics(DeploymentMetrics)}), to be published to a metrics
+ * system. All methods do nothing by default.</p>
+ * <p>Events are delivered on the context of the {@link DependentVerticleDeployer}.</p>
+ *
+ * @see MicrometerDeploymentMetrics
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+public interface DeploymentMetrics {
+    /**
+     * Metrics that ignore all events
+     */
+    DeploymentMetrics NONE = new DeploymentMetrics() {
+    };
+
+    /**
+     * A tree is about to be deployed
+     * @param size The number of verticles in the tree
+     * @param depth The number of verticles in the longest chain of dependencies
+     * @param width The largest number of verticles deployed at the same time: the number of
+     * verticles of the widest level of the tree, a level holding the verticles with the same
+     * number of verticles in their longest chain of dependents
+     */
+    default void treeDeploying(int size, int depth, int width) {
+    }
+
+    /**
+     * The deployment of a verticle has been requested
+     * @param config The {@link DeploymentConfiguration} of the verticle
+     */
+    default void deploymentStarted(DeploymentConfiguration config) {
+    }
+
+    /**
+     * A deployment attempt of a verticle failed and is about to be retried
+     * @param config The {@link DeploymentConfiguration} of the verticle
+     * @param cause The cause of the failure
+     */
+    default void deploymentRetried(DeploymentConfiguration config, Throwable cause) {
+    }
+
+    /**
+     * The deployment of a verticle completed, once no more attempts are made
+     * @param config The {@link DeploymentConfiguration} of the verticle
+     * @param succeeded Whether the verticle was deployed
+     * @param cause The cause of the failure, null if the verticle was deployed
+     * @param deployTime The time in milliseconds from the deployment request to its completion
+     */
+    default void deploymentCompleted(DeploymentConfiguration config, boolean succeeded, Throwable cause,
+                                     long deployTime) {
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * <p>Interns the {@link DeploymentOptions} parsed from a descriptor, so the configurations with
+ * identical options share a single instance, and the {@code config} objects (and the objects and
+ * arrays nested in them) and the {@code extraClasspath} and {@code isolatedClasses} lists of those
+ * options, so identical subtrees are shared as well.</p>
+ * <p>Interned instances are shared and must not be modified: configurations copy them before
+ * handing them out (see {@link DeploymentConfiguration#getDeploymentOptions()}). An interner is
+ * used for a single descriptor and is not thread safe.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class DeploymentOptionsInterner {
+    private final Map<JsonObject, DeploymentOptions> options = new HashMap<>();
+    private final Map<JsonObject, JsonObject>        objects = new HashMap<>();
+    private final Map<JsonArray, JsonArray>          arrays  = new HashMap<>();
+    private final Map<List<String>, List<String>>    lists   = new HashMap<>();
+
+    /**
+     * Returns the shared {@link DeploymentOptions} for the supplied JSON
+     * @param json The JSON of the options
+     * @return The shared options
+     */
+    DeploymentOptions intern(JsonObject json) {
+        DeploymentOptions interned = options.get(json);
+        if (interned == null) {
+            interned = new DeploymentOptions(json);
+            if (interned.getConfig() != null)
+                interned.setConfig(internObject(interned.getConfig()));
+            if (interned.getExtraClasspath() != null)
+                interned.setExtraClasspath(lists.computeIfAbsent(interned.getExtraClasspath(), key -> key));
+            if (interned.getIsolatedClasses() != null)
+                interned.setIsolatedClasses(lists.computeIfAbsent(interned.getIsolatedClasses(), key -> key));
+            options.put(json, interned);
+        }
+        return interned;
+    }
+
+    /**
+     * Returns the shared instance of a JSON object, after sharing the objects nested in it
+     * @param json The object, which may be modified
+     * @return The shared object
+     */
+    private JsonObject internObject(JsonObject json) {
+        for (Map.Entry<String, Object> entry : json.getMap().entrySet())
+            entry.setValue(internValue(entry.getValue()));
+        return objects.computeIfAbsent(json, key -> key);
+    }
+
+    /**
+     * Returns the shared instance of a JSON array, after sharing the objects and arrays nested in
+     * it
+     * @param json The array, which may be modified
+     * @return The shared array
+     */
+    @SuppressWarnings("unchecked")
+    private JsonArray internArray(JsonArray json) {
+        for (ListIterator<Object> values = json.getList().listIterator(); values.hasNext();)
+            values.set(internValue(values.next()));
+        return arrays.computeIfAbsent(json, key -> key);
+    }
+
+    /**
+     * Returns the shared instance of a value of a JSON object or array. Parsed objects and arrays
+     * hold the objects and arrays nested in them as maps and lists, which are wrapped so they can
+     * be shared.
+     * @param value The value
+     * @return The shared value
+     */
+    @SuppressWarnings("unchecked")
+    private Object internValue(Object value) {
+        if (value instanceof JsonObject)
+            return internObject((JsonObject) value);
+        if (value instanceof Map)
+            return internObject(new JsonObject((Map<String, Object>) value));
+        if (value instanceof JsonArray)
+            return internArray((JsonArray) value);
+        if (value instanceof List)
+            return internArray(new JsonArray((List<Object>) value));
+        return value;
+    }
+}
@@ -0,0 +1,604 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>The dependency graph of a {@link DependentsDeployment}. Every {@link DeploymentConfiguration}
+ * found in the tree becomes a node whose prerequisites are its parent in the tree (if any) plus
+ * every configuration whose name is listed in its {@link DeploymentConfiguration#getDependsOn()}.
+ * The same {@link DeploymentConfiguration} instance found more than once in the tree is a single
+ * node.</p>
+ * <p>A plan can be built incrementally, adding root configurations (and their dependents) as they
+ * become available, and then sealed. Until then, only the edges of the tree are known: names in
+ * {@link DeploymentConfiguration#getDependsOn()} are resolved once the plan is sealed, which also
+ * verifies that the graph is acyclic. Each node knows the {@link DependentsDeployment} it was
+ * (first) found in and the number of nodes in the longest chain of dependents starting at it, and
+ * whether it is deferred: {@link DeploymentConfiguration#isLazy() lazy} or depending, directly or
+ * not, on a lazy node.</p>
+ * <p>The {@link DependentsDeployment#getTemplates() templates} of a {@link DependentsDeployment}
+ * are expanded, one copy after the other, once its configurations have been collected. The root
+ * configurations of all the copies of a template form a group of their own. A template with a
+ * {@link DeploymentTemplate#getFanOut() fan-out} only has that many copies expanded in the plan,
+ * unless the plan is built with all its copies. Names a node of a copy depends on are resolved
+ * within the copy first, then within the copies it is nested in and then among the nodes that are
+ * not part of any copy, so that every copy has the same dependencies.</p>
+ * <p>Once sealed, a plan never changes and can be deployed by any number of executions at once.
+ * The next copies of a template are expanded by each execution, as its copies complete (see
+ * {@link DeploymentState}), into an {@link Extension} of the plan owned by the execution: the
+ * nodes of the plan they depend on only learn about them through the extension.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class DeploymentPlan {
+    private final Graph                   graph   = new Graph(0, new IdentityHashMap<>());
+    private final List<Node>              sorted  = new ArrayList<>();
+    private final List<Node>              ordered = Collections.unmodifiableList(sorted);
+    private final Map<String, List<Node>> byName  = new HashMap<>();
+    private final boolean                 allCopies;
+    private boolean                       sealed;
+
+    /**
+     * Creates an empty plan, to be built with {@link #add(DependentsDeployment, List)} and
+     * {@link #seal()}
+     */
+    DeploymentPlan() {
+        allCopies = false;
+    }
+
+    /**
+     * Creates the sealed plan for the supplied {@link DependentsDeployment}
+     * @param deployment The {@link DependentsDeployment}
+     * @throws IllegalArgumentException if a configuration depends on a name not found in the tree
+     * or a lazy configuration has no address
+     * @throws IllegalStateException if the dependencies are cyclic
+     */
+    DeploymentPlan(DependentsDeployment deployment) {
+        this(deployment, false);
+    }
+
+    /**
+     * Creates the sealed plan for the supplied {@link DependentsDeployment}
+     * @param deployment The {@link DependentsDeployment}
+     * @param allCopies Whether to expand all the copies of the templates, regardless of their
+     * fan-out, so the plan holds the whole tree
+     * @throws IllegalArgumentException if a configuration depends on a name not found in the tree
+     * or a lazy configuration has no address
+     * @throws IllegalStateException if the dependencies are cyclic
+     */
+    DeploymentPlan(DependentsDeployment deployment, boolean allCopies) {
+        Objects.requireNonNull(deployment, "deployment is required");
+        this.allCopies = allCopies;
+        add(deployment, deployment.getConfigurations());
+        addTemplates(deployment);
+        seal();
+    }
+
+    /**
+     * Creates the sealed plan of a {@link CompiledDependentsDeployment}, whose names were resolved
+     * and whose nodes were sorted when compiled
+     * @param configs The configurations, by node index
+     * @param groups The {@link DependentsDeployment} each configuration was first found in
+     * @param prerequisites The indices of the prerequisites of each configuration
+     * @param order The indices of the configurations in dependency order
+     * @throws IllegalArgumentException if the order is not a dependency order of all the nodes
+     */
+    DeploymentPlan(DeploymentConfiguration[] configs, DependentsDeployment[] groups, int[][] prerequisites,
+                   int[] order) {
+        allCopies = false;
+        for (int i = 0; i < configs.length; i++) {
+            Node node = new Node(configs[i], groups[i], i, null);
+            graph.byConfig.put(configs[i], node);
+            graph.nodes.add(node);
+        }
+        boolean[] placed = new boolean[configs.length];
+        for (int index : order) {
+            Node node = graph.nodes.get(index);
+            if (placed[index])
+                throw new IllegalArgumentException("Verticle " + node.config.getName() + " is ordered twice");
+            for (int prerequisite : prerequisites[index]) {
+                if (!placed[prerequisite])
+                    throw new IllegalArgumentException("Verticle " + node.config.getName() +
+                                                       " is ordered before its prerequisites");
+                graph.link(graph.nodes.get(prerequisite), node);
+            }
+            placed[index] = true;
+            sorted.add(node);
+        }
+        if (sorted.size() != graph.nodes.size())
+            throw new IllegalArgumentException("Not every verticle is ordered");
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            computeRemaining(sorted.get(i));
+        }
+        sorted.forEach(DeploymentPlan::computeDeferred);
+        sealed = true;
+    }
+
+    /**
+     * Returns the nodes in the order they were added, each node after its parent in the tree
+     * @return The nodes
+     */
+    List<Node> getNodes() {
+        return graph.view;
+    }
+
+    /**
+     * Returns the nodes in dependency order, each node after all its prerequisites
+     * @return The nodes, empty until the plan is sealed
+     */
+    List<Node> getOrderedNodes() {
+        return ordered;
+    }
+
+    /**
+     * Returns the node of a configuration
+     * @param config The configuration
+     * @return The node, null if the configuration is not part of this plan
+     */
+    Node getNode(DeploymentConfiguration config) {
+        return graph.byConfig.get(config);
+    }
+
+    /**
+     * Has this plan been sealed?
+     * @return true if sealed, false otherwise
+     */
+    boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * Adds root configurations and their dependents to this plan
+     * @param group The {@link DependentsDeployment} the configurations belong to
+     * @param configurations The configurations
+     * @return The nodes added, each node after its parent in the tree
+     * @throws IllegalArgumentException if a lazy configuration has no address
+     * @throws IllegalStateException if the plan has been sealed
+     */
+    List<Node> add(DependentsDeployment group, List<DeploymentConfiguration> configurations) {
+        if (sealed)
+            throw new IllegalStateException("The plan has been sealed");
+        Deque<Level> stack = new ArrayDeque<>();
+        stack.push(new Level(group, null, configurations, null));
+        return collect(stack);
+    }
+
+    /**
+     * Adds the copies of the templates of a {@link DependentsDeployment} (and their dependents) to
+     * this plan
+     * @param group The {@link DependentsDeployment} the templates belong to
+     * @return The nodes added, each node after its parent in the tree
+     * @throws IllegalArgumentException if a lazy configuration has no address
+     * @throws IllegalStateException if the plan has been sealed
+     */
+    List<Node> addTemplates(DependentsDeployment group) {
+        if (sealed)
+            throw new IllegalStateException("The plan has been sealed");
+        Deque<Level> stack = new ArrayDeque<>();
+        pushTemplates(stack, group, null);
+        return collect(stack);
+    }
+
+    private List<Node> collect(Deque<Level> stack) {
+        int first = graph.nodes.size();
+        collectLevels(graph, stack);
+        List<Node> added = graph.view.subList(first, graph.nodes.size());
+        for (int i = added.size() - 1; i >= 0; i--) {
+            computeRemaining(added.get(i));
+        }
+        added.forEach(DeploymentPlan::computeDeferred);
+        return added;
+    }
+
+    /**
+     * Resolves the names each configuration depends on and verifies there are no cycles
+     * @throws IllegalArgumentException if a configuration depends on a name not found in the plan
+     * @throws IllegalStateException if the dependencies are cyclic
+     */
+    void seal() {
+        if (sealed)
+            return;
+        resolveDependsOn(graph, graph.nodes);
+        List<Node> sortedNodes = sort(graph.nodes);
+        for (int i = sortedNodes.size() - 1; i >= 0; i--) {
+            computeRemaining(sortedNodes.get(i));
+        }
+        sortedNodes.forEach(DeploymentPlan::computeDeferred);
+        sorted.addAll(sortedNodes);
+        sealed = true;
+        countCopies(sortedNodes);
+    }
+
+    /**
+     * Creates an empty extension of the sealed plan, for an execution to expand the next copies
+     * of its templates into
+     * @return The extension
+     * @throws IllegalStateException if the plan has not been sealed
+     */
+    Extension extend() {
+        if (!sealed)
+            throw new IllegalStateException("The plan has not been sealed");
+        return new Extension(this);
+    }
+
+    /**
+     * Expands a copy of a template of the sealed plan (or of one of the copies already expanded
+     * into the extension) into an extension of this plan
+     * @param copy The copy, created with {@link Expansion#copy(int)}
+     * @param extension The extension
+     * @return The nodes added, in dependency order
+     * @throws IllegalArgumentException if a configuration of the copy depends on a name not found
+     * or a lazy configuration has no address
+     * @throws IllegalStateException if the dependencies are cyclic
+     */
+    List<Node> expand(Copy copy, Extension extension) {
+        Deque<Level> stack = new ArrayDeque<>();
+        // The next copies of the template are expanded by the execution, not after this one
+        stack.push(new Level(copy, false));
+        int first = extension.nodes.size();
+        collectLevels(extension, stack);
+        List<Node> added = extension.view.subList(first, extension.nodes.size());
+        resolveDependsOn(extension, added);
+        List<Node> sortedNodes = sort(added);
+        for (int i = sortedNodes.size() - 1; i >= 0; i--) {
+            computeRemaining(sortedNodes.get(i));
+        }
+        sortedNodes.forEach(DeploymentPlan::computeDeferred);
+        extension.sorted.addAll(sortedNodes);
+        countCopies(sortedNodes);
+        return sortedNodes;
+    }
+
+    /**
+     * Counts the nodes each copy waits for, once they are known to be deferred or not
+     * @param added The nodes added
+     */
+    private static void countCopies(List<Node> added) {
+        for (Node node : added) {
+            Copy copy = node.copy;
+            if (copy != null && !node.deferred)
+                copy.waiting++;
+        }
+    }
+
+    private void collectLevels(Graph target, Deque<Level> stack) {
+        // Depth first, using a stack instead of recursion since trees can be very deep
+        while (!stack.isEmpty()) {
+            Level level = stack.peek();
+            if (!level.configurations.hasNext()) {
+                stack.pop();
+                // Copies are expanded only once the previous one has been collected
+                Copy next = level.expansion != null ? level.expansion.next(allCopies) : null;
+                if (next != null)
+                    stack.push(new Level(next, true));
+                continue;
+            }
+
+            DeploymentConfiguration cfg = level.configurations.next();
+            Node node = target.byConfig.get(cfg);
+            boolean visited = node != null;
+            if (!visited) {
+                if (cfg.isLazy() && cfg.getAddress() == null)
+                    throw new IllegalArgumentException("Lazy verticle " + cfg.getName() + " has no address");
+                node = new Node(cfg, level.group, target.first + target.nodes.size(), level.copy);
+                target.byConfig.put(cfg, node);
+                target.nodes.add(node);
+                if (cfg.getName() != null)
+                    (level.copy != null ? level.copy.byName : byName)
+                        .computeIfAbsent(cfg.getName(), name -> new ArrayList<>()).add(node);
+            }
+            if (level.parent != null)
+                target.link(level.parent, node);
+            if (!visited) {
+                List<DependentsDeployment> dependents = cfg.getDependents();
+                for (int i = dependents.size() - 1; i >= 0; i--) {
+                    pushTemplates(stack, dependents.get(i), node);
+                    stack.push(new Level(dependents.get(i), node, dependents.get(i).getConfigurations(), level.copy));
+                }
+            }
+        }
+    }
+
+    private void pushTemplates(Deque<Level> stack, DependentsDeployment group, Node parent) {
+        List<DeploymentTemplate> templates = group.getTemplates();
+        for (int i = templates.size() - 1; i >= 0; i--) {
+            Expansion expansion = new Expansion(templates.get(i), parent);
+            Copy first = expansion.next(allCopies);
+            if (first != null)
+                stack.push(new Level(first, true));
+        }
+    }
+
+    private void resolveDependsOn(Graph target, List<Node> unresolved) {
+        for (Node node : unresolved) {
+            for (String name : node.config.getDependsOn()) {
+                List<Node> prerequisites = null;
+                for (Copy copy = node.copy; copy != null && prerequisites == null; copy = copy.enclosing)
+                    prerequisites = copy.byName.get(name);
+                if (prerequisites == null)
+                    prerequisites = byName.get(name);
+                if (prerequisites == null)
+                    throw new IllegalArgumentException("Verticle " + node.config.getName() +
+                                                       " depends on unknown verticle " + name);
+                prerequisites.forEach(prerequisite -> target.link(prerequisite, node));
+            }
+        }
+    }
+
+    private static void computeRemaining(Node node) {
+        for (Node dependent : node.dependents) {
+            node.remaining = Math.max(node.remaining, dependent.remaining + 1);
+        }
+    }
+
+    private static void computeDeferred(Node node) {
+        node.deferred = node.config.isLazy();
+        for (Node prerequisite : node.prerequisites) {
+            node.deferred |= prerequisite.deferred;
+        }
+    }
+
+    /**
+     * Sorts nodes in dependency order, their prerequisites not among them being already sorted
+     * @param unsorted The nodes
+     * @return The sorted nodes
+     * @throws IllegalStateException if the dependencies are cyclic
+     */
+    private static List<Node> sort(List<Node> unsorted) {
+        // The nodes are the last ones collected, their prerequisites not among them come
+        // before them and their dependents are all among them
+        int first = unsorted.isEmpty() ? 0 : unsorted.get(0).index;
+        int[] inDegree = new int[unsorted.size()];
+        Queue<Node> ready = new ArrayDeque<>();
+        unsorted.forEach(node -> {
+            for (Node prerequisite : node.prerequisites) {
+                if (prerequisite.index >= first)
+                    inDegree[node.index - first]++;
+            }
+            if (inDegree[node.index - first] == 0)
+                ready.add(node);
+        });
+
+        List<Node> sortedNodes = new ArrayList<>(unsorted.size());
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            sortedNodes.add(node);
+            node.dependents.forEach(dependent -> {
+                if (--inDegree[dependent.index - first] == 0)
+                    ready.add(dependent);
+            });
+        }
+
+        if (sortedNodes.size() != unsorted.size()) {
+            List<String> cyclic = new ArrayList<>();
+            unsorted.forEach(node -> {
+                if (inDegree[node.index - first] > 0)
+                    cyclic.add(node.config.getName());
+            });
+            throw new IllegalStateException("Cyclic dependency among verticles " + cyclic);
+        }
+        return sortedNodes;
+    }
+
+    /**
+     * A {@link DependentsDeployment} (or a copy of a {@link DeploymentTemplate}) being collected,
+     * along with the node it is a dependent of
+     */
+    private static final class Level {
+        final DependentsDeployment              group;
+        final Node                              parent;
+        final Iterator<DeploymentConfiguration> configurations;
+        final Copy                              copy;
+        final Expansion                         expansion;
+
+        Level(DependentsDeployment group, Node parent, List<DeploymentConfiguration> configurations, Copy copy) {
+            this.group = group;
+            this.parent = parent;
+            this.configurations = configurations.iterator();
+            this.copy = copy;
+            this.expansion = null;
+        }
+
+        Level(Copy copy, boolean chained) {
+            this.group = copy.expansion.group;
+            this.parent = copy.expansion.parent;
+            this.configurations = copy.expansion.template.expand(copy.index).iterator();
+            this.copy = copy;
+            this.expansion = chained ? copy.expansion : null;
+        }
+    }
+
+    /**
+     * The nodes collected, by configuration as well
+     */
+    private static class Graph {
+        final List<Node>                         nodes      = new ArrayList<>();
+        final List<Node>                         view       = Collections.unmodifiableList(nodes);
+        final Map<DeploymentConfiguration, Node> byConfig;
+        final int                                first;
+
+        Graph(int first, Map<DeploymentConfiguration, Node> byConfig) {
+            this.first = first;
+            this.byConfig = byConfig;
+        }
+
+        void link(Node prerequisite, Node dependent) {
+            if (!dependent.prerequisites.contains(prerequisite)) {
+                dependent.prerequisites.add(prerequisite);
+                prerequisite.dependents.add(dependent);
+            }
+        }
+    }
+
+    /**
+     * The nodes of the copies of templates expanded by one execution of a sealed plan, numbered
+     * after the nodes of the plan. The nodes of the plan are not modified: the nodes of the
+     * extension depending on them are kept apart, see {@link #dependents(Node)}.
+     * <p>The extension is only modified from the context of the {@link DependentVerticleDeployer}
+     * running the execution; its nodes can be looked up by configuration from any thread.</p>
+     */
+    static final class Extension extends Graph {
+        private final DeploymentPlan         plan;
+        private final List<Node>             sorted     = new ArrayList<>();
+        private final List<Node>             ordered    = Collections.unmodifiableList(sorted);
+        private final Map<Node, List<Node>>  dependents = new IdentityHashMap<>();
+
+        private Extension(DeploymentPlan plan) {
+            super(plan.graph.nodes.size(), new ConcurrentHashMap<>());
+            this.plan = plan;
+        }
+
+        /**
+         * Returns the nodes expanded, each node after its parent in the tree
+         * @return The nodes
+         */
+        List<Node> getNodes() {
+            return view;
+        }
+
+        /**
+         * Returns the nodes expanded in dependency order, each node after all its prerequisites
+         * @return The nodes
+         */
+        List<Node> getOrderedNodes() {
+            return ordered;
+        }
+
+        /**
+         * Returns the node of a configuration of an expanded copy
+         * @param config The configuration
+         * @return The node, null if the configuration is not part of this extension
+         */
+        Node getNode(DeploymentConfiguration config) {
+            return byConfig.get(config);
+        }
+
+        /**
+         * Returns the nodes that depend on a node, of the plan or of this extension
+         * @param node The node
+         * @return The dependents of the node
+         */
+        List<Node> dependents(Node node) {
+            List<Node> expanded = dependents.get(node);
+            if (expanded == null)
+                return node.dependents;
+            List<Node> all = new ArrayList<>(node.dependents.size() + expanded.size());
+            all.addAll(node.dependents);
+            all.addAll(expanded);
+            return all;
+        }
+
+        @Override
+        void link(Node prerequisite, Node dependent) {
+            if (prerequisite.index >= first) {
+                super.link(prerequisite, dependent);
+            } else if (!dependent.prerequisites.contains(prerequisite)) {
+                // The nodes of the sealed plan are shared by all its executions
+                dependent.prerequisites.add(prerequisite);
+                dependents.computeIfAbsent(prerequisite, node -> new ArrayList<>()).add(dependent);
+            }
+        }
+    }
+
+    /**
+     * The copies of a {@link DeploymentTemplate} found in the tree (once per copy of the subtree
+     * it is found in), expanded one after the other. The copies expanded when the template was
+     * collected are counted, the next ones are counted by the execution expanding them.
+     */
+    static final class Expansion {
+        final DeploymentTemplate   template;
+        final DependentsDeployment group = new DependentsDeployment();
+        final Node                 parent;
+        int                        expanded;
+
+        Expansion(DeploymentTemplate template, Node parent) {
+            this.template = template;
+            this.parent = parent;
+        }
+
+        /**
+         * Creates a copy of the template
+         * @param index The index of the copy
+         * @return The copy
+         */
+        Copy copy(int index) {
+            return new Copy(this, index, parent != null ? parent.copy : null);
+        }
+
+        /**
+         * Creates the next copy to expand while collecting the template, if any
+         * @param all Whether to ignore the fan-out of the template
+         * @return The copy, null if all copies have been expanded or, unless all, as many copies
+         * as the fan-out have been
+         */
+        private Copy next(boolean all) {
+            if (expanded >= template.getCopies() ||
+                !all && template.getFanOut() > 0 && expanded >= template.getFanOut())
+                return null;
+            return copy(expanded++);
+        }
+    }
+
+    /**
+     * A copy of a {@link DeploymentTemplate}, the scope names its nodes depend on are resolved in
+     * first, along with the number of its nodes that are not deferred, known once they are
+     * ordered
+     */
+    static final class Copy {
+        final Expansion               expansion;
+        final int                     index;
+        final Copy                    enclosing;
+        final Map<String, List<Node>> byName = new HashMap<>();
+        int                           waiting;
+
+        private Copy(Expansion expansion, int index, Copy enclosing) {
+            this.expansion = expansion;
+            this.index = index;
+            this.enclosing = enclosing;
+        }
+    }
+
+    /**
+     * A {@link DeploymentConfiguration} along with the nodes it depends on and the nodes that
+     * depend on it
+     */
+    static final class Node {
+        final DeploymentConfiguration config;
+        final DependentsDeployment    group;
+        final int                     index;
+        final Copy                    copy;
+        final List<Node>              prerequisites = new ArrayList<>();
+        final List<Node>              dependents    = new ArrayList<>();
+        int                           remaining     = 1;
+        boolean                       deferred;
+
+        Node(DeploymentConfiguration config, DependentsDeployment group, int index, Copy copy) {
+            this.config = config;
+            this.group = group;
+            this.index = index;
+            this.copy = copy;
+        }
+    }
+}
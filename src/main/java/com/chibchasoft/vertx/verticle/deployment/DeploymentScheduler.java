@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import io.vertx.core.Handler;
+
+/**
+ * <p>Schedules the deployments of the nodes of a {@link DeploymentState}: counts the
+ * prerequisites each node still waits for and dispatches the nodes ready to be deployed, those
+ * with the longest chain of dependents first, within the limits of deployments in flight.</p>
+ * <p>A scheduler belongs to a single execution of a plan and is only used from the context of
+ * its {@link DependentVerticleDeployer}.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class DeploymentScheduler {
+    private static final int                         READY                      = -1;
+    private final DeploymentState                    state;
+    private final int                                maxDeploymentsInFlight;
+    private final Handler<DeploymentPlan.Node>       deployHandler;
+    private final PriorityQueue<DeploymentPlan.Node> readyNodes;
+    private final Map<DependentsDeployment, Integer> deploymentsInFlightByGroup = new IdentityHashMap<>();
+    private int[]                                    pendingPrerequisites;
+    private long[]                                   expectedTimes;
+    private int                                      deploymentsInFlight;
+    private Handler<Void>                            drainHandler;
+
+    /**
+     * Creates the scheduler of an execution
+     * @param state The state of the execution
+     * @param maxDeploymentsInFlight The maximum number of deployments in flight, 0 for no limit
+     * @param deployHandler The handler called with each node dispatched
+     */
+    DeploymentScheduler(DeploymentState state, int maxDeploymentsInFlight, Handler<DeploymentPlan.Node> deployHandler) {
+        this.state = state;
+        this.maxDeploymentsInFlight = maxDeploymentsInFlight;
+        this.deployHandler = deployHandler;
+        this.pendingPrerequisites = new int[Math.max(16, state.getNodes().size())];
+        this.expectedTimes = new long[pendingPrerequisites.length];
+        this.readyNodes = new PriorityQueue<>(Comparator.<DeploymentPlan.Node>comparingLong(node -> -expectedTimes[node.index])
+                                                        .thenComparingInt(node -> -node.remaining)
+                                                        .thenComparingInt(node -> node.index));
+    }
+
+    /**
+     * Grows the arrays to hold the nodes added to the execution
+     * @param size The number of nodes of the execution
+     */
+    void ensureCapacity(int size) {
+        if (pendingPrerequisites.length < size) {
+            pendingPrerequisites = Arrays.copyOf(pendingPrerequisites, Math.max(size, pendingPrerequisites.length * 2));
+            expectedTimes = Arrays.copyOf(expectedTimes, pendingPrerequisites.length);
+        }
+    }
+
+    /**
+     * Computes the time each node is expected to take to deploy along with its dependents, the
+     * longest chain of dependents according to the profile
+     * @param nodes The nodes added, each node after its parent in the tree
+     * @param profile The profile
+     */
+    void prioritize(List<DeploymentPlan.Node> nodes, BootProfile profile) {
+        // Dependents first: the nodes are in dependency order once sealed, in tree order otherwise
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            DeploymentPlan.Node node = nodes.get(i);
+            long dependents = 0;
+            for (DeploymentPlan.Node dependent : state.dependents(node))
+                dependents = Math.max(dependents, expectedTimes[dependent.index]);
+            expectedTimes[node.index] = Math.max(0, profile.expected(node.config.getName())) + dependents;
+        }
+    }
+
+    /**
+     * Does the node still wait for some of its prerequisites?
+     * @param node The node
+     * @return true if the node waits for its prerequisites
+     */
+    boolean isWaiting(DeploymentPlan.Node node) {
+        return pendingPrerequisites[node.index] > 0;
+    }
+
+    /**
+     * Sets the number of prerequisites the node waits for
+     * @param node The node
+     * @param pending The number of prerequisites
+     */
+    void setPending(DeploymentPlan.Node node, int pending) {
+        pendingPrerequisites[node.index] = pending;
+    }
+
+    /**
+     * The node no longer waits for its prerequisites: it is ready to be deployed, deployed
+     * already or skipped
+     * @param node The node
+     */
+    void clearPending(DeploymentPlan.Node node) {
+        pendingPrerequisites[node.index] = READY;
+    }
+
+    /**
+     * Releases one of the prerequisites the node waits for
+     * @param node The node
+     * @return true if it was the last one the node waited for
+     */
+    boolean releasePrerequisite(DeploymentPlan.Node node) {
+        return pendingPrerequisites[node.index] > 0 && --pendingPrerequisites[node.index] == 0;
+    }
+
+    /**
+     * Queues a node ready to be deployed, deployed once dispatched
+     * @param node The node
+     */
+    void queue(DeploymentPlan.Node node) {
+        readyNodes.add(node);
+    }
+
+    /**
+     * Drops the nodes queued, nothing more is dispatched
+     */
+    void clear() {
+        readyNodes.clear();
+    }
+
+    /**
+     * Deploys the nodes queued, those with the longest chain of dependents first, for as long as
+     * neither the global limit of deployments in flight nor the limit of the node's
+     * {@link DependentsDeployment} has been reached
+     */
+    void dispatch() {
+        List<DeploymentPlan.Node> deferred = null;
+        while (!readyNodes.isEmpty() &&
+               (maxDeploymentsInFlight == 0 || deploymentsInFlight < maxDeploymentsInFlight)) {
+            DeploymentPlan.Node node = readyNodes.poll();
+            int groupInFlight = deploymentsInFlightByGroup.getOrDefault(node.group, 0);
+            if (node.group.getMaxInFlight() > 0 && groupInFlight >= node.group.getMaxInFlight() ||
+                !state.startCopy(node)) {
+                if (deferred == null)
+                    deferred = new ArrayList<>();
+                deferred.add(node);
+                continue;
+            }
+            deploymentsInFlight++;
+            deploymentsInFlightByGroup.put(node.group, groupInFlight + 1);
+            deployHandler.handle(node);
+        }
+        if (deferred != null)
+            readyNodes.addAll(deferred);
+    }
+
+    /**
+     * The deployment of a node dispatched has completed, successfully or not
+     * @param node The node
+     */
+    void completed(DeploymentPlan.Node node) {
+        deploymentsInFlight--;
+        deploymentsInFlightByGroup.merge(node.group, -1, Integer::sum);
+    }
+
+    /**
+     * Gets the number of deployments dispatched that have not completed yet
+     * @return The number of deployments in flight
+     */
+    int getDeploymentsInFlight() {
+        return deploymentsInFlight;
+    }
+
+    /**
+     * Waits for the deployments in flight to complete
+     * @param drainHandler The handler called once no deployment is in flight, right away if none is
+     */
+    void drain(Handler<Void> drainHandler) {
+        this.drainHandler = drainHandler;
+        drained();
+    }
+
+    /**
+     * Calls the handler waiting for the deployments in flight to complete, if there are none left
+     */
+    void drained() {
+        if (drainHandler != null && deploymentsInFlight == 0) {
+            Handler<Void> handler = drainHandler;
+            drainHandler = null;
+            handler.handle(null);
+        }
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>The state of one execution of a {@link DeploymentPlan}, kept apart from the plan and the
+ * {@link DeploymentConfiguration}s so that the same {@link DependentsDeployment} can be deployed
+ * any number of times, concurrently, by different {@link DependentVerticleDeployer}s. The state of
+ * each node is held in arrays indexed by the node's index: its outcome (the deployment ID or the
+ * cause of the failure), its timings and the number of instances it was deployed with.</p>
+ * <p>The state is only modified from the context of the {@link DependentVerticleDeployer} running
+ * the execution, and can be read from any thread.</p>
+ * <p>The state also tracks the copies of the {@link DeploymentTemplate}s of the plan: the copies
+ * started and completed, so that no more copies of a template than its
+ * {@link DeploymentTemplate#getFanOut() fan-out} are deployed at once, and the next copies are
+ * expanded as copies complete, into the {@link DeploymentPlan.Extension} of this execution. The
+ * nodes of the execution are the nodes of the plan followed by the nodes of its extension. This
+ * part of the state is only used from the context of the {@link DependentVerticleDeployer}.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class DeploymentState {
+    private static final int REQUESTED_AT = 0;
+    private static final int COMPLETED_AT = 1;
+    private static final int WAIT_TIME    = 2;
+    private static final int READY_AT     = 3;
+    private static final int TIMES        = 4;
+
+    private final DeploymentPlan                                plan;
+    private volatile DeploymentPlan.Extension                   extension;
+    private volatile Slots                                      slots;
+    private volatile boolean                                    released;
+    private final List<DeploymentPlan.Node>                     nodes      = new Nodes(false);
+    private final List<DeploymentPlan.Node>                     ordered    = new Nodes(true);
+
+    private final Map<DeploymentPlan.Copy, CopyState>           copies     = new IdentityHashMap<>();
+    private final Map<DeploymentPlan.Expansion, ExpansionState> expansions = new IdentityHashMap<>();
+    private final Queue<DeploymentPlan.Expansion>               expandable = new ArrayDeque<>();
+    private int                                                 checkedNodes;
+
+    /**
+     * Creates the state of an execution of a plan where no node has been deployed yet
+     * @param plan The plan, sealed or being built by the execution
+     */
+    DeploymentState(DeploymentPlan plan) {
+        this.plan = plan;
+        slots = new Slots(plan.getNodes().size());
+    }
+
+    /**
+     * Returns the plan of this execution
+     * @return The plan
+     */
+    DeploymentPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the nodes of this execution: the nodes of the plan, each node after its parent in
+     * the tree, followed by the nodes of the copies it expanded
+     * @return The nodes
+     */
+    List<DeploymentPlan.Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the nodes of this execution in dependency order, each node after all its
+     * prerequisites
+     * @return The nodes, empty until the plan is sealed
+     */
+    List<DeploymentPlan.Node> getOrderedNodes() {
+        return ordered;
+    }
+
+    /**
+     * Returns the node of a configuration
+     * @param config The configuration
+     * @return The node, null if the configuration is not part of this execution
+     */
+    DeploymentPlan.Node getNode(DeploymentConfiguration config) {
+        DeploymentPlan.Node node = plan.getNode(config);
+        DeploymentPlan.Extension current = extension;
+        return node != null || current == null ? node : current.getNode(config);
+    }
+
+    /**
+     * Returns the nodes that depend on a node in this execution
+     * @param node The node
+     * @return The dependents
+     */
+    List<DeploymentPlan.Node> dependents(DeploymentPlan.Node node) {
+        DeploymentPlan.Extension current = extension;
+        return current != null ? current.dependents(node) : node.dependents;
+    }
+
+    /**
+     * Grows the arrays to hold at least the supplied number of nodes
+     * @param size The number of nodes
+     */
+    void ensureCapacity(int size) {
+        Slots current = slots;
+        int capacity = current.outcomes.length();
+        if (size <= capacity)
+            return;
+        int newCapacity = Math.max(size, capacity * 2);
+        Slots grown = new Slots(newCapacity);
+        for (int i = 0; i < capacity; i++) {
+            grown.outcomes.set(i, current.outcomes.get(i));
+            for (int j = 0; j < TIMES; j++)
+                grown.times.set(i * TIMES + j, current.times.get(i * TIMES + j));
+            grown.instances.set(i, current.instances.get(i));
+        }
+        // Readers see either the old arrays or the new ones, never a mix of both
+        slots = grown;
+    }
+
+    /**
+     * Lets the configurations of this execution report the state of another execution from now
+     * on (see {@link DeploymentConfiguration#bind(DeploymentState, int)}), once this one is
+     * undeployed or replaced
+     */
+    void release() {
+        released = true;
+    }
+
+    /**
+     * Has this execution been released?
+     * @return true if released, false otherwise
+     */
+    boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * Copies the state of a node of another execution, whose verticle is kept deployed
+     * @param index The index of the node
+     * @param other The other execution
+     * @param otherIndex The index of the node in the other execution
+     */
+    void copy(int index, DeploymentState other, int otherIndex) {
+        Slots current = slots;
+        Slots others = other.slots;
+        current.outcomes.set(index, others.outcomes.get(otherIndex));
+        for (int j = 0; j < TIMES; j++)
+            current.times.set(index * TIMES + j, others.times.get(otherIndex * TIMES + j));
+        current.instances.set(index, others.instances.get(otherIndex));
+    }
+
+    /**
+     * Forgets the outcome and timings of a node completed by another member of a distributed
+     * deployment that left, so this execution deploys it. The node no longer counts as completed
+     * for its copy (see {@link #nodeCompleted(DeploymentPlan.Node)}).
+     * @param node The node, whose completion was recorded
+     */
+    void reset(DeploymentPlan.Node node) {
+        Slots current = slots;
+        current.outcomes.set(node.index, null);
+        for (int j = 0; j < TIMES; j++)
+            current.times.set(node.index * TIMES + j, j == WAIT_TIME ? -1 : 0);
+        current.instances.set(node.index, 0);
+        if (node.copy != null && !node.deferred)
+            copyState(node.copy).completed--;
+    }
+
+    /**
+     * Records the deployment of the node's verticle
+     * @param index The index of the node
+     * @param deploymentID The deployment ID
+     * @throws IllegalStateException if the node's deployment has already completed
+     */
+    void complete(int index, String deploymentID) {
+        if (!slots.outcomes.compareAndSet(index, null, deploymentID))
+            throw new IllegalStateException("Result is already complete");
+    }
+
+    /**
+     * Records the failure of the node's verticle
+     * @param index The index of the node
+     * @param cause The cause of the failure
+     * @throws IllegalStateException if the node's deployment has already completed
+     */
+    void fail(int index, Throwable cause) {
+        if (!slots.outcomes.compareAndSet(index, null, cause))
+            throw new IllegalStateException("Result is already complete");
+    }
+
+    boolean isComplete(int index) {
+        return outcome(index) != null;
+    }
+
+    boolean succeeded(int index) {
+        return outcome(index) instanceof String;
+    }
+
+    boolean failed(int index) {
+        return outcome(index) instanceof Throwable;
+    }
+
+    String deploymentID(int index) {
+        Object outcome = outcome(index);
+        return outcome instanceof String ? (String) outcome : null;
+    }
+
+    Throwable cause(int index) {
+        Object outcome = outcome(index);
+        return outcome instanceof Throwable ? (Throwable) outcome : null;
+    }
+
+    long requestedAt(int index) {
+        return time(index, REQUESTED_AT, 0);
+    }
+
+    void requestedAt(int index, long requestedAt) {
+        slots.times.set(index * TIMES + REQUESTED_AT, requestedAt);
+    }
+
+    long completedAt(int index) {
+        return time(index, COMPLETED_AT, 0);
+    }
+
+    void completedAt(int index, long completedAt) {
+        slots.times.set(index * TIMES + COMPLETED_AT, completedAt);
+    }
+
+    long waitTime(int index) {
+        return time(index, WAIT_TIME, -1);
+    }
+
+    void waitTime(int index, long waitTime) {
+        slots.times.set(index * TIMES + WAIT_TIME, waitTime);
+    }
+
+    long readyAt(int index) {
+        return time(index, READY_AT, 0);
+    }
+
+    void readyAt(int index, long readyAt) {
+        slots.times.set(index * TIMES + READY_AT, readyAt);
+    }
+
+    boolean isReady(int index) {
+        return readyAt(index) > 0;
+    }
+
+    long deployTime(int index) {
+        long completedAt = completedAt(index);
+        return completedAt > 0 ? completedAt - requestedAt(index) : -1;
+    }
+
+    int instances(int index) {
+        AtomicIntegerArray current = slots.instances;
+        return index < current.length() ? current.get(index) : 0;
+    }
+
+    void instances(int index, int deployedInstances) {
+        slots.instances.set(index, deployedInstances);
+    }
+
+    /**
+     * Starts deploying a node, along with its copy if it is the first node of the copy to be
+     * deployed
+     * @param node The node
+     * @return true if the node can be deployed, false if the fan-out of its template has been
+     * reached
+     */
+    boolean startCopy(DeploymentPlan.Node node) {
+        DeploymentPlan.Copy copy = node.copy;
+        if (copy == null)
+            return true;
+        CopyState copyState = copyState(copy);
+        if (copyState.started)
+            return true;
+        ExpansionState expansionState = expansionState(copy.expansion);
+        int fanOut = copy.expansion.template.getFanOut();
+        if (fanOut > 0 && expansionState.inFlight >= fanOut)
+            return false;
+        copyState.started = true;
+        expansionState.inFlight++;
+        return true;
+    }
+
+    /**
+     * Records that a node has completed (it is deployed and ready, or failed or was skipped). A
+     * copy completes once all its nodes that are not deferred have completed, letting the next
+     * copy of its template be expanded by {@link #expandCopies()}.
+     * @param node The node, not deferred
+     */
+    void nodeCompleted(DeploymentPlan.Node node) {
+        DeploymentPlan.Copy copy = node.copy;
+        if (copy == null)
+            return;
+        CopyState copyState = copyState(copy);
+        copyState.completed++;
+        if (copyState.checked && copyState.completed == copy.waiting)
+            copyCompleted(copy, copyState);
+    }
+
+    /**
+     * Expands the next copies of the templates whose copies have completed, as many as their
+     * fan-out allows. Copies without nodes to wait for complete right away, so this method is
+     * called until it returns no nodes.
+     * @return The nodes added to this execution, in dependency order
+     */
+    List<DeploymentPlan.Node> expandCopies() {
+        if (!plan.isSealed())
+            return Collections.emptyList();
+        if (extension == null)
+            extension = plan.extend();
+        // The nodes each copy waits for are known once its nodes are ordered
+        for (; checkedNodes < ordered.size(); checkedNodes++) {
+            DeploymentPlan.Copy copy = ordered.get(checkedNodes).copy;
+            if (copy == null)
+                continue;
+            CopyState copyState = copyState(copy);
+            if (!copyState.checked) {
+                copyState.checked = true;
+                if (copyState.completed == copy.waiting)
+                    copyCompleted(copy, copyState);
+            }
+        }
+
+        List<DeploymentPlan.Node> added = new ArrayList<>();
+        while (!expandable.isEmpty()) {
+            DeploymentPlan.Expansion expansion = expandable.poll();
+            ExpansionState expansionState = expansionState(expansion);
+            int fanOut = expansion.template.getFanOut();
+            if (expansionState.expanded >= expansion.template.getCopies() ||
+                fanOut > 0 && expansionState.expanded - expansionState.completed >= fanOut)
+                continue;
+            added.addAll(plan.expand(expansion.copy(expansionState.expanded++), extension));
+        }
+        return added;
+    }
+
+    private void copyCompleted(DeploymentPlan.Copy copy, CopyState copyState) {
+        ExpansionState expansionState = expansionState(copy.expansion);
+        expansionState.completed++;
+        if (copyState.started)
+            expansionState.inFlight--;
+        expandable.add(copy.expansion);
+    }
+
+    private CopyState copyState(DeploymentPlan.Copy copy) {
+        return copies.computeIfAbsent(copy, c -> new CopyState());
+    }
+
+    private ExpansionState expansionState(DeploymentPlan.Expansion expansion) {
+        return expansions.computeIfAbsent(expansion, e -> new ExpansionState(e.expanded));
+    }
+
+    private Object outcome(int index) {
+        AtomicReferenceArray<Object> current = slots.outcomes;
+        return index < current.length() ? current.get(index) : null;
+    }
+
+    private long time(int index, int field, long defaultValue) {
+        AtomicLongArray current = slots.times;
+        return index * TIMES + field < current.length() ? current.get(index * TIMES + field) : defaultValue;
+    }
+
+    /**
+     * The state of a copy of a {@link DeploymentTemplate}
+     */
+    private static final class CopyState {
+        int     completed;
+        boolean checked;
+        boolean started;
+    }
+
+    /**
+     * The state of the copies of a {@link DeploymentTemplate}
+     */
+    private static final class ExpansionState {
+        int expanded;
+        int completed;
+        int inFlight;
+
+        ExpansionState(int expanded) {
+            this.expanded = expanded;
+        }
+    }
+
+    /**
+     * The arrays holding the state of the nodes, replaced as a whole when grown
+     */
+    private static final class Slots {
+        final AtomicReferenceArray<Object> outcomes;
+        final AtomicLongArray              times;
+        final AtomicIntegerArray           instances;
+
+        Slots(int capacity) {
+            outcomes = new AtomicReferenceArray<>(capacity);
+            times = new AtomicLongArray(capacity * TIMES);
+            instances = new AtomicIntegerArray(capacity);
+            for (int i = 0; i < capacity; i++)
+                times.set(i * TIMES + WAIT_TIME, -1);
+        }
+    }
+
+    /**
+     * The nodes of the plan followed by the nodes of the extension
+     */
+    private final class Nodes extends AbstractList<DeploymentPlan.Node> {
+        private final boolean inOrder;
+
+        Nodes(boolean inOrder) {
+            this.inOrder = inOrder;
+        }
+
+        @Override
+        public DeploymentPlan.Node get(int index) {
+            List<DeploymentPlan.Node> planned = inOrder ? plan.getOrderedNodes() : plan.getNodes();
+            if (index < planned.size())
+                return planned.get(index);
+            DeploymentPlan.Extension current = extension;
+            if (current == null)
+                throw new IndexOutOfBoundsException("Index: " + index);
+            return (inOrder ? current.getOrderedNodes() : current.getNodes()).get(index - planned.size());
+        }
+
+        @Override
+        public int size() {
+            int planned = inOrder ? plan.getOrderedNodes().size() : plan.getNodes().size();
+            DeploymentPlan.Extension current = extension;
+            if (current == null)
+                return planned;
+            return planned + (inOrder ? current.getOrderedNodes().size() : current.getNodes().size());
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * <p>A subtree of {@link DeploymentConfiguration}s declared once and deployed once per parameter
+ * set, as part of the {@link DependentsDeployment} it belongs to. The parameter sets are the
+ * {@link #getParameters() listed} ones followed by those of the {@link #setRange(String, int, int)
+ * range}. Each parameter set is merged into the {@code config} of the {@link DeploymentOptions} of
+ * every verticle of its copy.</p>
+ * <p>Copies are not kept in the descriptor: they are created by {@link #expand(int)} while the
+ * deployment proceeds, as many at a time as the {@link #getFanOut() fan-out} allows, sharing the
+ * names, dependencies and {@link DeploymentOptions} of the template. The parameter set of a copy is
+ * only merged into a new {@code config} when its verticles are deployed (or their
+ * {@link DeploymentConfiguration#getDeploymentOptions()} are got). A name listed in
+ * {@link DeploymentConfiguration#getDependsOn()} by a verticle of a copy refers to the verticles of
+ * the same copy with that name if there are any, then to those of the copies it is nested in and
+ * then to the verticles that are not part of a template: verticles outside a copy cannot depend
+ * on its verticles by name.</p>
+ * <p>It provides capabilities to convert from/to JsonObject.</p>
+ *
+ * @see DependentsDeployment#getTemplates()
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+public class DeploymentTemplate {
+    private List<DeploymentConfiguration> configurations = new ArrayList<>();
+    private List<JsonObject>              parameters     = new ArrayList<>();
+    private String                        rangeKey;
+    private int                           rangeFrom;
+    private int                           rangeTo;
+    private int                           fanOut;
+
+    /**
+     * Default constructor
+     */
+    public DeploymentTemplate() {
+    }
+
+    /**
+     * Constructor for creating a instance from JSON
+     *
+     * @param json  the JSON
+     */
+    public DeploymentTemplate(JsonObject json) {
+        Objects.requireNonNull(json, "json is required");
+        fromJson(json);
+    }
+
+    /**
+     * Returns the (non-null) list of root {@link DeploymentConfiguration}s of the subtree
+     * @return The (non-null) list of {@link DeploymentConfiguration}s
+     */
+    public List<DeploymentConfiguration> getConfigurations() {
+        return configurations;
+    }
+
+    /**
+     * Returns the (non-null) list of parameter sets, one copy is deployed for each
+     * @return The (non-null) list of parameter sets
+     */
+    public List<JsonObject> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Get the key the values of the range are injected with
+     * @return The key, null if there is no range
+     */
+    public String getRangeKey() {
+        return rangeKey;
+    }
+
+    /**
+     * Get the first value of the range
+     * @return The first value, inclusive
+     */
+    public int getRangeFrom() {
+        return rangeFrom;
+    }
+
+    /**
+     * Get the end of the range
+     * @return The end, exclusive
+     */
+    public int getRangeTo() {
+        return rangeTo;
+    }
+
+    /**
+     * Sets a range of values, one copy is deployed for each with the value injected under the
+     * supplied key
+     * @param key The key, null for no range
+     * @param from The first value, inclusive
+     * @param to The end, exclusive
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentTemplate setRange(String key, int from, int to) {
+        if (to < from)
+            throw new IllegalArgumentException("to must not be less than from");
+        this.rangeKey = key;
+        this.rangeFrom = from;
+        this.rangeTo = to;
+        return this;
+    }
+
+    /**
+     * Get the maximum number of copies deploying at the same time. A copy is deploying from the
+     * deployment of its first verticle until all its verticles, but the lazy ones (and their
+     * dependents) and those of the templates nested in it, are deployed and ready or failed.
+     * @return The maximum number of copies deploying at the same time, 0 if there is no limit
+     */
+    public int getFanOut() {
+        return fanOut;
+    }
+
+    /**
+     * Sets the maximum number of copies deploying at the same time (see {@link #getFanOut()}).
+     * Only that many copies are expanded at a time, the next one once a copy is deployed.
+     * @param fanOut The maximum number of copies deploying at the same time, 0 if there is no
+     * limit
+     * @return a reference to this, so the API can be used fluently
+     */
+    public DeploymentTemplate setFanOut(int fanOut) {
+        if (fanOut < 0)
+            throw new IllegalArgumentException("fanOut must not be negative");
+        this.fanOut = fanOut;
+        return this;
+    }
+
+    /**
+     * Returns the number of copies, one per parameter set
+     * @return The number of copies
+     */
+    public int getCopies() {
+        return parameters.size() + (rangeKey != null ? rangeTo - rangeFrom : 0);
+    }
+
+    /**
+     * Returns the parameter set of a copy
+     * @param copy The index of the copy
+     * @return The parameter set
+     * @throws IndexOutOfBoundsException if there is no such copy
+     */
+    public JsonObject getParameters(int copy) {
+        if (copy < 0 || copy >= getCopies())
+            throw new IndexOutOfBoundsException("No copy " + copy + " of " + getCopies());
+        if (copy < parameters.size())
+            return parameters.get(copy);
+        return new JsonObject().put(rangeKey, rangeFrom + copy - parameters.size());
+    }
+
+    /**
+     * Creates a copy of the subtree. Each call creates new {@link DeploymentConfiguration}s,
+     * sharing the {@link DeploymentOptions} of the template.
+     * @param copy The index of the copy
+     * @return The root {@link DeploymentConfiguration}s of the copy
+     * @throws IndexOutOfBoundsException if there is no such copy
+     */
+    public List<DeploymentConfiguration> expand(int copy) {
+        JsonObject params = getParameters(copy);
+        List<DeploymentConfiguration> copies = new ArrayList<>(configurations.size());
+        // Using a stack of (template, copy) pairs instead of recursion since trees can be very deep
+        Deque<DependentsDeployment[]> stack = new ArrayDeque<>();
+        copy(configurations, params, copies, stack);
+        while (!stack.isEmpty()) {
+            DependentsDeployment[] pair = stack.pop();
+            copy(pair[0].getConfigurations(), params, pair[1].getConfigurations(), stack);
+            pair[1].getTemplates().addAll(pair[0].getTemplates());
+        }
+        return copies;
+    }
+
+    private static void copy(List<DeploymentConfiguration> sources, JsonObject params,
+                             List<DeploymentConfiguration> copies, Deque<DependentsDeployment[]> stack) {
+        for (DeploymentConfiguration source : sources) {
+            DeploymentConfiguration copy = source.copy(params.isEmpty() ? null : params);
+            for (DependentsDeployment dependents : source.getDependents()) {
+                DependentsDeployment dependentsCopy = new DependentsDeployment().setMaxInFlight(dependents.getMaxInFlight());
+                copy.getDependents().add(dependentsCopy);
+                stack.push(new DependentsDeployment[] { dependents, dependentsCopy });
+            }
+            copies.add(copy);
+        }
+    }
+
+    /**
+     * Populates this object with the information from the supplied JsonObject
+     * @param json The JSON Object
+     */
+    public void fromJson(JsonObject json) {
+        fromJson(json, new DeploymentOptionsInterner());
+    }
+
+    /**
+     * Populates this object with the information from the supplied JsonObject, sharing identical
+     * deployment options among the configurations parsed with the same interner
+     * @param json The JSON Object
+     * @param interner The interner of the descriptor being parsed
+     */
+    void fromJson(JsonObject json, DeploymentOptionsInterner interner) {
+        Objects.requireNonNull(json, "json is required");
+        if (json.getValue("configurations") instanceof JsonArray) {
+            json.getJsonArray("configurations").forEach(item -> {
+                if (item instanceof JsonObject) {
+                    DeploymentConfiguration cfg = new DeploymentConfiguration();
+                    cfg.fromJson((JsonObject) item, interner);
+                    getConfigurations().add(cfg);
+                }
+            });
+        }
+        if (json.getValue("parameters") instanceof JsonArray) {
+            json.getJsonArray("parameters").forEach(item -> {
+                if (item instanceof JsonObject)
+                    getParameters().add((JsonObject) item);
+            });
+        }
+        if (json.getValue("range") instanceof JsonObject) {
+            JsonObject range = json.getJsonObject("range");
+            if (range.getValue("key") instanceof String && range.getValue("from") instanceof Number &&
+                range.getValue("to") instanceof Number)
+                setRange(range.getString("key"), range.getInteger("from"), range.getInteger("to"));
+        }
+        if (json.getValue("fanOut") instanceof Number)
+            setFanOut(((Number) json.getValue("fanOut")).intValue());
+    }
+
+    /**
+     * Returns a JsonObject populated with the information from this object
+     * @return The JsonObject
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        JsonArray array = new JsonArray();
+        configurations.forEach(item -> array.add(item.toJson()));
+        json.put("configurations", array);
+        if (!parameters.isEmpty())
+            json.put("parameters", new JsonArray(new ArrayList<>(parameters)));
+        if (rangeKey != null)
+            json.put("range", new JsonObject().put("key", rangeKey).put("from", rangeFrom).put("to", rangeTo));
+        if (fanOut > 0)
+            json.put("fanOut", fanOut);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return "DeploymentTemplate [configurations=" + configurations + ", parameters=" + parameters
+               + ", rangeKey=" + rangeKey + ", rangeFrom=" + rangeFrom + ", rangeTo=" + rangeTo
+               + ", fanOut=" + fanOut + "]";
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.List;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+
+/**
+ * Composes lists of typed futures, {@link CompositeFuture} only accepting lists of raw ones
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class Futures {
+    private Futures() {
+    }
+
+    /**
+     * Composes the futures (see {@link CompositeFuture#all(List)})
+     * @param futures The futures
+     * @return The composite future, completed once all the futures succeed or one fails
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    static CompositeFuture all(List<? extends Future<?>> futures) {
+        return CompositeFuture.all((List) futures);
+    }
+
+    /**
+     * Joins the futures (see {@link CompositeFuture#join(List)})
+     * @param futures The futures
+     * @return The composite future, completed once all the futures are completed
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    static CompositeFuture join(List<? extends Future<?>> futures) {
+        return CompositeFuture.join((List) futures);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.Objects;
+
+/**
+ * <p>An expression computing the number of instances of a verticle from the hardware it is
+ * deployed on (see {@link DeploymentConfiguration#setInstancesExpression(String)}). Expressions are
+ * made of integer literals, the variables {@code cores} (the processors available to the JVM,
+ * which honours the CPU quota of a container) and {@code eventLoops} (see
+ * {@link DependentVerticleDeployer#setEventLoops(int)}), the {@code + - * /} operators (integer arithmetic), parentheses and the
+ * {@code min(a, b, ...)} and {@code max(a, b, ...)} functions. For example
+ * {@code max(1, min(cores / 4, 8))}.</p>
+ * <p>The result is never less than 1.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class InstancesExpression {
+    private final String  expression;
+    private final int     cores;
+    private final int     eventLoops;
+    private final boolean validating;
+    private int           position;
+
+    private InstancesExpression(String expression, int cores, int eventLoops, boolean validating) {
+        this.expression = expression;
+        this.cores = cores;
+        this.eventLoops = eventLoops;
+        this.validating = validating;
+    }
+
+    /**
+     * Verifies the syntax of an expression
+     * @param expression The expression
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    static void validate(String expression) {
+        parse(expression, 1, 1, true);
+    }
+
+    /**
+     * Evaluates an expression
+     * @param expression The expression
+     * @param cores The value of {@code cores}
+     * @param eventLoops The value of {@code eventLoops}
+     * @return The number of instances, at least 1
+     * @throws IllegalArgumentException if the expression is invalid or divides by zero
+     */
+    static int evaluate(String expression, int cores, int eventLoops) {
+        return parse(expression, cores, eventLoops, false);
+    }
+
+    private static int parse(String expression, int cores, int eventLoops, boolean validating) {
+        Objects.requireNonNull(expression, "expression is required");
+        InstancesExpression parser = new InstancesExpression(expression, cores, eventLoops, validating);
+        long value = parser.sum();
+        parser.skipSpaces();
+        if (parser.position < expression.length())
+            throw parser.error("Unexpected '" + expression.charAt(parser.position) + "'");
+        return (int) Math.max(1, Math.min(value, Integer.MAX_VALUE));
+    }
+
+    private long sum() {
+        long value = product();
+        while (true) {
+            if (accept('+'))
+                value += product();
+            else if (accept('-'))
+                value -= product();
+            else
+                return value;
+        }
+    }
+
+    private long product() {
+        long value = term();
+        while (true) {
+            if (accept('*')) {
+                value *= term();
+            } else if (accept('/')) {
+                long divisor = term();
+                if (divisor != 0)
+                    value /= divisor;
+                else if (!validating)
+                    throw error("Division by zero");
+            } else {
+                return value;
+            }
+        }
+    }
+
+    private long term() {
+        if (accept('-'))
+            return -term();
+        if (accept('(')) {
+            long value = sum();
+            expect(')');
+            return value;
+        }
+        skipSpaces();
+        int start = position;
+        if (position < expression.length() && Character.isDigit(expression.charAt(position))) {
+            while (position < expression.length() && Character.isDigit(expression.charAt(position)))
+                position++;
+            return Long.parseLong(expression.substring(start, position));
+        }
+        while (position < expression.length() && Character.isLetter(expression.charAt(position)))
+            position++;
+        String identifier = expression.substring(start, position);
+        switch (identifier) {
+            case "cores":
+                return cores;
+            case "eventLoops":
+                return eventLoops;
+            case "min":
+            case "max":
+                expect('(');
+                long value = sum();
+                while (accept(','))
+                    value = "min".equals(identifier) ? Math.min(value, sum()) : Math.max(value, sum());
+                expect(')');
+                return value;
+            case "":
+                throw error(position < expression.length() ? "Unexpected '" + expression.charAt(position) + "'"
+                                                           : "Unexpected end");
+            default:
+                throw error("Unknown identifier " + identifier);
+        }
+    }
+
+    private boolean accept(char c) {
+        skipSpaces();
+        if (position < expression.length() && expression.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!accept(c))
+            throw error("Expected '" + c + "'");
+    }
+
+    private void skipSpaces() {
+        while (position < expression.length() && Character.isWhitespace(expression.charAt(position)))
+            position++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of instances expression " +
+                                            expression);
+    }
+}
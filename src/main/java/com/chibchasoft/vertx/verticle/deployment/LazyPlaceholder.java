@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.eventbus.ReplyException;
+
+/**
+ * <p>The event bus consumer standing in for a {@link DeploymentConfiguration#isLazy() lazy}
+ * verticle until it is deployed. The first message received triggers the deployment; that message
+ * and the ones received until the verticle is deployed are buffered and then sent again to the
+ * address, with their replies (or failures) forwarded to the original senders.</p>
+ * <p>Messages published to the address while the placeholder is registered may be received twice
+ * once the verticle registers its own consumers, lazy verticles are meant for point to point
+ * messaging.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class LazyPlaceholder {
+    private final Vertx                   vertx;
+    private final DeploymentPlan.Node     node;
+    private final MessageConsumer<Object> consumer;
+    private final List<Message<Object>>   buffered = new ArrayList<>();
+    private boolean                       triggered;
+
+    /**
+     * Registers a placeholder at the address of the node's verticle
+     * @param vertx The Vert.x instance
+     * @param node The node of the lazy verticle
+     * @param trigger The handler called with the node upon the first message received
+     */
+    LazyPlaceholder(Vertx vertx, DeploymentPlan.Node node, Handler<DeploymentPlan.Node> trigger) {
+        this.vertx = vertx;
+        this.node = node;
+        this.consumer = vertx.eventBus().consumer(node.config.getAddress(), message -> {
+            buffered.add(message);
+            if (!triggered) {
+                triggered = true;
+                trigger.handle(node);
+            }
+        });
+    }
+
+    /**
+     * The node of the lazy verticle
+     * @return The node
+     */
+    DeploymentPlan.Node getNode() {
+        return node;
+    }
+
+    /**
+     * The verticle has been deployed: unregisters the placeholder and replays the buffered
+     * messages
+     */
+    void deployed() {
+        consumer.unregister(ar -> {
+            List<Message<Object>> messages = new ArrayList<>(buffered);
+            buffered.clear();
+            messages.forEach(this::replay);
+        });
+    }
+
+    /**
+     * The verticle will not be deployed: unregisters the placeholder and fails the buffered
+     * messages
+     * @param cause The reason
+     */
+    void close(Throwable cause) {
+        consumer.unregister();
+        buffered.forEach(message -> fail(message, cause));
+        buffered.clear();
+    }
+
+    private void replay(Message<Object> message) {
+        DeliveryOptions options = new DeliveryOptions().setHeaders(message.headers());
+        if (message.replyAddress() == null) {
+            vertx.eventBus().send(node.config.getAddress(), message.body(), options);
+            return;
+        }
+        vertx.eventBus().send(node.config.getAddress(), message.body(), options, ar -> {
+            if (ar.succeeded())
+                message.reply(ar.result().body(), new DeliveryOptions().setHeaders(ar.result().headers()));
+            else
+                fail(message, ar.cause());
+        });
+    }
+
+    private static void fail(Message<Object> message, Throwable cause) {
+        if (cause instanceof ReplyException)
+            message.fail(((ReplyException) cause).failureCode(), cause.getMessage());
+        else
+            message.fail(-1, String.valueOf(cause.getMessage()));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * <p>{@link DeploymentMetrics} publishing to a Micrometer {@link MeterRegistry}. Requires
+ * {@code io.micrometer:micrometer-core} on the classpath. The meters are named after a prefix
+ * ({@code vertx.deployer} by default) and tagged with the {@code deployer} they belong to, verticle
+ * meters are tagged with the verticle's {@code name} as well:</p>
+ * <ul>
+ *     <li>{@code <prefix>.deploy}: timer of the deploy time of each verticle, also tagged with its
+ *     {@code outcome} ({@code success} or {@code failure}), with a percentile histogram if
+ *     {@link #setPercentileHistogram(boolean)} is set</li>
+ *     <li>{@code <prefix>.inflight}: gauge of the verticles deploying</li>
+ *     <li>{@code <prefix>.failures}: counter of the verticles that failed to deploy</li>
+ *     <li>{@code <prefix>.retries}: counter of the retried deployment attempts</li>
+ *     <li>{@code <prefix>.tree.size}, {@code <prefix>.tree.depth} and {@code <prefix>.tree.width}:
+ *     gauges of the last tree deployed (see {@link DeploymentMetrics#treeDeploying(int, int, int)})</li>
+ * </ul>
+ * <p>Each instance has its own meters, told apart from those of the other instances publishing to
+ * the same registry by the {@code deployer} tag, so an instance should be used by a single
+ * {@link DependentVerticleDeployer}.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+public class MicrometerDeploymentMetrics implements DeploymentMetrics {
+    private final MeterRegistry              registry;
+    private final String                     prefix;
+    private final String                     deployer;
+    private final Map<String, AtomicInteger> inFlight  = new ConcurrentHashMap<>();
+    private final AtomicInteger              treeSize  = new AtomicInteger();
+    private final AtomicInteger              treeDepth = new AtomicInteger();
+    private final AtomicInteger              treeWidth = new AtomicInteger();
+    private boolean                          percentileHistogram;
+
+    /**
+     * Creates metrics publishing to the supplied registry with the {@code vertx.deployer} prefix
+     * and a random {@code deployer} tag
+     * @param registry The registry
+     */
+    public MicrometerDeploymentMetrics(MeterRegistry registry) {
+        this(registry, "vertx.deployer");
+    }
+
+    /**
+     * Creates metrics publishing to the supplied registry with a random {@code deployer} tag
+     * @param registry The registry
+     * @param prefix The prefix of the meter names
+     */
+    public MicrometerDeploymentMetrics(MeterRegistry registry, String prefix) {
+        this(registry, prefix, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Creates metrics publishing to the supplied registry
+     * @param registry The registry
+     * @param prefix The prefix of the meter names
+     * @param deployer The {@code deployer} tag of the meters, which must not be used by another
+     * instance publishing to the same registry with the same prefix
+     */
+    public MicrometerDeploymentMetrics(MeterRegistry registry, String prefix, String deployer) {
+        this.registry = Objects.requireNonNull(registry, "registry is required");
+        this.prefix = Objects.requireNonNull(prefix, "prefix is required");
+        this.deployer = Objects.requireNonNull(deployer, "deployer is required");
+        Gauge.builder(prefix + ".tree.size", treeSize, AtomicInteger::get).tag("deployer", deployer).register(registry);
+        Gauge.builder(prefix + ".tree.depth", treeDepth, AtomicInteger::get).tag("deployer", deployer).register(registry);
+        Gauge.builder(prefix + ".tree.width", treeWidth, AtomicInteger::get).tag("deployer", deployer).register(registry);
+    }
+
+    /**
+     * Get the {@code deployer} tag of the meters
+     * @return The tag
+     */
+    public String getDeployer() {
+        return deployer;
+    }
+
+    /**
+     * Whether the {@code <prefix>.deploy} timers publish a percentile histogram
+     * @return true if the timers publish a percentile histogram
+     */
+    public boolean isPercentileHistogram() {
+        return percentileHistogram;
+    }
+
+    /**
+     * Sets whether the {@code <prefix>.deploy} timers publish a percentile histogram, off by
+     * default since each verticle name gets its own timer. Micrometer keeps the first timer
+     * registered with a name and tags, so it must be set before any deployment is recorded.
+     * @param percentileHistogram true to publish a percentile histogram
+     * @return a reference to this, so the API can be used fluently
+     */
+    public MicrometerDeploymentMetrics setPercentileHistogram(boolean percentileHistogram) {
+        this.percentileHistogram = percentileHistogram;
+        return this;
+    }
+
+    @Override
+    public void treeDeploying(int size, int depth, int width) {
+        treeSize.set(size);
+        treeDepth.set(depth);
+        treeWidth.set(width);
+    }
+
+    @Override
+    public void deploymentStarted(DeploymentConfiguration config) {
+        inFlight(config).incrementAndGet();
+    }
+
+    @Override
+    public void deploymentRetried(DeploymentConfiguration config, Throwable cause) {
+        Counter.builder(prefix + ".retries").tag("deployer", deployer).tag("name", config.getName())
+               .register(registry).increment();
+    }
+
+    @Override
+    public void deploymentCompleted(DeploymentConfiguration config, boolean succeeded, Throwable cause,
+                                    long deployTime) {
+        inFlight(config).decrementAndGet();
+        Timer.builder(prefix + ".deploy")
+             .tag("deployer", deployer)
+             .tag("name", config.getName())
+             .tag("outcome", succeeded ? "success" : "failure")
+             .publishPercentileHistogram(percentileHistogram)
+             .register(registry)
+             .record(deployTime, TimeUnit.MILLISECONDS);
+        if (!succeeded)
+            Counter.builder(prefix + ".failures").tag("deployer", deployer).tag("name", config.getName())
+                   .register(registry).increment();
+    }
+
+    private AtomicInteger inFlight(DeploymentConfiguration config) {
+        return inFlight.computeIfAbsent(config.getName(), name -> {
+            AtomicInteger count = new AtomicInteger();
+            Gauge.builder(prefix + ".inflight", count, AtomicInteger::get).tag("deployer", deployer).tag("name", name)
+                 .register(registry);
+            return count;
+        });
+    }
+}
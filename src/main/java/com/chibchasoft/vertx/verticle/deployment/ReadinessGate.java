@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.concurrent.TimeoutException;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.MessageConsumer;
+
+/**
+ * <p>Waits for a verticle with a {@link DeploymentConfiguration#getReadinessAddress()} to be
+ * ready. When signaled, the consumer of the readiness address is registered before the verticle
+ * is deployed, so a signal sent from its {@code start} is not missed. When polled, health checks
+ * are sent once the verticle is deployed.</p>
+ * <p>The gate is reset before each deployment attempt, so a signal from the instances of an
+ * attempt that failed does not make the next attempt ready. If the verticle has a
+ * {@link DeploymentConfiguration#getTimeout()}, the attempt that deployed it and the wait for it
+ * to be ready must complete within that time. Otherwise the verticle must be ready within the
+ * readiness timeout of the deployer once deployed, so a verticle that never signals does not hold
+ * back its dependents forever.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class ReadinessGate {
+    private final Vertx                   vertx;
+    private final DeploymentConfiguration config;
+    private final long                    readinessTimeout;
+    private final Handler<Void>           readyHandler;
+    private final Handler<Throwable>      notReadyHandler;
+    private MessageConsumer<Object>       consumer;
+    private long                          timerID   = -1;
+    private long                          timeoutID = -1;
+    private long                          attemptedAt;
+    private boolean                       signaled;
+    private boolean                       deployed;
+    private boolean                       closed;
+
+    /**
+     * Creates the gate of a verticle
+     * @param vertx The Vert.x instance
+     * @param config The {@link DeploymentConfiguration} of the verticle
+     * @param readinessTimeout The time in milliseconds to wait for the deployed verticle to be
+     * ready if it has no {@link DeploymentConfiguration#getTimeout()}
+     * @param readyHandler The handler called once the verticle is deployed and ready
+     * @param notReadyHandler The handler called if the verticle is not ready in time
+     */
+    ReadinessGate(Vertx vertx, DeploymentConfiguration config, long readinessTimeout,
+                  Handler<Void> readyHandler, Handler<Throwable> notReadyHandler) {
+        this.vertx = vertx;
+        this.config = config;
+        this.readinessTimeout = readinessTimeout;
+        this.readyHandler = readyHandler;
+        this.notReadyHandler = notReadyHandler;
+    }
+
+    /**
+     * Opens the gate before the verticle is deployed
+     * @param openHandler The handler called once the gate is ready to receive signals
+     */
+    void open(Handler<Void> openHandler) {
+        if (config.getReadinessPollInterval() > 0) {
+            openHandler.handle(null);
+            return;
+        }
+        consumer = vertx.eventBus().consumer(config.getReadinessAddress(), message -> {
+            signaled = true;
+            ready();
+        });
+        consumer.completionHandler(ar -> openHandler.handle(null));
+    }
+
+    /**
+     * A deployment attempt of the verticle starts: signals received so far are discarded
+     */
+    void attempt() {
+        signaled = false;
+        deployed = false;
+        attemptedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * The verticle has been deployed: the gate opens once it is ready
+     */
+    void deployed() {
+        deployed = true;
+        long timeout = config.getTimeout() > 0 ? config.getTimeout() : readinessTimeout;
+        long remaining = config.getTimeout() > 0 ?
+                         timeout - (System.currentTimeMillis() - attemptedAt) : timeout;
+        timeoutID = vertx.setTimer(Math.max(remaining, 1), id -> {
+            timeoutID = -1;
+            if (closed)
+                return;
+            close();
+            notReadyHandler.handle(new TimeoutException("Verticle " + config.getName() + " was not ready within " +
+                                                        timeout + " ms"));
+        });
+        if (config.getReadinessPollInterval() > 0)
+            poll();
+        else
+            ready();
+    }
+
+    /**
+     * Closes the gate, the verticle will not be waited for
+     */
+    void close() {
+        closed = true;
+        if (consumer != null)
+            consumer.unregister();
+        if (timerID != -1)
+            vertx.cancelTimer(timerID);
+        if (timeoutID != -1)
+            vertx.cancelTimer(timeoutID);
+    }
+
+    private void poll() {
+        timerID = -1;
+        if (closed)
+            return;
+        DeliveryOptions options = new DeliveryOptions().setSendTimeout(Math.max(config.getReadinessPollInterval(), 1000));
+        vertx.eventBus().send(config.getReadinessAddress(), null, options, ar -> {
+            if (closed)
+                return;
+            if (ar.succeeded() && !Boolean.FALSE.equals(ar.result().body())) {
+                signaled = true;
+                ready();
+            } else {
+                timerID = vertx.setTimer(config.getReadinessPollInterval(), id -> poll());
+            }
+        });
+    }
+
+    private void ready() {
+        if (signaled && deployed && !closed) {
+            close();
+            readyHandler.handle(null);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+/**
+ * <p>Decides, periodically, how many instances of each deployed verticle should be running (see
+ * {@link DependentVerticleDeployer#setScalingPolicy(ScalingPolicy)}). The policy may use any
+ * metrics source (event bus queue depths published by the verticles, Micrometer or Dropwizard
+ * metrics...) along with the event loop lag measured by the {@link DependentVerticleDeployer}.</p>
+ * <p>Policies are called on the context of the {@link DependentVerticleDeployer} and must not
+ * block.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+@FunctionalInterface
+public interface ScalingPolicy {
+    /**
+     * Gets the number of instances a verticle should be running
+     * @param config The {@link DeploymentConfiguration} of the verticle
+     * @param instances The number of instances running
+     * @param eventLoopLag How late, in milliseconds, the periodic evaluation of the policy ran on
+     * the event loop of the {@link DependentVerticleDeployer}, a measure of the event loop
+     * utilization
+     * @return The number of instances the verticle should be running, no less than the instances
+     * it was deployed with
+     */
+    int instances(DeploymentConfiguration config, int instances, long eventLoopLag);
+}
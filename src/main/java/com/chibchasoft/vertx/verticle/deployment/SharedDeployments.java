@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * <p>Registry, one per Vert.x instance, of the verticles deployed for
+ * {@link DeploymentConfiguration#isShared() shared} configurations. A verticle is deployed once per
+ * name and {@link DeploymentOptions}: acquiring an identical configuration again joins the
+ * deployment in flight or reuses the existing deployment ID. Each acquisition is a reference that
+ * must be released, the verticle is undeployed once the last reference is released.</p>
+ * <p>Shared verticles are deployed from a context owned by the registry, which belongs to no
+ * deployment (see {@link Contexts#detached(Vertx)}), so Vert.x does not undeploy them along with
+ * the first {@link DependentVerticleDeployer} that acquired them. Their classes are loaded with
+ * the class loader of the thread that first deployed a shared verticle.</p>
+ *
+ * @author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+final class SharedDeployments implements Shareable {
+    private static final String      MAP_NAME = SharedDeployments.class.getName();
+
+    private final Vertx              vertx;
+    private final Map<String, Entry> byKey    = new HashMap<>();
+    private final Map<String, Entry> byID     = new HashMap<>();
+    private Context                  context;
+
+    private SharedDeployments(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /**
+     * Gets the registry of the supplied Vert.x instance
+     * @param vertx The Vert.x instance
+     * @return The registry
+     */
+    static SharedDeployments get(Vertx vertx) {
+        LocalMap<String, SharedDeployments> map = vertx.sharedData().getLocalMap(MAP_NAME);
+        SharedDeployments registry = map.get(MAP_NAME);
+        if (registry == null) {
+            SharedDeployments created = new SharedDeployments(vertx);
+            registry = map.putIfAbsent(MAP_NAME, created);
+            if (registry == null)
+                registry = created;
+        }
+        return registry;
+    }
+
+    /**
+     * Acquires a reference to the verticle deployed with the supplied name and options, deploying it
+     * if it has not been deployed yet
+     * @param name The name of the verticle
+     * @param options The deployment options, may be null
+     * @param handler The handler called, on the caller's context, with the deployment ID
+     */
+    void acquire(String name, DeploymentOptions options, Handler<AsyncResult<String>> handler) {
+        Context caller = vertx.getOrCreateContext();
+        String key = name + "|" + (options != null ? options.toJson().encode() : "");
+        Entry entry;
+        boolean deploy;
+        AsyncResult<String> result;
+        synchronized (this) {
+            entry = byKey.get(key);
+            deploy = entry == null;
+            if (deploy) {
+                entry = new Entry(key);
+                byKey.put(key, entry);
+            }
+            entry.references++;
+            result = entry.result;
+            if (result == null)
+                entry.waiters.add(ar -> caller.runOnContext(v -> handler.handle(ar)));
+        }
+
+        if (result != null) {
+            caller.runOnContext(v -> handler.handle(result));
+        } else if (deploy) {
+            Entry deploying = entry;
+            // Deployed from the registry's context, so the verticle is nobody's child
+            Contexts.deployVerticle(context(), name, options, ar -> completed(deploying, ar));
+        }
+    }
+
+    /**
+     * Gets the context the shared verticles are deployed from, created upon the first deployment
+     * @return The context
+     */
+    private synchronized Context context() {
+        if (context == null)
+            context = Contexts.detached(vertx);
+        return context;
+    }
+
+    /**
+     * Releases a reference to a shared verticle, undeploying it if it was the last one
+     * @param deploymentID The deployment ID of the verticle
+     * @param handler The handler called once the reference has been released (and the verticle
+     * undeployed if needed)
+     */
+    void release(String deploymentID, Handler<AsyncResult<Void>> handler) {
+        boolean undeploy = false;
+        synchronized (this) {
+            Entry entry = byID.get(deploymentID);
+            if (entry != null && --entry.references == 0) {
+                byID.remove(deploymentID);
+                byKey.remove(entry.key);
+                undeploy = true;
+            }
+        }
+        if (undeploy)
+            vertx.undeploy(deploymentID, handler);
+        else
+            handler.handle(Future.succeededFuture());
+    }
+
+    private void completed(Entry entry, AsyncResult<String> result) {
+        List<Handler<AsyncResult<String>>> waiters;
+        synchronized (this) {
+            entry.result = result;
+            waiters = new ArrayList<>(entry.waiters);
+            entry.waiters.clear();
+            if (result.succeeded())
+                byID.put(result.result(), entry);
+            else
+                byKey.remove(entry.key);
+        }
+        waiters.forEach(waiter -> waiter.handle(result));
+    }
+
+    /**
+     * A shared verticle
+     */
+    private static final class Entry {
+        final String                             key;
+        final List<Handler<AsyncResult<String>>> waiters = new ArrayList<>();
+        int                                      references;
+        AsyncResult<String>                      result;
+
+        Entry(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -31,4 +31,11 @@ public class DependentTestVerticle extends AbstractVerticle {
         vertx.eventBus().send("DependentTestVerticleStarted", "started");
         startFuture.complete();
     }
+
+    @Override
+    public void stop(Future<Void> stopFuture) {
+        logger.info("Stopping this verticle");
+        vertx.eventBus().send("DependentTestVerticleStopped", "stopped");
+        stopFuture.complete();
+    }
 }
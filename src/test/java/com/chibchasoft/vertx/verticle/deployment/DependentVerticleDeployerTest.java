@@ -12,14 +12,27 @@
  */
 package com.chibchasoft.vertx.verticle.deployment;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.junit.Test;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.shareddata.AsyncMap;
+import io.vertx.core.spi.cluster.ClusterManager;
 import io.vertx.test.core.VertxTestBase;
+import io.vertx.test.fakecluster.FakeClusterManager;
 
 /**
  * Test DependentVerticleDeployer.
@@ -357,4 +370,1759 @@ public class DependentVerticleDeployerTest extends VertxTestBase {
                              });
         await();
     }
+
+    /**
+     * In this test, the DependentVerticleDeployer deploys two instances of a verticle and a
+     * verticle that depends on both of them by name. The dependent verticle must be deployed once
+     * and only after both instances are deployed.
+     */
+    @Test
+    public void testVerticleDependingOnSharedVerticlesByName() {
+        DeploymentConfiguration testVerticleCfg1 = new DeploymentConfiguration();
+        testVerticleCfg1.setName(TestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration testVerticleCfg2 = new DeploymentConfiguration();
+        testVerticleCfg2.setName(TestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        dependentTestVerticleCfg.getDependsOn().add(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(dependentTestVerticleCfg);
+        depDeployment.getConfigurations().add(testVerticleCfg1);
+        depDeployment.getConfigurations().add(testVerticleCfg2);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        AtomicInteger deployCount = new AtomicInteger();
+        vertx.eventBus().consumer("TestVerticleStarted", m -> deployCount.incrementAndGet());
+        vertx.eventBus().consumer("DependentTestVerticleStarted", m -> {
+            assertEquals(2, deployCount.get());
+            assertTrue(testVerticleCfg1.succeeded() && testVerticleCfg2.succeeded());
+        });
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertTrue(ar.succeeded());
+                                 assertTrue(dependentTestVerticleCfg.succeeded() &&
+                                            dependentTestVerticleCfg.getDeploymentID() != null);
+                                 // The DependentVerticleDeployer, TestVerticle twice and DependentTestVerticle
+                                 assertEquals(4, vertx.deploymentIDs().size());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, the same DeploymentConfiguration is a dependent of two verticles and it is
+     * deployed only once, after both of them
+     */
+    @Test
+    public void testSameConfigurationDependentOfTwoVerticles() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration testVerticleCfg1 = new DeploymentConfiguration();
+        testVerticleCfg1.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg1.getDependents().add(innerDepDeployment);
+
+        DeploymentConfiguration testVerticleCfg2 = new DeploymentConfiguration();
+        testVerticleCfg2.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg2.getDependents().add(innerDepDeployment);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg1);
+        depDeployment.getConfigurations().add(testVerticleCfg2);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertTrue(ar.succeeded());
+                                 assertTrue(dependentTestVerticleCfg.succeeded() &&
+                                            dependentTestVerticleCfg.getDeploymentID() != null);
+                                 assertEquals(4, vertx.deploymentIDs().size());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, a verticle depends on a name that is not found in the tree so nothing is
+     * deployed
+     */
+    @Test
+    public void testVerticleDependingOnUnknownName() {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependsOn().add("IDon'tExist");
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertFalse(ar.succeeded());
+                                 assertTrue(ar.cause() instanceof IllegalArgumentException);
+                                 assertFalse(testVerticleCfg.isComplete());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, two verticles depend on each other so nothing is deployed
+     */
+    @Test
+    public void testCyclicDependencies() {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependsOn().add(DependentTestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        dependentTestVerticleCfg.getDependsOn().add(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+        depDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertFalse(ar.succeeded());
+                                 assertTrue(ar.cause() instanceof IllegalStateException);
+                                 assertFalse(testVerticleCfg.isComplete());
+                                 assertFalse(dependentTestVerticleCfg.isComplete());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer deploys a verticle with one dependent and
+     * reports both of them as the critical path
+     */
+    @Test
+    public void testStartupReport() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        assertEquals(-1, dependentTestVerticleCfg.getWaitTime());
+        assertEquals(-1, dependentTestVerticleCfg.getDeployTime());
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependents().add(innerDepDeployment);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        assertNull(dependentVerticle.getStartupReport());
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertTrue(ar.succeeded());
+                                 assertTrue(testVerticleCfg.getDeployTime() >= 0);
+                                 assertTrue(dependentTestVerticleCfg.getDeployRequestedAt() >=
+                                            testVerticleCfg.getDeployCompletedAt());
+                                 assertEquals(0, testVerticleCfg.getWaitTime());
+                                 assertEquals(dependentTestVerticleCfg.getDeployRequestedAt() - testVerticleCfg.getReadyAt(),
+                                              dependentTestVerticleCfg.getWaitTime());
+
+                                 JsonObject report = dependentVerticle.getStartupReport();
+                                 assertNotNull(report);
+                                 assertTrue(report.getLong("totalTime") >= 0);
+                                 JsonArray criticalPath = report.getJsonArray("criticalPath");
+                                 assertEquals(2, criticalPath.size());
+                                 assertEquals(testVerticleCfg.getName(), criticalPath.getJsonObject(0).getString("name"));
+                                 assertEquals(testVerticleCfg.getDeploymentID(),
+                                              criticalPath.getJsonObject(0).getString("deploymentID"));
+                                 assertEquals(dependentTestVerticleCfg.getName(),
+                                              criticalPath.getJsonObject(1).getString("name"));
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer deploys one verticle at a time, starting with the
+     * verticle with the longest chain of dependents
+     */
+    @Test
+    public void testMaxDeploymentsInFlight() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration testVerticleCfg1 = new DeploymentConfiguration();
+        testVerticleCfg1.setName(TestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration testVerticleCfg2 = new DeploymentConfiguration();
+        testVerticleCfg2.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg2.getDependents().add(innerDepDeployment);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg1);
+        depDeployment.getConfigurations().add(testVerticleCfg2);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        dependentVerticle.setMaxDeploymentsInFlight(1);
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertTrue(ar.succeeded());
+                                 assertTrue(testVerticleCfg1.getDeployRequestedAt() >=
+                                            testVerticleCfg2.getDeployCompletedAt());
+                                 assertTrue(dependentTestVerticleCfg.getDeployRequestedAt() >=
+                                            testVerticleCfg1.getDeployCompletedAt());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer deploys the verticles of a DependentsDeployment
+     * one at a time
+     */
+    @Test
+    public void testMaxInFlightOfDependentsDeployment() {
+        DeploymentConfiguration testVerticleCfg1 = new DeploymentConfiguration();
+        testVerticleCfg1.setName(TestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration testVerticleCfg2 = new DeploymentConfiguration();
+        testVerticleCfg2.setName(TestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration testVerticleCfg3 = new DeploymentConfiguration();
+        testVerticleCfg3.setName(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment().setMaxInFlight(1);
+        depDeployment.getConfigurations().add(testVerticleCfg1);
+        depDeployment.getConfigurations().add(testVerticleCfg2);
+        depDeployment.getConfigurations().add(testVerticleCfg3);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertTrue(ar.succeeded());
+                                 assertTrue(testVerticleCfg2.getDeployRequestedAt() >=
+                                            testVerticleCfg1.getDeployCompletedAt());
+                                 assertTrue(testVerticleCfg3.getDeployRequestedAt() >=
+                                            testVerticleCfg2.getDeployCompletedAt());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer deploys the verticles of a JSON file one at a
+     * time, the limit preceding the configurations
+     */
+    @Test
+    public void testMaxInFlightOfDependentsDeploymentFile() throws Exception {
+        testMaxInFlightOfDependentsDeploymentFile(true);
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer deploys the verticles of a JSON file one at a
+     * time, the limit following the configurations
+     */
+    @Test
+    public void testMaxInFlightAfterConfigurationsOfDependentsDeploymentFile() throws Exception {
+        testMaxInFlightOfDependentsDeploymentFile(false);
+    }
+
+    private void testMaxInFlightOfDependentsDeploymentFile(boolean limitFirst) throws Exception {
+        JsonArray configurations = new JsonArray();
+        for (int i = 0; i < 3; i++)
+            configurations.add(new JsonObject().put("name", TestVerticle.class.getCanonicalName()));
+        JsonObject depDeploymentAsJson = new JsonObject();
+        if (limitFirst)
+            depDeploymentAsJson.put("maxInFlight", 1);
+        depDeploymentAsJson.put("configurations", configurations);
+        if (!limitFirst)
+            depDeploymentAsJson.put("maxInFlight", 1);
+
+        File file = File.createTempFile("dependents-deployment", ".json");
+        file.deleteOnExit();
+        Files.write(file.toPath(), depDeploymentAsJson.toBuffer().getBytes());
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeploymentFile(file.getAbsolutePath());
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertTrue(ar.succeeded());
+                                 List<DeploymentConfiguration> parsed =
+                                     dependentVerticle.getDependentsDeployment().getConfigurations();
+                                 assertEquals(1, dependentVerticle.getDependentsDeployment().getMaxInFlight());
+                                 assertTrue(parsed.get(1).getDeployRequestedAt() >= parsed.get(0).getDeployCompletedAt());
+                                 assertTrue(parsed.get(2).getDeployRequestedAt() >= parsed.get(1).getDeployCompletedAt());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer undeploys a verticle with one dependent. The
+     * dependent must be undeployed first.
+     */
+    @Test
+    public void testUndeployDependents() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependents().add(innerDepDeployment);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        dependentVerticle.setUndeployLevelTimeout(5000);
+
+        AtomicInteger stopCount = new AtomicInteger();
+        vertx.eventBus().consumer("DependentTestVerticleStopped", m -> assertEquals(1, stopCount.incrementAndGet()));
+        vertx.eventBus().consumer("TestVerticleStopped", m -> assertEquals(2, stopCount.incrementAndGet()));
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            dependentVerticle.undeployDependents(res -> {
+                assertTrue(res.succeeded());
+                assertFalse(vertx.deploymentIDs().contains(testVerticleCfg.getDeploymentID()));
+                assertFalse(vertx.deploymentIDs().contains(dependentTestVerticleCfg.getDeploymentID()));
+                vertx.undeploy(ar.result(), undeployed -> {
+                    assertTrue(undeployed.succeeded());
+                    assertTrue(vertx.deploymentIDs().isEmpty());
+                    waitUntil(() -> stopCount.get() == 2);
+                    testComplete();
+                });
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer is undeployed without undeploying its dependents
+     * first
+     */
+    @Test
+    public void testUndeployDependentVerticleDeployer() {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            vertx.undeploy(ar.result(), undeployed -> {
+                assertTrue(undeployed.succeeded());
+                assertTrue(vertx.deploymentIDs().isEmpty());
+                testComplete();
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer is undeployed while a verticle and its dependent
+     * are deployed. They are not its children, so its stop undeploys the dependent first.
+     */
+    @Test
+    public void testUndeployDependentVerticleDeployerInOrder() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependents().add(innerDepDeployment);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        AtomicInteger stopCount = new AtomicInteger();
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            // Registered on the same context, so the notifications are received in the order sent
+            vertx.eventBus().consumer("DependentTestVerticleStopped", m -> assertEquals(1, stopCount.incrementAndGet()));
+            vertx.eventBus().consumer("TestVerticleStopped", m -> assertEquals(2, stopCount.incrementAndGet()));
+            assertEquals(3, vertx.deploymentIDs().size());
+            VertxInternal vertxInternal = (VertxInternal) vertx;
+            assertFalse(vertxInternal.getDeployment(testVerticleCfg.getDeploymentID()).isChild());
+            assertFalse(vertxInternal.getDeployment(dependentTestVerticleCfg.getDeploymentID()).isChild());
+            vertx.undeploy(ar.result(), undeployed -> {
+                assertTrue(undeployed.succeeded());
+                assertTrue(vertx.deploymentIDs().isEmpty());
+                waitUntil(() -> stopCount.get() == 2);
+                testComplete();
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer deploys and undeploys a chain of 10,000
+     * verticles, each one the only dependent of the previous one
+     */
+    @Test
+    public void testVeryDeepChain() {
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        DependentsDeployment current = depDeployment;
+        for (int i = 0; i < 10_000; i++) {
+            DeploymentConfiguration cfg = new DeploymentConfiguration();
+            cfg.setName(SilentTestVerticle.class.getCanonicalName());
+            current.getConfigurations().add(cfg);
+            current = new DependentsDeployment();
+            cfg.getDependents().add(current);
+        }
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            // The DependentVerticleDeployer and the 10,000 verticles
+            assertEquals(10_001, vertx.deploymentIDs().size());
+            assertEquals(10_000, dependentVerticle.getStartupReport().getJsonArray("criticalPath").size());
+            dependentVerticle.undeployDependents(res -> {
+                assertTrue(res.succeeded());
+                assertEquals(1, vertx.deploymentIDs().size());
+                testComplete();
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer deploys the verticles of a JSON file, one of
+     * them depending on another by name
+     */
+    @Test
+    public void testDependentsDeploymentFile() throws Exception {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        dependentTestVerticleCfg.getDependsOn().add(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(dependentTestVerticleCfg);
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        File file = File.createTempFile("dependents-deployment", ".json");
+        file.deleteOnExit();
+        Files.write(file.toPath(), depDeployment.toJson().toBuffer().getBytes());
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeploymentFile(file.getAbsolutePath());
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertTrue(ar.succeeded());
+                                 DependentsDeployment parsed = dependentVerticle.getDependentsDeployment();
+                                 assertEquals(depDeployment.toJson(), parsed.toJson());
+                                 DeploymentConfiguration parsedDependentCfg = parsed.getConfigurations().get(0);
+                                 DeploymentConfiguration parsedTestCfg = parsed.getConfigurations().get(1);
+                                 assertTrue(parsedDependentCfg.succeeded() && parsedTestCfg.succeeded());
+                                 assertTrue(parsedDependentCfg.getDeployRequestedAt() >= parsedTestCfg.getDeployCompletedAt());
+                                 // The DependentVerticleDeployer, TestVerticle and DependentTestVerticle
+                                 assertEquals(3, vertx.deploymentIDs().size());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer deploys the verticles of a compiled plan
+     */
+    @Test
+    public void testCompiledDeploymentFile() throws Exception {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        dependentTestVerticleCfg.getDependsOn().add(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(dependentTestVerticleCfg);
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        File file = File.createTempFile("dependents-deployment", ".plan");
+        file.deleteOnExit();
+        Files.write(file.toPath(), CompiledDependentsDeployment.compile(depDeployment).getBytes());
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setCompiledDeploymentFile(file.getAbsolutePath());
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertTrue(ar.succeeded());
+                                 DependentsDeployment loaded = dependentVerticle.getDependentsDeployment();
+                                 assertEquals(depDeployment.toJson(), loaded.toJson());
+                                 assertTrue(loaded.getConfigurations().get(0).succeeded());
+                                 assertTrue(loaded.getConfigurations().get(1).succeeded());
+                                 // The DependentVerticleDeployer, TestVerticle and DependentTestVerticle
+                                 assertEquals(3, vertx.deploymentIDs().size());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, one loaded compiled plan is deployed by two DependentVerticleDeployers at the
+     * same time
+     */
+    @Test
+    public void testCompiledDeploymentDeployedTwice() {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        dependentTestVerticleCfg.getDependsOn().add(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(dependentTestVerticleCfg);
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        CompiledDependentsDeployment compiled =
+            CompiledDependentsDeployment.load(CompiledDependentsDeployment.compile(depDeployment));
+        DependentVerticleDeployer first = new DependentVerticleDeployer();
+        first.setCompiledDeployment(compiled);
+        DependentVerticleDeployer second = new DependentVerticleDeployer();
+        second.setCompiledDeployment(compiled);
+
+        Future<String> firstDeployed = Future.future();
+        Future<String> secondDeployed = Future.future();
+        vertx.deployVerticle(first, firstDeployed);
+        vertx.deployVerticle(second, secondDeployed);
+        CompositeFuture.all(firstDeployed, secondDeployed).setHandler(ar -> {
+            assertTrue(ar.succeeded());
+            assertSame(compiled.getDependentsDeployment(), first.getDependentsDeployment());
+            assertSame(compiled.getDependentsDeployment(), second.getDependentsDeployment());
+            for (DeploymentConfiguration cfg : compiled.getDependentsDeployment().getConfigurations()) {
+                assertNotNull(first.getDeploymentID(cfg));
+                assertNotNull(second.getDeploymentID(cfg));
+                assertFalse(first.getDeploymentID(cfg).equals(second.getDeploymentID(cfg)));
+            }
+            // Both DependentVerticleDeployers, TestVerticle and DependentTestVerticle twice
+            assertEquals(6, vertx.deploymentIDs().size());
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer fails to start since its compiled plan drifted
+     * from the dependents deployment file it was compiled from
+     */
+    @Test
+    public void testCompiledDeploymentFileDrifted() throws Exception {
+        JsonObject depDeploymentAsJson = new JsonObject()
+            .put("configurations", new JsonArray().add(new JsonObject().put("name", TestVerticle.class.getCanonicalName())));
+
+        File source = File.createTempFile("dependents-deployment", ".json");
+        source.deleteOnExit();
+        File file = File.createTempFile("dependents-deployment", ".plan");
+        file.deleteOnExit();
+        Files.write(file.toPath(), CompiledDependentsDeployment.compile(depDeploymentAsJson.toBuffer()).getBytes());
+        depDeploymentAsJson.getJsonArray("configurations").add(new JsonObject().put("name", SilentTestVerticle.class.getCanonicalName()));
+        Files.write(source.toPath(), depDeploymentAsJson.toBuffer().getBytes());
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setCompiledDeploymentFile(file.getAbsolutePath());
+        dependentVerticle.setDependentsDeploymentFile(source.getAbsolutePath());
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertTrue(ar.failed());
+                                 assertTrue(ar.cause() instanceof IllegalStateException);
+                                 assertTrue(vertx.deploymentIDs().isEmpty());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer fails to deploy a file that does not exist
+     */
+    @Test
+    public void testNonExistentDependentsDeploymentFile() {
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeploymentFile("IDon'tExist.json");
+
+        vertx.deployVerticle(dependentVerticle,
+                             ar -> {
+                                 assertFalse(ar.succeeded());
+                                 testComplete();
+                             });
+        await();
+    }
+
+    /**
+     * In this test, two DependentVerticleDeployers deploy the same shared verticle, which is
+     * deployed only once and undeployed along with the last DependentVerticleDeployer
+     */
+    @Test
+    public void testSharedDeployment() {
+        DeploymentConfiguration firstCfg = new DeploymentConfiguration();
+        firstCfg.setName(TestVerticle.class.getCanonicalName()).setShared(true);
+        DependentsDeployment firstDeployment = new DependentsDeployment();
+        firstDeployment.getConfigurations().add(firstCfg);
+        DependentVerticleDeployer firstDeployer = new DependentVerticleDeployer();
+        firstDeployer.setDependentsDeployment(firstDeployment);
+
+        DeploymentConfiguration secondCfg = new DeploymentConfiguration();
+        secondCfg.setName(TestVerticle.class.getCanonicalName()).setShared(true);
+        DependentsDeployment secondDeployment = new DependentsDeployment();
+        secondDeployment.getConfigurations().add(secondCfg);
+        DependentVerticleDeployer secondDeployer = new DependentVerticleDeployer();
+        secondDeployer.setDependentsDeployment(secondDeployment);
+
+        Future<String> first = Future.future();
+        Future<String> second = Future.future();
+        vertx.deployVerticle(firstDeployer, first);
+        vertx.deployVerticle(secondDeployer, second);
+        CompositeFuture.all(first, second).setHandler(ar -> {
+            assertTrue(ar.succeeded());
+            assertEquals(3, vertx.deploymentIDs().size());
+            assertNotNull(firstCfg.getDeploymentID());
+            assertEquals(firstCfg.getDeploymentID(), secondCfg.getDeploymentID());
+            vertx.undeploy(first.result(), firstUndeployed -> {
+                assertTrue(firstUndeployed.succeeded());
+                assertTrue(vertx.deploymentIDs().contains(firstCfg.getDeploymentID()));
+                vertx.undeploy(second.result(), secondUndeployed -> {
+                    assertTrue(secondUndeployed.succeeded());
+                    assertTrue(vertx.deploymentIDs().isEmpty());
+                    testComplete();
+                });
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer is reconfigured with a tree where one root
+     * changed and a dependent was added: only the changed root is redeployed
+     */
+    @Test
+    public void testRedeploy() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependents().add(innerDepDeployment);
+
+        DeploymentConfiguration silentTestVerticleCfg = new DeploymentConfiguration();
+        silentTestVerticleCfg.setName(SilentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+        depDeployment.getConfigurations().add(silentTestVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            JsonObject changed = depDeployment.toJson();
+            JsonArray configurations = changed.getJsonArray("configurations");
+            configurations.getJsonObject(1).put("deploymentOptions", new JsonObject().put("instances", 2));
+            configurations.getJsonObject(0).getJsonArray("dependents").getJsonObject(0).getJsonArray("configurations")
+                          .add(new JsonObject().put("name", SilentTestVerticle.class.getCanonicalName()));
+            dependentVerticle.redeploy(changed, res -> {
+                assertTrue(res.succeeded());
+                List<DeploymentConfiguration> roots = dependentVerticle.getDependentsDeployment().getConfigurations();
+                List<DeploymentConfiguration> dependents = roots.get(0).getDependents().get(0).getConfigurations();
+                assertEquals(testVerticleCfg.getDeploymentID(), roots.get(0).getDeploymentID());
+                assertEquals(dependentTestVerticleCfg.getDeploymentID(), dependents.get(0).getDeploymentID());
+                assertNotNull(dependents.get(1).getDeploymentID());
+                assertNotNull(roots.get(1).getDeploymentID());
+                assertFalse(roots.get(1).getDeploymentID().equals(silentTestVerticleCfg.getDeploymentID()));
+                assertFalse(vertx.deploymentIDs().contains(silentTestVerticleCfg.getDeploymentID()));
+                assertEquals(5, vertx.deploymentIDs().size());
+                testComplete();
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer is reconfigured with a tree where only the
+     * timeout of one root changed: that root is redeployed so the new timeout applies
+     */
+    @Test
+    public void testRedeployChangedSettings() {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration silentTestVerticleCfg = new DeploymentConfiguration();
+        silentTestVerticleCfg.setName(SilentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+        depDeployment.getConfigurations().add(silentTestVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            JsonObject changed = depDeployment.toJson();
+            changed.getJsonArray("configurations").getJsonObject(1).put("timeout", 5000);
+            dependentVerticle.redeploy(changed, res -> {
+                assertTrue(res.succeeded());
+                List<DeploymentConfiguration> roots = dependentVerticle.getDependentsDeployment().getConfigurations();
+                assertEquals(testVerticleCfg.getDeploymentID(), roots.get(0).getDeploymentID());
+                assertEquals(5000, roots.get(1).getTimeout());
+                assertNotNull(roots.get(1).getDeploymentID());
+                assertFalse(roots.get(1).getDeploymentID().equals(silentTestVerticleCfg.getDeploymentID()));
+                assertFalse(vertx.deploymentIDs().contains(silentTestVerticleCfg.getDeploymentID()));
+                testComplete();
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer is reconfigured while a lazy verticle, triggered
+     * by a message, is deploying: the redeploy fails, leaving the lazy verticle's deployment
+     * untouched, and succeeds once the lazy verticle is deployed
+     */
+    @Test
+    public void testRedeployWhileLazyVerticleDeploying() {
+        DeploymentConfiguration echoTestVerticleCfg = new DeploymentConfiguration();
+        echoTestVerticleCfg.setName(EchoTestVerticle.class.getCanonicalName())
+                           .setDeploymentOptions(new DeploymentOptions().setConfig(new JsonObject().put("address", "echo")
+                                                                                                   .put("delay", 500)))
+                           .setLazy(true)
+                           .setAddress("echo");
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(echoTestVerticleCfg);
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            vertx.eventBus().send("echo", "hello", reply -> {
+                assertTrue(reply.succeeded());
+                assertTrue(echoTestVerticleCfg.succeeded());
+                assertTrue(vertx.deploymentIDs().contains(echoTestVerticleCfg.getDeploymentID()));
+                dependentVerticle.redeploy(depDeployment.toJson(), res -> {
+                    assertTrue(res.succeeded());
+                    DeploymentConfiguration echo = dependentVerticle.getDependentsDeployment().getConfigurations().get(0);
+                    assertEquals(echoTestVerticleCfg.getDeploymentID(), echo.getDeploymentID());
+                    assertEquals(3, vertx.deploymentIDs().size());
+                    testComplete();
+                });
+            });
+            vertx.setTimer(100, id -> {
+                assertTrue(echoTestVerticleCfg.getDeployRequestedAt() > 0);
+                assertFalse(echoTestVerticleCfg.isComplete());
+                dependentVerticle.redeploy(depDeployment.toJson(), res -> {
+                    assertTrue(res.failed());
+                    assertEquals("A deployment is in progress", res.cause().getMessage());
+                    assertFalse(echoTestVerticleCfg.isComplete());
+                });
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, a verticle fails to deploy twice and is deployed on its second retry, after
+     * waiting at least half of its backoff doubled for each retry
+     */
+    @Test
+    public void testRetryWithBackoff() {
+        DeploymentConfiguration flakyTestVerticleCfg = new DeploymentConfiguration();
+        flakyTestVerticleCfg.setName(FlakyTestVerticle.class.getCanonicalName())
+                            .setDeploymentOptions(new DeploymentOptions().setConfig(new JsonObject().put("failures", 2)))
+                            .setMaxRetries(2)
+                            .setBackoff(10);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(flakyTestVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            assertTrue(flakyTestVerticleCfg.succeeded());
+            assertTrue(flakyTestVerticleCfg.getDeployTime() >= 15);
+            assertEquals(2, vertx.deploymentIDs().size());
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, a verticle fails to deploy and the verticles already deployed are rolled back
+     * before the start fails
+     */
+    @Test
+    public void testRollbackOnFailure() {
+        DeploymentConfiguration flakyTestVerticleCfg = new DeploymentConfiguration();
+        flakyTestVerticleCfg.setName(FlakyTestVerticle.class.getCanonicalName())
+                            .setDeploymentOptions(new DeploymentOptions().setConfig(new JsonObject().put("failures", 1)));
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        DependentsDeployment dependents = new DependentsDeployment();
+        dependents.getConfigurations().add(flakyTestVerticleCfg);
+        dependents.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependents().add(dependents);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        dependentVerticle.setRollbackOnFailure(true);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.failed());
+            assertTrue(testVerticleCfg.succeeded());
+            assertFalse(vertx.deploymentIDs().contains(testVerticleCfg.getDeploymentID()));
+            JsonArray rolledBack = dependentVerticle.getStartupReport().getJsonArray("rolledBack");
+            assertTrue(rolledBack.contains(TestVerticle.class.getCanonicalName()));
+            assertFalse(rolledBack.contains(FlakyTestVerticle.class.getCanonicalName()));
+            if (dependentTestVerticleCfg.succeeded()) {
+                assertTrue(rolledBack.contains(DependentTestVerticle.class.getCanonicalName()));
+                assertFalse(vertx.deploymentIDs().contains(dependentTestVerticleCfg.getDeploymentID()));
+            }
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, an optional verticle fails to deploy: its dependents are skipped and the rest
+     * of the tree is deployed
+     */
+    @Test
+    public void testOptionalVerticleFailure() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        DependentsDeployment pluginDependents = new DependentsDeployment();
+        pluginDependents.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration flakyTestVerticleCfg = new DeploymentConfiguration();
+        flakyTestVerticleCfg.setName(FlakyTestVerticle.class.getCanonicalName())
+                            .setDeploymentOptions(new DeploymentOptions().setConfig(new JsonObject().put("failures", 1)))
+                            .setOptional(true);
+        flakyTestVerticleCfg.getDependents().add(pluginDependents);
+        DependentsDeployment dependents = new DependentsDeployment();
+        dependents.getConfigurations().add(flakyTestVerticleCfg);
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependents().add(dependents);
+
+        DeploymentConfiguration silentTestVerticleCfg = new DeploymentConfiguration();
+        silentTestVerticleCfg.setName(SilentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+        depDeployment.getConfigurations().add(silentTestVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            assertTrue(testVerticleCfg.succeeded());
+            assertTrue(silentTestVerticleCfg.succeeded());
+            assertTrue(flakyTestVerticleCfg.failed());
+            assertTrue(dependentTestVerticleCfg.failed());
+            assertTrue(dependentTestVerticleCfg.failCause() instanceof IllegalStateException);
+            JsonArray failures = dependentVerticle.getStartupReport().getJsonArray("failures");
+            assertEquals(1, failures.size());
+            assertEquals(FlakyTestVerticle.class.getCanonicalName(), failures.getJsonObject(0).getString("name"));
+            assertEquals(new JsonArray().add(DependentTestVerticle.class.getCanonicalName()),
+                         failures.getJsonObject(0).getJsonArray("skipped"));
+            // The DependentVerticleDeployer, TestVerticle and SilentTestVerticle
+            assertEquals(3, vertx.deploymentIDs().size());
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, a verticle never completes its start and every attempt times out
+     */
+    @Test
+    public void testDeployTimeout() {
+        DeploymentConfiguration flakyTestVerticleCfg = new DeploymentConfiguration();
+        flakyTestVerticleCfg.setName(FlakyTestVerticle.class.getCanonicalName())
+                            .setDeploymentOptions(new DeploymentOptions().setConfig(new JsonObject().put("hang", true)))
+                            .setTimeout(100)
+                            .setMaxRetries(1);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(flakyTestVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.failed());
+            assertTrue(flakyTestVerticleCfg.failCause() instanceof TimeoutException);
+            assertTrue(flakyTestVerticleCfg.getDeployTime() >= 200);
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, the deployments of a tree are published to a Micrometer registry
+     */
+    @Test
+    public void testMicrometerMetrics() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration flakyTestVerticleCfg = new DeploymentConfiguration();
+        flakyTestVerticleCfg.setName(FlakyTestVerticle.class.getCanonicalName())
+                            .setDeploymentOptions(new DeploymentOptions().setConfig(new JsonObject().put("failures", 1)))
+                            .setMaxRetries(1);
+        flakyTestVerticleCfg.getDependents().add(innerDepDeployment);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(flakyTestVerticleCfg);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        MicrometerDeploymentMetrics metrics = new MicrometerDeploymentMetrics(registry, "vertx.deployer", "first");
+        dependentVerticle.setMetrics(metrics);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            String flakyName = FlakyTestVerticle.class.getCanonicalName();
+            assertEquals(1, registry.get("vertx.deployer.deploy").tag("name", flakyName).tag("outcome", "success")
+                                    .timer().count());
+            assertEquals(1, registry.get("vertx.deployer.deploy").tag("name", DependentTestVerticle.class.getCanonicalName())
+                                    .timer().count());
+            assertEquals(1, registry.get("vertx.deployer.retries").tag("name", flakyName).counter().count(), 0);
+            assertEquals(0, registry.get("vertx.deployer.inflight").tag("name", flakyName).gauge().value(), 0);
+            assertEquals(2, registry.get("vertx.deployer.tree.depth").gauge().value(), 0);
+            assertEquals(1, registry.get("vertx.deployer.tree.width").gauge().value(), 0);
+            assertEquals(2, registry.get("vertx.deployer.tree.size").gauge().value(), 0);
+            // Another instance on the same registry publishes to its own gauges
+            new MicrometerDeploymentMetrics(registry, "vertx.deployer", "second").treeDeploying(5, 3, 4);
+            assertEquals(2, registry.get("vertx.deployer.tree.size").tag("deployer", "first").gauge().value(), 0);
+            assertEquals(5, registry.get("vertx.deployer.tree.size").tag("deployer", "second").gauge().value(), 0);
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, a lazy verticle and its dependent are deployed upon the first message sent to
+     * the lazy verticle's address, which is then replied by the verticle
+     */
+    @Test
+    public void testLazyDeployment() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration echoTestVerticleCfg = new DeploymentConfiguration();
+        echoTestVerticleCfg.setName(EchoTestVerticle.class.getCanonicalName())
+                           .setDeploymentOptions(new DeploymentOptions().setConfig(new JsonObject().put("address", "echo")))
+                           .setLazy(true)
+                           .setAddress("echo");
+        echoTestVerticleCfg.getDependents().add(innerDepDeployment);
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(echoTestVerticleCfg);
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            assertTrue(testVerticleCfg.succeeded());
+            assertFalse(echoTestVerticleCfg.isComplete());
+            assertEquals(2, vertx.deploymentIDs().size());
+            vertx.eventBus().send("echo", "hello", reply -> {
+                assertTrue(reply.succeeded());
+                assertEquals("hello", reply.result().body());
+                assertTrue(echoTestVerticleCfg.succeeded());
+                waitUntil(() -> dependentTestVerticleCfg.succeeded());
+                assertEquals(4, vertx.deploymentIDs().size());
+                testComplete();
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, a verticle signals its readiness once warm: its dependent waits for it while
+     * the dependent tolerating a cold parent does not
+     */
+    @Test
+    public void testReadinessSignal() {
+        testReadiness(false);
+    }
+
+    /**
+     * In this test, a verticle is polled for its readiness: its dependent waits for it while the
+     * dependent tolerating a cold parent does not
+     */
+    @Test
+    public void testReadinessPoll() {
+        testReadiness(true);
+    }
+
+    /**
+     * In this test, a verticle with a timeout is not ready within it: the deployment fails and its
+     * dependent is never deployed
+     */
+    @Test
+    public void testReadinessTimeout() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration warmingTestVerticleCfg = new DeploymentConfiguration();
+        warmingTestVerticleCfg.setName(WarmingTestVerticle.class.getCanonicalName())
+                              .setDeploymentOptions(new DeploymentOptions().setConfig(
+                                  new JsonObject().put("address", "slow.warm").put("warmup", 5000L)))
+                              .setReadinessAddress("slow.warm")
+                              .setTimeout(200);
+        warmingTestVerticleCfg.getDependents().add(innerDepDeployment);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(warmingTestVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.failed());
+            assertTrue(ar.cause() instanceof TimeoutException);
+            assertFalse(warmingTestVerticleCfg.isReady());
+            assertEquals(0, dependentTestVerticleCfg.getDeployRequestedAt());
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, the wait before a retry doubles with each retry, up to the maximum backoff,
+     * and half of it is random
+     */
+    @Test
+    public void testRetryDelay() {
+        assertEquals(0, DeploymentAttempts.retryDelay(0, 3, 1000));
+        for (int i = 0; i < 100; i++) {
+            long first = DeploymentAttempts.retryDelay(100, 0, 1000);
+            assertTrue(first >= 50 && first <= 100);
+            long third = DeploymentAttempts.retryDelay(100, 2, 1000);
+            assertTrue(third >= 200 && third <= 400);
+            long capped = DeploymentAttempts.retryDelay(100, 1000, 1000);
+            assertTrue(capped >= 500 && capped <= 1000);
+            long large = DeploymentAttempts.retryDelay(Long.MAX_VALUE / 2, 63, Long.MAX_VALUE);
+            assertTrue(large >= Long.MAX_VALUE / 2);
+        }
+    }
+
+    /**
+     * In this test, a verticle without a timeout is not ready within the readiness timeout of the
+     * deployer: the deployment fails and its dependent is never deployed
+     */
+    @Test
+    public void testDeployerReadinessTimeout() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration warmingTestVerticleCfg = new DeploymentConfiguration();
+        warmingTestVerticleCfg.setName(WarmingTestVerticle.class.getCanonicalName())
+                              .setDeploymentOptions(new DeploymentOptions().setConfig(
+                                  new JsonObject().put("address", "never.warm").put("warmup", 5000L)))
+                              .setReadinessAddress("never.warm");
+        warmingTestVerticleCfg.getDependents().add(innerDepDeployment);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(warmingTestVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        dependentVerticle.setReadinessTimeout(200);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.failed());
+            assertTrue(ar.cause() instanceof TimeoutException);
+            assertFalse(warmingTestVerticleCfg.isReady());
+            assertEquals(0, dependentTestVerticleCfg.getDeployRequestedAt());
+            testComplete();
+        });
+        await();
+    }
+
+    private void testReadiness(boolean poll) {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration silentTestVerticleCfg = new DeploymentConfiguration();
+        silentTestVerticleCfg.setName(SilentTestVerticle.class.getCanonicalName()).setColdParentTolerated(true);
+
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+        innerDepDeployment.getConfigurations().add(silentTestVerticleCfg);
+
+        DeploymentConfiguration warmingTestVerticleCfg = new DeploymentConfiguration();
+        warmingTestVerticleCfg.setName(WarmingTestVerticle.class.getCanonicalName())
+                              .setDeploymentOptions(new DeploymentOptions().setConfig(
+                                  new JsonObject().put("address", "warm").put("warmup", 200L).put("poll", poll)))
+                              .setReadinessAddress("warm")
+                              .setReadinessPollInterval(poll ? 50 : 0);
+        warmingTestVerticleCfg.getDependents().add(innerDepDeployment);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(warmingTestVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            assertTrue(warmingTestVerticleCfg.isReady());
+            assertTrue(warmingTestVerticleCfg.getReadyAt() - warmingTestVerticleCfg.getDeployCompletedAt() >= 150);
+            assertTrue(silentTestVerticleCfg.getDeployRequestedAt() < warmingTestVerticleCfg.getReadyAt());
+            assertTrue(dependentTestVerticleCfg.getDeployRequestedAt() >= warmingTestVerticleCfg.getReadyAt());
+            assertEquals(4, vertx.deploymentIDs().size());
+            testComplete();
+        });
+        await();
+    }
+
+    @Override
+    protected ClusterManager getClusterManager() {
+        return new FakeClusterManager();
+    }
+
+    /**
+     * In this test, a tree is deployed across two clustered DependentVerticleDeployers: the
+     * verticles with a role are deployed on the member with that role and the verticles without
+     * role on the least loaded member
+     */
+    @Test
+    public void testDistributedDeployment() {
+        startNodes(2);
+        JsonObject dependentTestVerticleCfg = new JsonObject()
+            .put("name", DependentTestVerticle.class.getCanonicalName())
+            .put("role", "front");
+        JsonObject testVerticleCfg = new JsonObject()
+            .put("name", TestVerticle.class.getCanonicalName())
+            .put("role", "back")
+            .put("dependents", new JsonArray().add(new JsonObject().put("configurations",
+                                                                         new JsonArray().add(dependentTestVerticleCfg))));
+        JsonObject silentTestVerticleCfg = new JsonObject().put("name", SilentTestVerticle.class.getCanonicalName());
+        JsonObject depDeploymentAsJson = new JsonObject().put("configurations", new JsonArray()
+            .add(testVerticleCfg).add(silentTestVerticleCfg).add(silentTestVerticleCfg.copy()));
+
+        DependentVerticleDeployer frontDeployer = new DependentVerticleDeployer();
+        frontDeployer.setDependentsDeployment(new DependentsDeployment(depDeploymentAsJson));
+        frontDeployer.setRoles(Collections.singleton("front"));
+        frontDeployer.setClusterDeploymentName("testDistributedDeployment");
+        frontDeployer.setMinMembers(2);
+
+        DependentVerticleDeployer backDeployer = new DependentVerticleDeployer();
+        backDeployer.setDependentsDeployment(new DependentsDeployment(depDeploymentAsJson));
+        backDeployer.setRoles(Collections.singleton("back"));
+        backDeployer.setClusterDeploymentName("testDistributedDeployment");
+        backDeployer.setMinMembers(2);
+
+        Future<String> front = Future.future();
+        Future<String> back = Future.future();
+        vertices[0].deployVerticle(frontDeployer, front);
+        vertices[1].deployVerticle(backDeployer, back);
+        CompositeFuture.all(front, back).setHandler(ar -> {
+            assertTrue(ar.succeeded());
+            String dependentID = frontDeployer.getDependentsDeployment().getConfigurations().get(0)
+                                              .getDependents().get(0).getConfigurations().get(0).getDeploymentID();
+            String testID = backDeployer.getDependentsDeployment().getConfigurations().get(0).getDeploymentID();
+            // The front member only deployed the dependent once the back member recorded its parent
+            assertEquals(testID, frontDeployer.getDependentsDeployment().getConfigurations().get(0).getDeploymentID());
+            assertTrue(vertices[0].deploymentIDs().contains(dependentID));
+            assertTrue(vertices[1].deploymentIDs().contains(testID));
+            assertEquals(3, vertices[0].deploymentIDs().size());
+            assertEquals(3, vertices[1].deploymentIDs().size());
+            vertices[0].undeploy(front.result(), undeployed -> {
+                assertTrue(undeployed.succeeded());
+                assertTrue(vertices[0].deploymentIDs().isEmpty());
+                testComplete();
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, a member waiting for a second member that never joins fails to start once the
+     * join timeout elapses
+     */
+    @Test
+    public void testDistributedDeploymentJoinTimeout() {
+        startNodes(1);
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(new DeploymentConfiguration().setName(TestVerticle.class.getCanonicalName()));
+
+        DependentVerticleDeployer deployer = new DependentVerticleDeployer();
+        deployer.setDependentsDeployment(depDeployment);
+        deployer.setRoles(Collections.singleton("front"));
+        deployer.setClusterDeploymentName("testDistributedDeploymentJoinTimeout");
+        deployer.setMinMembers(2);
+        deployer.setJoinTimeout(200);
+
+        vertices[0].deployVerticle(deployer, ar -> {
+            assertTrue(ar.failed());
+            assertTrue(ar.cause().getMessage().contains("not placed within 200 ms"));
+            assertTrue(vertices[0].deploymentIDs().isEmpty());
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, the coordinator and placement left by members that died without leaving are
+     * discarded and the tree is placed again on the members alive
+     */
+    @Test
+    public void testDistributedDeploymentStalePlacement() {
+        startNodes(1);
+        String name = "testDistributedDeploymentStalePlacement";
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(new DeploymentConfiguration().setName(TestVerticle.class.getCanonicalName()));
+        depDeployment.getConfigurations().add(new DeploymentConfiguration().setName(SilentTestVerticle.class.getCanonicalName()));
+
+        DependentVerticleDeployer deployer = new DependentVerticleDeployer();
+        deployer.setDependentsDeployment(depDeployment);
+        deployer.setRoles(Collections.singleton("front"));
+        deployer.setClusterDeploymentName(name);
+
+        vertices[0].sharedData().<String, JsonObject>getAsyncMap(name + ".placement", map -> {
+            assertTrue(map.succeeded());
+            map.result().put("coordinator", new JsonObject().put("memberID", "dead"), v -> {
+                map.result().put("placement", new JsonObject().put("members", new JsonArray().add("dead").add("dead")), placed -> {
+                    vertices[0].deployVerticle(deployer, ar -> {
+                        assertTrue(ar.succeeded());
+                        assertEquals(3, vertices[0].deploymentIDs().size());
+                        map.result().get("coordinator", coordinator -> {
+                            assertFalse("dead".equals(coordinator.result().getString("memberID")));
+                            testComplete();
+                        });
+                    });
+                });
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the verticles placed on members that died without leaving are given to the
+     * members alive: first to a member joining, then to a member already deployed
+     */
+    @Test
+    public void testDistributedDeploymentDeadMember() {
+        startNodes(2);
+        String name = "testDistributedDeploymentDeadMember";
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(new DeploymentConfiguration().setName(TestVerticle.class.getCanonicalName())
+                                                                           .setRole("back"));
+        depDeployment.getConfigurations().add(new DeploymentConfiguration().setName(SilentTestVerticle.class.getCanonicalName()));
+
+        DependentVerticleDeployer backDeployer = new DependentVerticleDeployer();
+        backDeployer.setDependentsDeployment(depDeployment);
+        backDeployer.setRoles(Collections.singleton("back"));
+        backDeployer.setClusterDeploymentName(name);
+
+        DependentVerticleDeployer frontDeployer = new DependentVerticleDeployer();
+        frontDeployer.setDependentsDeployment(new DependentsDeployment(depDeployment.toJson()));
+        frontDeployer.setRoles(Collections.singleton("front"));
+        frontDeployer.setClusterDeploymentName(name);
+
+        JsonObject alive = new JsonObject().put("roles", new JsonArray().add("back")).put("cores", 1).put("eventLoops", 1);
+        Future<AsyncMap<String, JsonObject>> membersFuture = Future.future();
+        Future<AsyncMap<String, JsonObject>> placementFuture = Future.future();
+        vertices[0].sharedData().getAsyncMap(name + ".members", membersFuture);
+        vertices[0].sharedData().getAsyncMap(name + ".placement", placementFuture);
+        CompositeFuture.all(membersFuture, placementFuture).compose(v -> {
+            Future<Void> registered = Future.future();
+            membersFuture.result().put("alive", alive, registered);
+            return registered;
+        }).compose(v -> {
+            Future<Void> claimed = Future.future();
+            placementFuture.result().put("coordinator", new JsonObject().put("memberID", "alive"), claimed);
+            return claimed;
+        }).compose(v -> {
+            Future<Void> placed = Future.future();
+            placementFuture.result().put("placement", new JsonObject().put("members", new JsonArray().add("alive").add("dead")),
+                                         placed);
+            return placed;
+        }).compose(v -> {
+            // The verticle of the dead member is given to the member joining
+            Future<String> back = Future.future();
+            vertices[0].deployVerticle(backDeployer, back);
+            return back;
+        }).compose(back -> {
+            assertEquals(2, vertices[0].deploymentIDs().size());
+            assertEquals(1, backDeployer.getInstances(SilentTestVerticle.class.getCanonicalName()));
+            assertEquals(0, backDeployer.getInstances(TestVerticle.class.getCanonicalName()));
+            Future<JsonObject> left = Future.future();
+            membersFuture.result().remove("alive", left);
+            return left;
+        }).compose(v -> {
+            // Only the member already deployed has the role of the verticle of the member that left
+            Future<String> front = Future.future();
+            vertices[1].deployVerticle(frontDeployer, front);
+            return front;
+        }).setHandler(ar -> {
+            assertTrue(ar.succeeded());
+            assertEquals(1, vertices[1].deploymentIDs().size());
+            vertices[0].setPeriodic(10, id -> {
+                if (backDeployer.getInstances(TestVerticle.class.getCanonicalName()) == 1) {
+                    vertices[0].cancelTimer(id);
+                    assertEquals(3, vertices[0].deploymentIDs().size());
+                    testComplete();
+                }
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the number of instances of a verticle is computed from the available cores
+     * and the configured event loops
+     */
+    @Test
+    public void testInstancesExpression() {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName())
+                       .setInstancesExpression("max(2, min(cores, 3)) * eventLoops");
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        dependentVerticle.setEventLoops(1);
+
+        int expectedInstances = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 3));
+        // Completed once every instance has started and the deployment has completed
+        AtomicInteger pending = new AtomicInteger(expectedInstances + 1);
+        vertx.eventBus().consumer("TestVerticleStarted", m -> {
+            if (pending.decrementAndGet() == 0)
+                testComplete();
+        });
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            if (pending.decrementAndGet() == 0)
+                testComplete();
+        });
+        await();
+    }
+
+    @Test
+    public void testScale() {
+        DeploymentConfiguration dependentCfg = new DeploymentConfiguration();
+        dependentCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        DependentsDeployment dependents = new DependentsDeployment();
+        dependents.getConfigurations().add(dependentCfg);
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependents().add(dependents);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            int deployments = vertx.deploymentIDs().size();
+            assertEquals(1, dependentVerticle.getInstances(TestVerticle.class.getCanonicalName()));
+            dependentVerticle.scale(TestVerticle.class.getCanonicalName(), 3, ar2 -> {
+                assertTrue(ar2.succeeded());
+                assertEquals(3, dependentVerticle.getInstances(TestVerticle.class.getCanonicalName()));
+                assertEquals(deployments + 2, vertx.deploymentIDs().size());
+                assertTrue(vertx.deploymentIDs().contains(dependentCfg.getDeploymentID()));
+                dependentVerticle.scale(TestVerticle.class.getCanonicalName(), 0, ar3 -> {
+                    assertTrue(ar3.failed());
+                    assertTrue(ar3.cause() instanceof IllegalStateException);
+                    dependentVerticle.scale(TestVerticle.class.getCanonicalName(), 1, ar4 -> {
+                        assertTrue(ar4.succeeded());
+                        assertEquals(1, dependentVerticle.getInstances(TestVerticle.class.getCanonicalName()));
+                        assertEquals(deployments, vertx.deploymentIDs().size());
+                        assertTrue(vertx.deploymentIDs().contains(testVerticleCfg.getDeploymentID()));
+                        assertTrue(vertx.deploymentIDs().contains(dependentCfg.getDeploymentID()));
+                        testComplete();
+                    });
+                });
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer scales a verticle to the instances requested
+     * by its scaling policy once started, never below the instances it was deployed with
+     */
+    @Test
+    public void testScalingPolicy() {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        dependentVerticle.setScalingInterval(10);
+        dependentVerticle.setScalingPolicy((config, current, eventLoopLag) -> 3);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            vertx.setPeriodic(10, id -> {
+                if (dependentVerticle.getInstances(TestVerticle.class.getCanonicalName()) == 3) {
+                    vertx.cancelTimer(id);
+                    testComplete();
+                }
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer validates the tree before deploying it, so
+     * nothing is deployed when a verticle class cannot be loaded
+     */
+    @Test
+    public void testValidatorPreventsPartialDeployment() {
+        DeploymentConfiguration missingVerticleCfg = new DeploymentConfiguration();
+        missingVerticleCfg.setName("com.chibchasoft.vertx.verticle.deployment.MissingVerticle");
+        DependentsDeployment dependents = new DependentsDeployment();
+        dependents.getConfigurations().add(missingVerticleCfg);
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependents().add(dependents);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        dependentVerticle.setValidator(new DependentsDeploymentValidator());
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.failed());
+            assertTrue(ar.cause() instanceof IllegalArgumentException);
+            assertTrue(ar.cause().getMessage().contains("MissingVerticle"));
+            assertFalse(testVerticleCfg.isComplete());
+            assertTrue(vertx.deploymentIDs().isEmpty());
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, the DependentVerticleDeployer validates a dependents deployment file before
+     * deploying it, so the root parsed before the invalid one is not deployed
+     */
+    @Test
+    public void testValidatorOfDependentsDeploymentFile() throws Exception {
+        JsonObject depDeploymentAsJson = new JsonObject()
+            .put("configurations", new JsonArray()
+                .add(new JsonObject().put("name", TestVerticle.class.getCanonicalName()))
+                .add(new JsonObject().put("name", "com.chibchasoft.vertx.verticle.deployment.MissingVerticle")));
+
+        File file = File.createTempFile("dependents-deployment", ".json");
+        file.deleteOnExit();
+        Files.write(file.toPath(), depDeploymentAsJson.toBuffer().getBytes());
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeploymentFile(file.getAbsolutePath());
+        dependentVerticle.setValidator(new DependentsDeploymentValidator());
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.failed());
+            assertTrue(ar.cause() instanceof IllegalArgumentException);
+            assertTrue(ar.cause().getMessage().contains("MissingVerticle"));
+            assertFalse(dependentVerticle.getDependentsDeployment().getConfigurations().get(0).isComplete());
+            assertTrue(vertx.deploymentIDs().isEmpty());
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, the class of a dependent verticle is initialized on a worker thread while its
+     * parent is warming up
+     */
+    @Test
+    public void testPreloadClasses() {
+        DeploymentConfiguration preloadedTestVerticleCfg = new DeploymentConfiguration();
+        preloadedTestVerticleCfg.setName(PreloadedTestVerticle.class.getCanonicalName());
+        DependentsDeployment dependents = new DependentsDeployment();
+        dependents.getConfigurations().add(preloadedTestVerticleCfg);
+
+        DeploymentConfiguration warmingTestVerticleCfg = new DeploymentConfiguration();
+        warmingTestVerticleCfg.setName(WarmingTestVerticle.class.getCanonicalName())
+                              .setDeploymentOptions(new DeploymentOptions().setConfig(new JsonObject().put("address", "warming.ready")
+                                                                                                      .put("warmup", 300)))
+                              .setReadinessAddress("warming.ready");
+        warmingTestVerticleCfg.getDependents().add(dependents);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(warmingTestVerticleCfg);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        dependentVerticle.setPreloadClasses(true);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            assertTrue(preloadedTestVerticleCfg.succeeded());
+            assertTrue(PreloadedTestVerticle.INITIALIZED_ON.contains("worker"));
+            testComplete();
+        });
+        await();
+    }
+
+    /**
+     * In this test, the same DependentsDeployment is deployed by two DependentVerticleDeployers at
+     * the same time, and then by a third one once the one its configurations report is undeployed
+     */
+    @Test
+    public void testSameDeploymentDeployedTwice() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        DependentsDeployment dependents = new DependentsDeployment();
+        dependents.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+        testVerticleCfg.getDependents().add(dependents);
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+
+        DependentVerticleDeployer first = new DependentVerticleDeployer();
+        first.setDependentsDeployment(depDeployment);
+        DependentVerticleDeployer second = new DependentVerticleDeployer();
+        second.setDependentsDeployment(depDeployment);
+
+        Future<String> firstDeployed = Future.future();
+        Future<String> secondDeployed = Future.future();
+        vertx.deployVerticle(first, firstDeployed);
+        vertx.deployVerticle(second, secondDeployed);
+        CompositeFuture.all(firstDeployed, secondDeployed).setHandler(ar -> {
+            assertTrue(ar.succeeded());
+            String firstID = first.getDeploymentID(dependentTestVerticleCfg);
+            String secondID = second.getDeploymentID(dependentTestVerticleCfg);
+            assertNotNull(firstID);
+            assertNotNull(secondID);
+            assertFalse(firstID.equals(secondID));
+            assertTrue(dependentTestVerticleCfg.succeeded());
+            // Both DependentVerticleDeployers, TestVerticle and DependentTestVerticle twice
+            assertEquals(6, vertx.deploymentIDs().size());
+
+            // The configurations report the deployer that deployed them first, until it is undeployed
+            boolean firstReported = firstID.equals(dependentTestVerticleCfg.getDeploymentID());
+            DependentVerticleDeployer reported = firstReported ? first : second;
+            String reportedID = firstReported ? firstDeployed.result() : secondDeployed.result();
+            assertEquals(reported.getDeploymentID(testVerticleCfg), testVerticleCfg.getDeploymentID());
+            DependentVerticleDeployer third = new DependentVerticleDeployer();
+            third.setDependentsDeployment(depDeployment);
+            vertx.undeploy(reportedID, undeployed -> {
+                assertTrue(undeployed.succeeded());
+                vertx.deployVerticle(third, thirdDeployed -> {
+                    assertTrue(thirdDeployed.succeeded());
+                    assertEquals(third.getDeploymentID(testVerticleCfg), testVerticleCfg.getDeploymentID());
+                    assertEquals(third.getDeploymentID(dependentTestVerticleCfg),
+                                 dependentTestVerticleCfg.getDeploymentID());
+                    testComplete();
+                });
+            });
+        });
+        await();
+    }
+
+    /**
+     * In this test, a subtree declared once in a template is deployed once per tenant, one tenant
+     * at a time
+     */
+    @Test
+    public void testTemplate() {
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+        DependentsDeployment innerDepDeployment = new DependentsDeployment();
+        innerDepDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        DeploymentConfiguration echoTestVerticleCfg = new DeploymentConfiguration();
+        echoTestVerticleCfg.setName(EchoTestVerticle.class.getCanonicalName());
+        echoTestVerticleCfg.getDependents().add(innerDepDeployment);
+
+        DeploymentTemplate template = new DeploymentTemplate().setFanOut(1);
+        template.getConfigurations().add(echoTestVerticleCfg);
+        template.getParameters().add(new JsonObject().put("address", "tenant.a"));
+        template.getParameters().add(new JsonObject().put("address", "tenant.b"));
+        template.getParameters().add(new JsonObject().put("address", "tenant.c"));
+
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+        depDeployment.getTemplates().add(template);
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            // The DependentVerticleDeployer, TestVerticle and the two verticles of each tenant
+            assertEquals(8, vertx.deploymentIDs().size());
+            assertFalse(echoTestVerticleCfg.isComplete());
+            CompositeFuture.all(echo("tenant.a"), echo("tenant.b"), echo("tenant.c")).setHandler(replies -> {
+                assertTrue(replies.succeeded());
+                testComplete();
+            });
+        });
+        await();
+    }
+
+    private Future<Object> echo(String address) {
+        Future<Object> future = Future.future();
+        vertx.eventBus().send(address, address, reply -> future.handle(reply.map(message -> message.body())));
+        return future;
+    }
+
+    /**
+     * In this test, the verticle that took longest to deploy in previous boots is deployed first
+     * and reported as drifting from its history
+     */
+    @Test
+    public void testProfileFile() throws Exception {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration();
+        testVerticleCfg.setName(TestVerticle.class.getCanonicalName());
+
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration();
+        dependentTestVerticleCfg.setName(DependentTestVerticle.class.getCanonicalName());
+
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(testVerticleCfg);
+        depDeployment.getConfigurations().add(dependentTestVerticleCfg);
+
+        File file = File.createTempFile("dependents-deployment", ".profile");
+        file.deleteOnExit();
+        JsonObject profile = new JsonObject().put(DependentTestVerticle.class.getCanonicalName(), 50_000);
+        Files.write(file.toPath(), new JsonObject().put("verticles", profile).encode().getBytes());
+
+        DependentVerticleDeployer dependentVerticle = new DependentVerticleDeployer();
+        dependentVerticle.setDependentsDeployment(depDeployment);
+        dependentVerticle.setMaxDeploymentsInFlight(1);
+        dependentVerticle.setProfileFile(file.getAbsolutePath());
+
+        // Completed once both verticles have started and the deployment has completed
+        List<String> started = new CopyOnWriteArrayList<>();
+        AtomicInteger pending = new AtomicInteger(3);
+        Runnable completed = () -> {
+            if (pending.decrementAndGet() == 0) {
+                assertEquals("DependentTestVerticle", started.get(0));
+                testComplete();
+            }
+        };
+        vertx.eventBus().consumer("TestVerticleStarted", message -> {
+            started.add("TestVerticle");
+            completed.run();
+        });
+        vertx.eventBus().consumer("DependentTestVerticleStarted", message -> {
+            started.add("DependentTestVerticle");
+            completed.run();
+        });
+
+        vertx.deployVerticle(dependentVerticle, ar -> {
+            assertTrue(ar.succeeded());
+            JsonArray drifted = dependentVerticle.getStartupReport().getJsonArray("drifted");
+            assertEquals(1, drifted.size());
+            assertEquals(DependentTestVerticle.class.getCanonicalName(), drifted.getJsonObject(0).getString("name"));
+            assertEquals(50_000, drifted.getJsonObject(0).getLong("expectedTime").longValue());
+            JsonObject saved = vertx.fileSystem().readFileBlocking(file.getAbsolutePath()).toJsonObject()
+                                    .getJsonObject("verticles");
+            assertTrue(saved.containsKey(TestVerticle.class.getCanonicalName()));
+            assertTrue(saved.getLong(DependentTestVerticle.class.getCanonicalName()) >= 25_000);
+            completed.run();
+        });
+        await();
+    }
 }
@@ -12,13 +12,24 @@
  */
 package com.chibchasoft.vertx.verticle.deployment;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Test DependentsDeployment.
@@ -68,4 +79,393 @@ public class DependentsDeploymentTest {
 
         assertEquals(depDeployment1.toJson(), depDeployment2.toJson());
     }
+
+    @Test
+    public void testDependsOnUsingJson() {
+        JsonObject config = new JsonObject();
+        config.put("name", DependentTestVerticle.class.getCanonicalName());
+        config.put("dependsOn", new JsonArray().add(TestVerticle.class.getCanonicalName()));
+        JsonObject depDeploymentAsJson = new JsonObject();
+        depDeploymentAsJson.put("configurations", new JsonArray().add(config));
+        DependentsDeployment depDeployment = new DependentsDeployment(depDeploymentAsJson);
+
+        DeploymentConfiguration cfg = depDeployment.getConfigurations().get(0);
+        assertEquals(1, cfg.getDependsOn().size());
+        assertEquals(TestVerticle.class.getCanonicalName(), cfg.getDependsOn().get(0));
+        assertEquals(depDeployment.toJson(), new DependentsDeployment(depDeployment.toJson()).toJson());
+    }
+
+    @Test
+    public void testMaxInFlightUsingJson() {
+        JsonObject depDeploymentAsJson = new JsonObject();
+        depDeploymentAsJson.put("configurations", new JsonArray());
+        depDeploymentAsJson.put("maxInFlight", 4);
+        DependentsDeployment depDeployment = new DependentsDeployment(depDeploymentAsJson);
+
+        assertEquals(4, depDeployment.getMaxInFlight());
+        assertEquals(depDeploymentAsJson, depDeployment.toJson());
+        assertFalse(new DependentsDeployment().toJson().containsKey("maxInFlight"));
+    }
+
+    @Test
+    public void testDeploymentBehaviorUsingJson() {
+        JsonObject config = new JsonObject();
+        config.put("name", TestVerticle.class.getCanonicalName());
+        config.put("dependents", new JsonArray());
+        config.put("timeout", 1000L);
+        config.put("maxRetries", 3);
+        config.put("backoff", 50L);
+        config.put("lazy", true);
+        config.put("address", "admin");
+        config.put("readinessAddress", "admin.ready");
+        config.put("readinessPollInterval", 100L);
+        config.put("coldParentTolerated", true);
+        config.put("optional", true);
+        DeploymentConfiguration cfg = new DeploymentConfiguration(config);
+
+        assertEquals(1000, cfg.getTimeout());
+        assertEquals(3, cfg.getMaxRetries());
+        assertEquals(50, cfg.getBackoff());
+        assertTrue(cfg.isLazy());
+        assertEquals("admin", cfg.getAddress());
+        assertEquals("admin.ready", cfg.getReadinessAddress());
+        assertEquals(100, cfg.getReadinessPollInterval());
+        assertTrue(cfg.isColdParentTolerated());
+        assertTrue(cfg.isOptional());
+        assertEquals(config, cfg.toJson());
+    }
+
+    @Test
+    public void testInstancesExpressionUsingJson() {
+        JsonObject config = new JsonObject();
+        config.put("name", TestVerticle.class.getCanonicalName());
+        config.put("deploymentOptions", new JsonObject().put("instances", "max(1, min(cores / 4, 8))"));
+        config.put("dependents", new JsonArray());
+        DeploymentConfiguration cfg = new DeploymentConfiguration(config);
+
+        assertEquals("max(1, min(cores / 4, 8))", cfg.getInstancesExpression());
+        assertEquals("max(1, min(cores / 4, 8))", cfg.toJson().getJsonObject("deploymentOptions").getString("instances"));
+        assertEquals(cfg.toJson(), new DeploymentConfiguration(cfg.toJson()).toJson());
+    }
+
+    @Test
+    public void testInstancesExpression() {
+        assertEquals(8, InstancesExpression.evaluate("cores*2", 4, 8));
+        assertEquals(1, InstancesExpression.evaluate("cores/4", 2, 4));
+        assertEquals(16, InstancesExpression.evaluate("max(1, min(cores / 4, 16))", 64, 128));
+        assertEquals(3, InstancesExpression.evaluate("(eventLoops - cores) / 2 + 1", 2, 6));
+        assertEquals(1, InstancesExpression.evaluate("cores - 8", 4, 8));
+        for (String invalid : new String[] { "", "cores*", "threads", "min(cores", "cores 2" }) {
+            try {
+                InstancesExpression.validate(invalid);
+                fail("Expected " + invalid + " to be invalid");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testStreamingParserSameAsJson() {
+        JsonObject dependent = new JsonObject();
+        dependent.put("name", DependentTestVerticle.class.getCanonicalName());
+        dependent.put("deploymentOptions", new JsonObject().put("instances", 2)
+                                                           .put("config", new JsonObject().put("list", new JsonArray().add(1).add(new JsonObject()))));
+        dependent.put("dependsOn", new JsonArray().add(TestVerticle.class.getCanonicalName()));
+        JsonObject config = new JsonObject();
+        config.put("name", TestVerticle.class.getCanonicalName());
+        config.put("dependents", new JsonArray().add(new JsonObject().put("configurations", new JsonArray().add(dependent))
+                                                                     .put("maxInFlight", 1)));
+        JsonObject depDeploymentAsJson = new JsonObject();
+        depDeploymentAsJson.put("configurations", new JsonArray().add(config).add(new JsonObject().put("name", "other")));
+        depDeploymentAsJson.put("maxInFlight", 3);
+
+        List<DeploymentConfiguration> parsedConfigurations = new ArrayList<>();
+        List<DependentsDeployment> parsed = new ArrayList<>();
+        DependentsDeploymentParser parser = DependentsDeploymentParser.newParser()
+            .configurationHandler(parsedConfigurations::add)
+            .endHandler(ar -> {
+                assertTrue(ar.succeeded());
+                parsed.add(ar.result());
+            });
+
+        Buffer encoded = depDeploymentAsJson.toBuffer();
+        int firstConfigurationEnd = encoded.toString().indexOf("\"other\"");
+        parser.handle(encoded.getBuffer(0, firstConfigurationEnd));
+        // The first root configuration is available before the rest of the descriptor is parsed
+        assertEquals(1, parsedConfigurations.size());
+        assertEquals(TestVerticle.class.getCanonicalName(), parsedConfigurations.get(0).getName());
+        assertEquals(1, parsedConfigurations.get(0).getDependents().get(0).getConfigurations().size());
+        assertTrue(parsed.isEmpty());
+
+        parser.handle(encoded.getBuffer(firstConfigurationEnd, encoded.length()));
+        parser.end();
+        assertEquals(2, parsedConfigurations.size());
+        assertEquals(1, parsed.size());
+        assertSame(parser.getDependentsDeployment(), parsed.get(0));
+        assertEquals(new DependentsDeployment(depDeploymentAsJson).toJson(), parsed.get(0).toJson());
+    }
+
+    @Test
+    public void testStreamingParserInvalidJson() {
+        List<Throwable> failures = new ArrayList<>();
+        DependentsDeploymentParser parser = DependentsDeploymentParser.newParser().endHandler(ar -> {
+            assertTrue(ar.failed());
+            failures.add(ar.cause());
+        });
+        parser.handle(Buffer.buffer("{\"configurations\": [{\"name\": \"a\"}"));
+        parser.end();
+        assertEquals(1, failures.size());
+
+        failures.clear();
+        parser = DependentsDeploymentParser.newParser().endHandler(ar -> failures.add(ar.cause()));
+        parser.handle(Buffer.buffer("[]"));
+        parser.end();
+        assertEquals(1, failures.size());
+    }
+
+    @Test
+    public void testCompiledDependentsDeployment() {
+        JsonObject dependent = new JsonObject();
+        dependent.put("name", DependentTestVerticle.class.getCanonicalName());
+        dependent.put("deploymentOptions", new JsonObject().put("instances", "min(cores, 2)")
+                                                           .put("config", new JsonObject().put("key", "value")));
+        dependent.put("dependsOn", new JsonArray().add("other"));
+        dependent.put("timeout", 1000);
+        dependent.put("lazy", true);
+        dependent.put("address", "dependent");
+        JsonObject config = new JsonObject();
+        config.put("name", TestVerticle.class.getCanonicalName());
+        config.put("shared", true);
+        config.put("role", "front");
+        config.put("dependents", new JsonArray().add(new JsonObject().put("configurations", new JsonArray().add(dependent))
+                                                                     .put("maxInFlight", 1)));
+        JsonObject depDeploymentAsJson = new JsonObject();
+        depDeploymentAsJson.put("configurations", new JsonArray().add(config).add(new JsonObject().put("name", "other")));
+        depDeploymentAsJson.put("maxInFlight", 3);
+
+        DependentsDeployment depDeployment = new DependentsDeployment(depDeploymentAsJson);
+        Buffer source = depDeploymentAsJson.toBuffer();
+        Buffer compiled = CompiledDependentsDeployment.compile(source);
+        CompiledDependentsDeployment loaded = CompiledDependentsDeployment.load(compiled);
+        assertEquals(depDeployment.toJson(), loaded.getDependentsDeployment().toJson());
+        assertEquals(CompiledDependentsDeployment.checksum(source), loaded.getChecksum());
+        assertEquals(3, loaded.getDeploymentOrder().size());
+        assertTrue(loaded.getDeploymentOrder().indexOf("other") <
+                   loaded.getDeploymentOrder().indexOf(DependentTestVerticle.class.getCanonicalName()));
+        DeploymentConfiguration loadedDependent = loaded.getDependentsDeployment().getConfigurations().get(0)
+                                                        .getDependents().get(0).getConfigurations().get(0);
+        DeploymentPlan.Node node = loaded.getPlan().getNode(loadedDependent);
+        assertEquals(2, node.prerequisites.size());
+        assertTrue(node.deferred);
+        assertTrue(loaded.matches(source));
+        assertFalse(loaded.matches(depDeploymentAsJson.copy().put("maxInFlight", 4).toBuffer()));
+        // Reformatting the source is a drift as well, since it is not parsed
+        assertFalse(loaded.matches(Buffer.buffer(depDeploymentAsJson.encodePrettily())));
+        assertTrue(CompiledDependentsDeployment.load(CompiledDependentsDeployment.compile(depDeployment))
+                                               .matches(depDeployment.toJson().toBuffer()));
+
+        try {
+            CompiledDependentsDeployment.load(compiled.getBuffer(0, compiled.length() - 4));
+            fail("A truncated plan must not be loaded");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            CompiledDependentsDeployment.load(depDeploymentAsJson.toBuffer());
+            fail("JSON must not be loaded as a compiled plan");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testValidator() {
+        DependentsDeploymentValidator validator = new DependentsDeploymentValidator();
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration().setName(TestVerticle.class.getCanonicalName());
+        depDeployment.getConfigurations().add(testVerticleCfg);
+        assertTrue(validator.validate(null, depDeployment).isEmpty());
+
+        DeploymentConfiguration unnamedCfg = new DeploymentConfiguration();
+        DeploymentConfiguration duplicateCfg = new DeploymentConfiguration().setName(TestVerticle.class.getCanonicalName());
+        DeploymentConfiguration dependentCfg = new DeploymentConfiguration().setName("dependent").setLazy(true)
+            .setReadinessPollInterval(100);
+        dependentCfg.getDependsOn().add("unknown");
+        dependentCfg.getDependsOn().add("dependent");
+        dependentCfg.setDeploymentOptions(new DeploymentOptions().setInstances(0));
+        depDeployment.getConfigurations().add(unnamedCfg);
+        depDeployment.getConfigurations().add(duplicateCfg);
+        depDeployment.getConfigurations().add(dependentCfg);
+        List<String> errors = validator.validate(null, depDeployment);
+        assertEquals(errors.toString(), 7, errors.size());
+
+        DependentsDeployment chain = new DependentsDeployment();
+        DependentsDeployment group = chain;
+        for (int i = 0; i < 5; i++) {
+            DeploymentConfiguration cfg = new DeploymentConfiguration().setName("verticle" + i);
+            group.getConfigurations().add(cfg);
+            group = new DependentsDeployment();
+            cfg.getDependents().add(group);
+        }
+        assertTrue(validator.validate(null, chain).isEmpty());
+        assertEquals(1, validator.setMaxDepth(4).validate(null, chain).size());
+    }
+
+    @Test
+    public void testTemplateUsingJson() {
+        JsonObject config = new JsonObject();
+        config.put("name", TestVerticle.class.getCanonicalName());
+        config.put("deploymentOptions", new JsonObject().put("config", new JsonObject().put("region", "east")));
+        config.put("dependsOn", new JsonArray().add(DependentTestVerticle.class.getCanonicalName()));
+        JsonObject template = new JsonObject();
+        template.put("configurations", new JsonArray().add(config));
+        template.put("parameters", new JsonArray().add(new JsonObject().put("tenant", "first")));
+        template.put("range", new JsonObject().put("key", "tenant").put("from", 10).put("to", 13));
+        template.put("fanOut", 2);
+        JsonObject depDeploymentAsJson = new JsonObject();
+        depDeploymentAsJson.put("configurations", new JsonArray());
+        depDeploymentAsJson.put("templates", new JsonArray().add(template));
+        DependentsDeployment depDeployment = new DependentsDeployment(depDeploymentAsJson);
+
+        assertEquals(depDeployment.toJson(), new DependentsDeployment(depDeployment.toJson()).toJson());
+        DeploymentTemplate deploymentTemplate = depDeployment.getTemplates().get(0);
+        assertEquals(2, deploymentTemplate.getFanOut());
+        assertEquals(4, deploymentTemplate.getCopies());
+        assertEquals("first", deploymentTemplate.getParameters(0).getString("tenant"));
+        assertEquals(11, (int) deploymentTemplate.getParameters(2).getInteger("tenant"));
+
+        DeploymentConfiguration cfg = deploymentTemplate.getConfigurations().get(0);
+        DeploymentConfiguration copy = deploymentTemplate.expand(3).get(0);
+        assertEquals(cfg.getName(), copy.getName());
+        assertSame(cfg.getDependsOn(), copy.getDependsOn());
+        // The options are shared, the parameters only merged when deployed
+        assertSame(cfg.options(), copy.options());
+        assertEquals(new JsonObject().put("tenant", 12), copy.configOverlay());
+        assertEquals(new JsonObject().put("region", "east").put("tenant", 12), copy.mergedOptions().getConfig());
+        assertEquals(new JsonObject().put("region", "east").put("tenant", 12),
+                     copy.getDeploymentOptions().getConfig());
+        assertEquals(new JsonObject().put("region", "east"), cfg.getDeploymentOptions().getConfig());
+
+        try {
+            CompiledDependentsDeployment.compile(depDeployment);
+            fail("Templates should not be compiled");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testTemplateExpandedAsCopiesComplete() {
+        DeploymentConfiguration testVerticleCfg = new DeploymentConfiguration().setName(TestVerticle.class.getCanonicalName());
+        DeploymentConfiguration silentTestVerticleCfg = new DeploymentConfiguration().setName(SilentTestVerticle.class.getCanonicalName());
+        DeploymentConfiguration dependentTestVerticleCfg = new DeploymentConfiguration().setName(DependentTestVerticle.class.getCanonicalName());
+        dependentTestVerticleCfg.getDependsOn().add(TestVerticle.class.getCanonicalName());
+        DeploymentTemplate template = new DeploymentTemplate().setRange("tenant", 0, 3).setFanOut(1);
+        template.getConfigurations().add(testVerticleCfg);
+        template.getConfigurations().add(silentTestVerticleCfg);
+        template.getConfigurations().add(dependentTestVerticleCfg);
+        DependentsDeployment tenants = new DependentsDeployment();
+        tenants.getTemplates().add(template);
+        DeploymentConfiguration rootCfg = new DeploymentConfiguration().setName("root");
+        rootCfg.getDependents().add(tenants);
+        DependentsDeployment depDeployment = new DependentsDeployment();
+        depDeployment.getConfigurations().add(rootCfg);
+
+        // Only the first copy is expanded in the plan, its roots can all be deployed at the same time
+        DeploymentPlan plan = new DeploymentPlan(depDeployment);
+        DeploymentState state = new DeploymentState(plan);
+        assertEquals(4, plan.getNodes().size());
+        DeploymentPlan.Node root = plan.getNodes().get(0);
+        List<DeploymentPlan.Node> first = new ArrayList<>(plan.getNodes().subList(1, 4));
+        assertTrue(state.startCopy(first.get(0)));
+        assertTrue(state.startCopy(first.get(1)));
+        assertTrue(state.expandCopies().isEmpty());
+
+        // The next copy is expanded by the execution once all the nodes of the first one completed,
+        // the plan is left untouched
+        first.forEach(state::nodeCompleted);
+        List<DeploymentPlan.Node> second = state.expandCopies();
+        assertEquals(3, second.size());
+        assertEquals(4, plan.getNodes().size());
+        assertEquals(3, root.dependents.size());
+        assertEquals(7, state.getNodes().size());
+        assertEquals(7, state.getOrderedNodes().size());
+        assertEquals(6, state.dependents(root).size());
+        assertSame(second.get(0), state.getNode(second.get(0).config));
+        assertEquals(new JsonObject().put("tenant", 1), second.get(0).config.configOverlay());
+        assertEquals(4, second.get(0).index);
+        assertSame(root, second.get(0).prerequisites.get(0));
+        DeploymentPlan.Node dependent = second.get(2);
+        assertEquals(DependentTestVerticle.class.getCanonicalName(), dependent.config.getName());
+        assertEquals(2, dependent.prerequisites.size());
+        assertSame(dependent.copy, dependent.prerequisites.get(1).copy);
+        assertTrue(state.expandCopies().isEmpty());
+
+        // Another execution of the same plan starts with no copy started, completed or expanded
+        DeploymentState other = new DeploymentState(plan);
+        assertTrue(other.startCopy(first.get(0)));
+        assertTrue(other.expandCopies().isEmpty());
+        assertEquals(4, other.getNodes().size());
+        assertEquals(3, other.dependents(root).size());
+        assertNull(other.getNode(second.get(0).config));
+
+        // Expanding all the copies in the plan, the fan-out limits the copies started
+        plan = new DeploymentPlan(depDeployment, true);
+        state = new DeploymentState(plan);
+        assertEquals(10, plan.getNodes().size());
+        assertTrue(state.startCopy(plan.getNodes().get(1)));
+        assertFalse(state.startCopy(plan.getNodes().get(4)));
+        assertTrue(state.expandCopies().isEmpty());
+        plan.getNodes().subList(1, 4).forEach(state::nodeCompleted);
+        assertTrue(state.startCopy(plan.getNodes().get(4)));
+        assertTrue(state.expandCopies().isEmpty());
+        assertEquals(10, state.getNodes().size());
+    }
+
+    @Test
+    public void testInternedDeploymentOptions() {
+        JsonObject tenant = new JsonObject().put("region", "east").put("zones", new JsonArray().add("a").add("b"));
+        JsonArray configurations = new JsonArray();
+        for (int i = 0; i < 10_000; i++) {
+            JsonObject config = new JsonObject().put("tenant", tenant.copy()).put("shard", i % 3);
+            JsonObject options = new JsonObject().put("config", config).put("instances", i % 2 + 1)
+                                                 .put("extraClasspath", new JsonArray().add("lib/a.jar"));
+            configurations.add(new JsonObject().put("name", TestVerticle.class.getCanonicalName() + i)
+                                               .put("deploymentOptions", options));
+        }
+        // Parsed, as a descriptor is, so nested objects and arrays are held as maps and lists
+        String descriptor = new JsonObject().put("configurations", configurations).encode();
+        DependentsDeployment depDeployment = new DependentsDeployment(new JsonObject(descriptor));
+
+        // Identical options are shared, as are the configs of options differing in other fields and
+        // the objects, arrays and lists nested in configs and options differing in other fields
+        Set<DeploymentOptions> options = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<JsonObject> configs = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<JsonObject> tenants = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<JsonArray> zones = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<List<String>> extraClasspaths = Collections.newSetFromMap(new IdentityHashMap<>());
+        depDeployment.getConfigurations().forEach(cfg -> {
+            options.add(cfg.options());
+            configs.add(cfg.options().getConfig());
+            tenants.add(cfg.options().getConfig().getJsonObject("tenant"));
+            zones.add(cfg.options().getConfig().getJsonObject("tenant").getJsonArray("zones"));
+            extraClasspaths.add(cfg.options().getExtraClasspath());
+        });
+        assertEquals(6, options.size());
+        assertEquals(3, configs.size());
+        assertEquals(1, tenants.size());
+        assertEquals(1, zones.size());
+        assertEquals(1, extraClasspaths.size());
+
+        // Changing the options of a configuration does not change the options of the others
+        DeploymentConfiguration first = depDeployment.getConfigurations().get(0);
+        DeploymentConfiguration third = depDeployment.getConfigurations().get(6);
+        assertSame(first.options(), third.options());
+        first.getDeploymentOptions().setInstances(5).getConfig().getJsonObject("tenant").put("region", "west");
+        assertEquals(1, third.getDeploymentOptions().getInstances());
+        assertEquals("east", third.getDeploymentOptions().getConfig().getJsonObject("tenant").getString("region"));
+        assertEquals(5, depDeployment.toJson().getJsonArray("configurations").getJsonObject(0)
+                                     .getJsonObject("deploymentOptions").getInteger("instances").intValue());
+    }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+
+/**
+ * Verticle used for testing that replies to the messages sent to the {@code address} (from its
+ * config) with their bodies, once started {@code delay} milliseconds (from its config, 0 by
+ * default) after being deployed
+ * @author juanavelez
+ */
+public class EchoTestVerticle extends AbstractVerticle {
+    @Override
+    public void start(Future<Void> startFuture) {
+        long delay = config().getLong("delay", 0L);
+        if (delay > 0) {
+            vertx.setTimer(delay, id -> vertx.eventBus().consumer(config().getString("address"),
+                                                                   message -> message.reply(message.body()))
+                                          .completionHandler(startFuture));
+        } else {
+            vertx.eventBus().consumer(config().getString("address"), message -> message.reply(message.body()))
+                 .completionHandler(startFuture);
+        }
+    }
+}
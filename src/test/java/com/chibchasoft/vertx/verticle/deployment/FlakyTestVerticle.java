@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.shareddata.LocalMap;
+
+/**
+ * Verticle used for testing that fails to start the first {@code failures} times (from its
+ * config) it is deployed and never completes its start if {@code hang} is true
+ * @author juanavelez
+ */
+public class FlakyTestVerticle extends AbstractVerticle {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Override
+    public void start(Future<Void> startFuture) {
+        if (config().getBoolean("hang", false)) {
+            logger.info("Never starting this verticle");
+            return;
+        }
+        LocalMap<String, Integer> attempts = vertx.sharedData().getLocalMap(FlakyTestVerticle.class.getName());
+        int attempt = attempts.compute("attempts", (key, value) -> value == null ? 1 : value + 1);
+        if (attempt <= config().getInteger("failures", 0)) {
+            logger.info("Failing to start this verticle");
+            startFuture.fail("Failed attempt " + attempt);
+        } else {
+            logger.info("Starting this verticle");
+            startFuture.complete();
+        }
+    }
+}
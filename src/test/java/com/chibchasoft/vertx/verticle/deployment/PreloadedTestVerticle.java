@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import io.vertx.core.AbstractVerticle;
+
+/**
+ * Verticle used for testing that records the thread its class was initialized on
+ * @author juanavelez
+ */
+public class PreloadedTestVerticle extends AbstractVerticle {
+    static final String INITIALIZED_ON = Thread.currentThread().getName();
+}
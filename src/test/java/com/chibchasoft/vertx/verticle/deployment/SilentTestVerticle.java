@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import io.vertx.core.AbstractVerticle;
+
+/**
+ * Verticle used for testing that does nothing, for tests deploying many verticles
+ * @author juanavelez
+ */
+public class SilentTestVerticle extends AbstractVerticle {
+}
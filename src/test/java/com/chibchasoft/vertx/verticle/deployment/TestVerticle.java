@@ -31,4 +31,11 @@ public class TestVerticle extends AbstractVerticle {
         vertx.eventBus().send("TestVerticleStarted", "started");
         startFuture.complete();
     }
+
+    @Override
+    public void stop(Future<Void> stopFuture) {
+        logger.info("Stopping this verticle");
+        vertx.eventBus().send("TestVerticleStopped", "stopped");
+        stopFuture.complete();
+    }
 }
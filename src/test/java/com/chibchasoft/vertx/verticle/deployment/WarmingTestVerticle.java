@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2017 chibchasoft.com
+ * ------------------------------------------------------
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Apache License v2.0 which accompanies
+ * this distribution.
+ *
+ *      The Apache License v2.0 is available at
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Author <a href="mailto:jvelez@chibchasoft.com">Juan Velez</a>
+ */
+package com.chibchasoft.vertx.verticle.deployment;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+
+/**
+ * Verticle used for testing that becomes warm {@code warmup} milliseconds (from its config) after
+ * starting. If {@code poll} is true, it replies to the messages sent to {@code address} whether it
+ * is warm, otherwise it sends a message to {@code address} once warm.
+ * @author juanavelez
+ */
+public class WarmingTestVerticle extends AbstractVerticle {
+    private boolean warm;
+
+    @Override
+    public void start(Future<Void> startFuture) {
+        String address = config().getString("address");
+        boolean poll = config().getBoolean("poll", false);
+        if (poll)
+            vertx.eventBus().consumer(address, message -> message.reply(warm));
+        vertx.setTimer(config().getLong("warmup", 1L), id -> {
+            warm = true;
+            if (!poll)
+                vertx.eventBus().send(address, "warm");
+        });
+        startFuture.complete();
+    }
+}